@@ -0,0 +1,47 @@
+package avrmc.bench;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point for running the benchmarks. This accepts the usual JMH command
+ * line options but, unless otherwise specified, writes results as JSON to
+ * <code>target/jmh-result.json</code> so they can be compared across
+ * releases.
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class BenchmarkMain {
+  /**
+   * Default file to which results are written.
+   */
+  private static final String RESULT_FILE = "target/jmh-result.json"; //$NON-NLS-1$
+
+  private BenchmarkMain() {
+  }
+
+  /**
+   * Run the benchmarks.
+   *
+   * @param args JMH command line options.
+   * @throws RunnerException            If a benchmark fails to run.
+   * @throws CommandLineOptionException If the options are invalid.
+   */
+  public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+    CommandLineOptions cmd = new CommandLineOptions(args);
+    ChainedOptionsBuilder options = new OptionsBuilder().parent(cmd);
+    if (!cmd.getResultFormat().hasValue()) {
+      options.resultFormat(ResultFormatType.JSON);
+    }
+    if (!cmd.getResult().hasValue()) {
+      options.result(RESULT_FILE);
+    }
+    new Runner(options.build()).run();
+  }
+}
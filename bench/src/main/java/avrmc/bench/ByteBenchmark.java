@@ -0,0 +1,164 @@
+package avrmc.bench;
+
+import avrmc.core.AbstractMemory.Bit;
+import avrmc.core.AbstractMemory.Byte;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of arithmetic on abstract bytes. Operands are drawn at
+ * random from every concrete value, plus the unknown value.
+ *
+ * @author David J. Pearce
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ByteBenchmark {
+  /**
+   * Number of operand pairs.
+   */
+  private static final int SIZE = 1024;
+  /**
+   * Left-hand operands.
+   */
+  private final Byte[] lhs = new Byte[SIZE];
+  /**
+   * Right-hand operands.
+   */
+  private final Byte[] rhs = new Byte[SIZE];
+
+  /**
+   * Generate the operands, using a fixed seed so that runs are comparable.
+   */
+  @Setup(Level.Trial)
+  public void setup() {
+    Random random = new Random(1);
+    for (int i = 0; i != SIZE; ++i) {
+      this.lhs[i] = next(random);
+      this.rhs[i] = next(random);
+    }
+  }
+
+  /**
+   * Apply <code>add</code> to every operand.
+   *
+   * @param bh Blackhole to consume results.
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void add(Blackhole bh) {
+    for (int i = 0; i != SIZE; ++i) {
+      bh.consume(this.lhs[i].add(this.rhs[i]));
+    }
+  }
+
+  /**
+   * Apply <code>sub</code> to every operand.
+   *
+   * @param bh Blackhole to consume results.
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void sub(Blackhole bh) {
+    for (int i = 0; i != SIZE; ++i) {
+      bh.consume(this.lhs[i].sub(this.rhs[i]));
+    }
+  }
+
+  /**
+   * Apply <code>and</code> to every operand.
+   *
+   * @param bh Blackhole to consume results.
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void and(Blackhole bh) {
+    for (int i = 0; i != SIZE; ++i) {
+      bh.consume(this.lhs[i].and(this.rhs[i]));
+    }
+  }
+
+  /**
+   * Apply <code>xor</code> to every operand.
+   *
+   * @param bh Blackhole to consume results.
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void xor(Blackhole bh) {
+    for (int i = 0; i != SIZE; ++i) {
+      bh.consume(this.lhs[i].xor(this.rhs[i]));
+    }
+  }
+
+  /**
+   * Apply <code>shr</code> to every operand.
+   *
+   * @param bh Blackhole to consume results.
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void shr(Blackhole bh) {
+    for (int i = 0; i != SIZE; ++i) {
+      bh.consume(this.lhs[i].shr(1));
+    }
+  }
+
+  /**
+   * Apply <code>inc</code> to every operand.
+   *
+   * @param bh Blackhole to consume results.
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void inc(Blackhole bh) {
+    for (int i = 0; i != SIZE; ++i) {
+      bh.consume(this.lhs[i].inc());
+    }
+  }
+
+  /**
+   * Apply <code>eq</code> to every operand.
+   *
+   * @param bh Blackhole to consume results.
+   */
+  @Benchmark
+  @OperationsPerInvocation(SIZE)
+  public void eq(Blackhole bh) {
+    for (int i = 0; i != SIZE; ++i) {
+      Bit b = this.lhs[i].eq(this.rhs[i]);
+      bh.consume(b);
+    }
+  }
+
+  /**
+   * Generate a random abstract byte, which is unknown with probability 1/8.
+   *
+   * @param random Source of randomness.
+   * @return Generated byte.
+   */
+  private static Byte next(Random random) {
+    if (random.nextInt(8) == 0) {
+      return Byte.UNKNOWN;
+    }
+    return Byte.from((byte) random.nextInt(256));
+  }
+}
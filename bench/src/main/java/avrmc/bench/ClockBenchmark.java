@@ -0,0 +1,180 @@
+package avrmc.bench;
+
+import avrmc.core.AbstractAvr;
+import java.util.concurrent.TimeUnit;
+import javr.core.AVR;
+import javr.core.AvrInstruction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of <code>AbstractAvr.clock()</code> for different
+ * families of instruction. Each family is a small hand-assembled loop, where
+ * every value is known so that no forks arise and the machine never halts.
+ *
+ * @author David J. Pearce
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ClockBenchmark {
+  /**
+   * Number of instructions executed per benchmark invocation.
+   */
+  private static final int STEPS = 1000;
+
+  /**
+   * Identifies the family of instructions being executed.
+   */
+  @Param({ "ALU", "BRANCH", "LOAD_STORE", "STACK" })
+  public String family;
+
+  /**
+   * Machine state being clocked.
+   */
+  private AbstractAvr state;
+
+  /**
+   * Assemble the loop for the selected instruction family, and execute its
+   * prologue.
+   *
+   * @throws AVR.HaltedException If the machine halts (which should not happen).
+   */
+  @Setup(Level.Trial)
+  public void setup() throws AVR.HaltedException {
+    Family f = Family.valueOf(this.family);
+    this.state = Firmware.assemble(f.instructions);
+    for (int i = 0; i != f.prologue; ++i) {
+      this.state.clock();
+    }
+  }
+
+  /**
+   * Execute a fixed number of instructions.
+   *
+   * @param bh Blackhole to consume any (unexpected) forks.
+   * @throws AVR.HaltedException If the machine halts (which should not happen).
+   */
+  @Benchmark
+  @OperationsPerInvocation(STEPS)
+  public void clock(Blackhole bh) throws AVR.HaltedException {
+    AbstractAvr st = this.state;
+    for (int i = 0; i != STEPS; ++i) {
+      bh.consume(st.clock());
+    }
+  }
+
+  /**
+   * The instruction families being measured. Each consists of a prologue
+   * (executed once during setup) followed by an infinite loop.
+   *
+   * @author David J. Pearce
+   *
+   */
+  private enum Family {
+    /**
+     * Register-to-register arithmetic and logic.
+     */
+    ALU(2,
+        new AvrInstruction.LDI(16, 1),
+        new AvrInstruction.LDI(17, 2),
+        // loop:
+        new AvrInstruction.ADD(16, 17),
+        new AvrInstruction.ADC(17, 16),
+        new AvrInstruction.SUB(16, 17),
+        new AvrInstruction.AND(16, 17),
+        new AvrInstruction.OR(17, 16),
+        new AvrInstruction.EOR(16, 17),
+        new AvrInstruction.INC(16),
+        new AvrInstruction.DEC(17),
+        new AvrInstruction.LSR(16),
+        new AvrInstruction.ROR(17),
+        new AvrInstruction.COM(16),
+        new AvrInstruction.SWAP(17),
+        new AvrInstruction.RJMP(-13)),
+    /**
+     * Comparisons and conditional branches (on known values).
+     */
+    BRANCH(0,
+        // loop:
+        new AvrInstruction.LDI(16, 3),
+        // inner:
+        new AvrInstruction.DEC(16),
+        new AvrInstruction.BRNE(-2),
+        new AvrInstruction.CPI(16, 0),
+        new AvrInstruction.BREQ(0),
+        new AvrInstruction.CP(16, 17),
+        new AvrInstruction.BRLO(0),
+        new AvrInstruction.RJMP(-8)),
+    /**
+     * Loads and stores between registers and SRAM.
+     */
+    LOAD_STORE(4,
+        // X = 0x160, Y = 0x180
+        new AvrInstruction.LDI(26, 0x60),
+        new AvrInstruction.LDI(27, 0x01),
+        new AvrInstruction.LDI(28, 0x80),
+        new AvrInstruction.LDI(29, 0x01),
+        // loop:
+        new AvrInstruction.LDI(16, 42),
+        new AvrInstruction.ST_X(16),
+        new AvrInstruction.LD_X(17),
+        new AvrInstruction.STD_Y_Q(17, 5),
+        new AvrInstruction.LDD_Y_Q(18, 5),
+        new AvrInstruction.STS_DATA_WIDE(18, 0x1A0),
+        new AvrInstruction.LDS(19, 0x1A0),
+        new AvrInstruction.MOV(20, 19),
+        // NOTE: STS and LDS are two words wide
+        new AvrInstruction.RJMP(-11)),
+    /**
+     * Pushing, popping, calls and returns.
+     */
+    STACK(4,
+        // SP = 0x25F
+        new AvrInstruction.LDI(28, 0x5f),
+        new AvrInstruction.LDI(29, 0x2),
+        new AvrInstruction.OUT(0x3e, 29),
+        new AvrInstruction.OUT(0x3d, 28),
+        // loop:
+        new AvrInstruction.PUSH(16),
+        new AvrInstruction.PUSH(17),
+        new AvrInstruction.RCALL(3),
+        new AvrInstruction.POP(17),
+        new AvrInstruction.POP(16),
+        new AvrInstruction.RJMP(-6),
+        // subroutine:
+        new AvrInstruction.PUSH(16),
+        new AvrInstruction.POP(16),
+        new AvrInstruction.RET());
+
+    /**
+     * Number of instructions before the loop begins.
+     */
+    final int prologue;
+    /**
+     * The instructions making up this family's program.
+     */
+    final AvrInstruction[] instructions;
+
+    Family(int prologue, AvrInstruction... instructions) {
+      this.prologue = prologue;
+      this.instructions = instructions;
+    }
+  }
+}
@@ -0,0 +1,148 @@
+package avrmc.bench;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.StateCodec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import javr.core.AVR;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of encoding and decoding machine states with
+ * <code>StateCodec</code>. States are taken from consecutive steps of executing
+ * a test firmware. Alongside the number of states per second, the number of
+ * encoded bytes per second is reported by the <code>bytes</code> counter.
+ *
+ * @author David J. Pearce
+ *
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class CodecBenchmark {
+  /**
+   * Number of states encoded or decoded per invocation.
+   */
+  private static final int STATES = 256;
+
+  /**
+   * Firmware to take states from.
+   */
+  @Param({ "fader.hex", "numbers_r.hex" })
+  public String firmware;
+
+  /**
+   * States being encoded.
+   */
+  private final AbstractAvr[] states = new AbstractAvr[STATES];
+  /**
+   * Buffer into which states are encoded.
+   */
+  private ByteBuffer buffer;
+  /**
+   * Encoding of every state, which is decoded.
+   */
+  private ByteBuffer encoded;
+
+  /**
+   * Counts the number of encoded bytes processed.
+   *
+   * @author David J. Pearce
+   *
+   */
+  @AuxCounters(AuxCounters.Type.OPERATIONS)
+  @State(Scope.Thread)
+  public static class Counters {
+    /**
+     * Number of encoded bytes processed.
+     */
+    public long bytes;
+
+    /**
+     * Reset the counters before each iteration.
+     */
+    @Setup(Level.Iteration)
+    public void reset() {
+      this.bytes = 0;
+    }
+  }
+
+  /**
+   * Construct the states being measured, and their encodings.
+   *
+   * @throws IOException If something goes wrong loading the firmware.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    AbstractAvr avr = Firmware.load(this.firmware);
+    int size = 0;
+    for (int i = 0; i != STATES; ++i) {
+      this.states[i] = avr.clone();
+      size += StateCodec.getMaximumSize(avr);
+      try {
+        avr.clock();
+      } catch (AVR.HaltedException e) {
+        // Fine, just repeat the halted state.
+      }
+    }
+    this.buffer = ByteBuffer.allocate(size);
+    for (AbstractAvr state : this.states) {
+      StateCodec.encode(state, this.buffer);
+    }
+    this.buffer.flip();
+    this.encoded = this.buffer.duplicate();
+    this.buffer = ByteBuffer.allocate(size);
+  }
+
+  /**
+   * Encode every state.
+   *
+   * @param counters Counters to update.
+   * @return Number of bytes written.
+   */
+  @Benchmark
+  @OperationsPerInvocation(STATES)
+  public int encode(Counters counters) {
+    this.buffer.clear();
+    for (AbstractAvr state : this.states) {
+      StateCodec.encode(state, this.buffer);
+    }
+    counters.bytes += this.buffer.position();
+    return this.buffer.position();
+  }
+
+  /**
+   * Decode every state.
+   *
+   * @param counters Counters to update.
+   * @param bh       Blackhole to consume results.
+   */
+  @Benchmark
+  @OperationsPerInvocation(STATES)
+  public void decode(Counters counters, Blackhole bh) {
+    this.encoded.rewind();
+    AbstractAvr template = this.states[0];
+    for (int i = 0; i != STATES; ++i) {
+      bh.consume(StateCodec.decode(template, this.encoded));
+    }
+    counters.bytes += this.encoded.position();
+  }
+}
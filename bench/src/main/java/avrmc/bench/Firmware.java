@@ -0,0 +1,119 @@
+package avrmc.bench;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AbstractMemory;
+import avrmc.core.AbstractMemory.Word;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.PropertyEvents;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import javr.core.AVR;
+import javr.core.AvrInstruction;
+import javr.io.HexFile;
+
+/**
+ * Helpers for constructing the machine states used by the benchmarks, either
+ * from the test firmwares or from hand-assembled instruction sequences.
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class Firmware {
+  /**
+   * Directory in which the test firmwares are located. By default, this assumes
+   * benchmarks are run from the <code>bench</code> directory.
+   */
+  public static final String DIRECTORY = System.getProperty("avrmc.firmware", //$NON-NLS-1$
+      ".." + File.separator + "tests"); //$NON-NLS-1$ //$NON-NLS-2$
+  /**
+   * Size (in bytes) of the FLASH memory, as for the ATtiny85.
+   */
+  public static final int CODE_SIZE = 8192;
+  /**
+   * Size (in bytes) of the DATA memory, as for the ATtiny85.
+   */
+  public static final int DATA_SIZE = 32 + 64 + 512;
+  /**
+   * Value of the stack pointer once initialised.
+   */
+  public static final int STACK_TOP = 607;
+
+  private Firmware() {
+  }
+
+  /**
+   * Load a given test firmware into a fresh abstract AVR, and clock it until the
+   * stack pointer is initialised.
+   *
+   * @param filename Filename of firmware within the firmware directory.
+   * @return Initialised machine state.
+   * @throws IOException If something goes wrong loading the firmware.
+   */
+  public static AbstractAvr load(String filename) throws IOException {
+    try (FileReader fr = new FileReader(DIRECTORY + File.separator + filename)) {
+      HexFile hf = new HexFile.Reader(fr).readAll();
+      AbstractAvr avr = new AbstractAvr(CODE_SIZE, DATA_SIZE);
+      hf.uploadTo(avr.getCode());
+      while (readStackPointer(avr) != STACK_TOP) {
+        avr.clock();
+      }
+      return avr;
+    } catch (AVR.HaltedException e) {
+      throw new IllegalArgumentException("firmware halted during initialisation", e); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Assemble a given sequence of instructions into a fresh abstract AVR.
+   *
+   * @param instructions The sequence of instructions.
+   * @return Machine state with program counter at the first instruction.
+   */
+  public static AbstractAvr assemble(AvrInstruction... instructions) {
+    AbstractAvr avr = new AbstractAvr(CODE_SIZE, DATA_SIZE);
+    int address = 0;
+    for (AvrInstruction insn : instructions) {
+      for (byte b : insn.getBytes()) {
+        avr.getCode().write(address, b);
+        address = address + 1;
+      }
+    }
+    return avr;
+  }
+
+  /**
+   * Read the value of the SP register from a given AVR state.
+   *
+   * @param state The abstract machine state to read the stack pointer from.
+   * @return The value read.
+   */
+  public static int readStackPointer(AbstractAvr state) {
+    AbstractMemory data = state.getData();
+    return Word.from(data.read(AVR.SPL_ADDRESS + 1), data.read(AVR.SPL_ADDRESS)).toInt();
+  }
+
+  /**
+   * A model checking property which extracts the maximum stack height from a
+   * given AVR state.
+   *
+   * @author David J. Pearce
+   *
+   */
+  public static final class StackHeightProperty implements AvrModelChecker.IntProperty {
+    @Override
+    public int mapAsInt(AbstractAvr state) {
+      return STACK_TOP - readStackPointer(state);
+    }
+
+    @Override
+    public int joinAsInt(int left, int right) {
+      return (left > right) ? left : right;
+    }
+
+    @Override
+    public PropertyEvents getEvents() {
+      return PropertyEvents.NONE.withStackPointer();
+    }
+  }
+}
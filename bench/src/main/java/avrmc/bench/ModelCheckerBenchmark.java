@@ -0,0 +1,81 @@
+package avrmc.bench;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the time taken to compute the maximum stack height of each test
+ * firmware, end-to-end. The firmware is loaded (and its stack initialised)
+ * once, outside of the measurement.
+ *
+ * <p>
+ * The <code>blocker_1</code> and <code>blocker_2</code> firmwares are not
+ * included by default, since neither currently completes (see
+ * <code>Part3</code>). They can be selected with, for example,
+ * <code>-p firmware=blocker_1.hex</code>.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = { "-Xmx4g" })
+@State(Scope.Thread)
+public class ModelCheckerBenchmark {
+  /**
+   * Firmware to check.
+   */
+  @Param({ "fader.hex", "blocks_1.hex", "blocks_2.hex", "blocks_3.hex", "blocks_4.hex",
+      "blocks_5.hex", "blocks_6.hex", "blocks_7.hex", "numbers_r.hex" })
+  public String firmware;
+
+  /**
+   * Whether to record visited states only at basic block boundaries.
+   */
+  @Param({ "false", "true" })
+  public boolean basicBlocks;
+
+  /**
+   * Initialised state, which is copied for each invocation.
+   */
+  private AbstractAvr seed;
+
+  /**
+   * Load the firmware being checked.
+   *
+   * @throws IOException If something goes wrong loading the firmware.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.seed = Firmware.load(this.firmware);
+  }
+
+  /**
+   * Check the firmware.
+   *
+   * @return Maximum stack height.
+   */
+  @Benchmark
+  public Integer apply() {
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(new Firmware.StackHeightProperty());
+    checker.setBasicBlocks(this.basicBlocks);
+    return checker.apply(this.seed.clone());
+  }
+}
@@ -0,0 +1,158 @@
+package avrmc.bench;
+
+import avrmc.core.AbstractAvr;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import javr.core.AVR;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost of the operations performed on machine states by the model
+ * checker, namely copying, hashing and comparing them. States are taken from
+ * part way through executing a test firmware.
+ *
+ * @author David J. Pearce
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StateBenchmark {
+  /**
+   * Number of instructions to execute from the initial state before taking a
+   * snapshot.
+   */
+  private static final int STEPS = 10000;
+
+  /**
+   * Firmware to take states from.
+   */
+  @Param({ "fader.hex" })
+  public String firmware;
+
+  /**
+   * State being measured.
+   */
+  private AbstractAvr state;
+  /**
+   * A copy of <code>state</code>, which therefore shares its memory.
+   */
+  private AbstractAvr copy;
+  /**
+   * A state which is equal to <code>state</code>, but was constructed
+   * independently and, hence, shares nothing with it.
+   */
+  private AbstractAvr other;
+
+  /**
+   * Construct the states being measured.
+   *
+   * @throws IOException If something goes wrong loading the firmware.
+   */
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    this.state = snapshot(this.firmware);
+    this.other = snapshot(this.firmware);
+    this.copy = this.state.clone();
+    if (!this.state.equals(this.other)) {
+      throw new IllegalStateException("firmware is not deterministic"); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Copy a state.
+   *
+   * @return The copy.
+   */
+  @Benchmark
+  public AbstractAvr cloneState() {
+    return this.state.clone();
+  }
+
+  /**
+   * Copy a state and then modify a register, as happens at every fork. With
+   * copy-on-write memory, this is where the cost of copying is actually paid.
+   *
+   * @return The modified copy.
+   */
+  @Benchmark
+  public AbstractAvr cloneAndWrite() {
+    AbstractAvr fork = this.state.clone();
+    fork.getData().write(16, (byte) 1);
+    return fork;
+  }
+
+  /**
+   * Compute the hash code of a state.
+   *
+   * @return The hash code.
+   */
+  @Benchmark
+  public int hashCodeState() {
+    return this.state.hashCode();
+  }
+
+  /**
+   * Compute the fingerprint of a state.
+   *
+   * @return The fingerprint.
+   */
+  @Benchmark
+  public long fingerprint() {
+    return this.state.fingerprint();
+  }
+
+  /**
+   * Compare a state against a copy of itself, which shares its memory.
+   *
+   * @return True (always).
+   */
+  @Benchmark
+  public boolean equalsShared() {
+    return this.state.equals(this.copy);
+  }
+
+  /**
+   * Compare a state against an equal state, which shares nothing with it.
+   *
+   * @return True (always).
+   */
+  @Benchmark
+  public boolean equalsDistinct() {
+    return this.state.equals(this.other);
+  }
+
+  /**
+   * Load a firmware and execute it for a fixed number of steps, following the
+   * original state at each fork.
+   *
+   * @param filename Firmware to load.
+   * @return State reached.
+   * @throws IOException If something goes wrong loading the firmware.
+   */
+  private static AbstractAvr snapshot(String filename) throws IOException {
+    AbstractAvr avr = Firmware.load(filename);
+    try {
+      for (int i = 0; i != STEPS; ++i) {
+        avr.clock();
+      }
+    } catch (AVR.HaltedException e) {
+      // Fine, just use the halted state.
+    }
+    return avr;
+  }
+}
@@ -8,7 +8,6 @@ import avrmc.core.AbstractMemory.Bit;
 import avrmc.core.AbstractMemory.Byte;
 import avrmc.core.AbstractMemory.Word;
 import java.io.PrintStream;
-import java.util.Objects;
 import javr.core.AVR;
 import javr.core.AVR.Memory;
 import javr.core.AvrDecoder;
@@ -46,9 +45,17 @@ public class AbstractAvr implements Cloneable {
   private final AVR.Interrupt[] interrupts;
   /**
    * Cache of decoded instructions. This just means we don't have to decode
-   * everything everytime.
+   * everything everytime. This is shared between a state and its clones, which
+   * may be executed on different threads. Hence, entries are only filled whilst
+   * holding the lock on this array.
    */
   private final AvrInstruction[] decoded;
+  /**
+   * Identifies bytes of code memory which have been read as data (i.e. by
+   * <code>LPM</code>). This is shared in the same way as <code>decoded</code>
+   * but, since entries are only ever set, it is updated without locking.
+   */
+  private final boolean[] codeReads;
   /**
    * represents the Program Counter register. This is concrete because we always
    * know where the AVR is.
@@ -88,6 +95,16 @@ public class AbstractAvr implements Cloneable {
    * register.
    */
   private Bit interruptFlag;
+  /**
+   * Indicates whether the stack pointer was changed by a push or pop (including
+   * calls, returns and interrupt entry) during the most recent clock.
+   */
+  private boolean stackPointerChanged;
+  /**
+   * Address of the instruction executed by the most recent clock. This differs
+   * from the program counter before that clock when an interrupt was taken.
+   */
+  private int executed;
 
   /**
    * Construct an abstract AVR with a given <code>code</code> and
@@ -104,6 +121,7 @@ public class AbstractAvr implements Cloneable {
     this.data = new AbstractMemory(data);
     this.interrupts = interrupts;
     this.decoded = new AvrInstruction[code];
+    this.codeReads = new boolean[code];
     //
     this.carryFlag = Bit.FALSE;
     this.zeroFlag = Bit.FALSE;
@@ -127,8 +145,10 @@ public class AbstractAvr implements Cloneable {
     this.data = new AbstractMemory(state.data);
     this.interrupts = state.interrupts;
     this.decoded = state.decoded;
+    this.codeReads = state.codeReads;
     //
     this.programCounter = state.programCounter;
+    this.executed = state.executed;
     this.carryFlag = state.carryFlag;
     this.zeroFlag = state.zeroFlag;
     this.negativeFlag = state.negativeFlag;
@@ -139,6 +159,37 @@ public class AbstractAvr implements Cloneable {
     this.interruptFlag = state.interruptFlag;
   }
 
+  /**
+   * Construct an AVR state with given program counter and status flags, and
+   * whose data memory is entirely zero. Those parts of the state which are never
+   * mutated (e.g. the code memory) are shared with a given template state, which
+   * must be running the same firmware. This is intended for reconstructing
+   * states which have been serialised (e.g. by <code>StateCodec</code>).
+   *
+   * @param template       State running the same firmware.
+   * @param programCounter Program counter of new state.
+   * @param status         Status flags of new state, packed as for
+   *                       <code>getStatusFingerprint()</code>.
+   * @param data           Size (in bytes) of data memory of new state.
+   */
+  AbstractAvr(AbstractAvr template, int programCounter, int status, int data) {
+    this.code = template.code;
+    this.data = new AbstractMemory(data);
+    this.interrupts = template.interrupts;
+    this.decoded = template.decoded;
+    this.codeReads = template.codeReads;
+    //
+    this.programCounter = programCounter;
+    this.carryFlag = decode(status, 0);
+    this.zeroFlag = decode(status, 2);
+    this.negativeFlag = decode(status, 4);
+    this.overflowFlag = decode(status, 6);
+    this.signFlag = decode(status, 8);
+    this.halfCarryFlag = decode(status, 10);
+    this.bitcopyFlag = decode(status, 12);
+    this.interruptFlag = decode(status, 14);
+  }
+
   /**
    * Get the code (i.e. FLASH) memory associated with this (abstract) AVR.
    *
@@ -158,6 +209,54 @@ public class AbstractAvr implements Cloneable {
     return this.data;
   }
 
+  /**
+   * Get a copy of the contents of code memory, which identifies the firmware
+   * being executed.
+   *
+   * @return Contents of code memory.
+   */
+  byte[] getCodeBytes() {
+    byte[] r = new byte[this.code.size()];
+    for (int i = 0; i != r.length; ++i) {
+      r[i] = this.code.peek(i);
+    }
+    return r;
+  }
+
+  /**
+   * Identify those bytes of code memory which have been used by this state, or
+   * any state sharing its caches (e.g. its clones). A byte is used if it is
+   * part of an instruction which has been decoded, or it has been read as data.
+   * Hence, execution which began from such a state cannot have been affected by
+   * the value of any byte which is not used.
+   *
+   * @return Indicates which bytes of code memory have been used.
+   */
+  boolean[] getCodeUsage() {
+    boolean[] r = this.codeReads.clone();
+    synchronized (this.decoded) {
+      for (int pc = 0; pc != this.decoded.length; ++pc) {
+        AvrInstruction insn = this.decoded[pc];
+        if (insn != null) {
+          int end = Math.min(r.length, (pc + insn.getWidth()) * 2);
+          for (int i = pc * 2; i < end; ++i) {
+            r[i] = true;
+          }
+        }
+      }
+    }
+    return r;
+  }
+
+  /**
+   * Get the interrupt triggers of this machine.
+   *
+   * @return Interrupt triggers, which should not be modified.
+   */
+  AVR.Interrupt[] getInterrupts() {
+    return this.interrupts;
+  }
+
   /**
    * Check whether this machine has halted or not.
    *
@@ -167,6 +266,18 @@ public class AbstractAvr implements Cloneable {
     return this.programCounter < 0;
   }
 
+  /**
+   * Check whether the stack pointer may have changed during the most recent
+   * clock of this machine. This is exact for pushes and pops (including calls,
+   * returns and interrupt entry), but may report a change for other
+   * instructions which wrote memory either side of the stack pointer.
+   *
+   * @return True if the stack pointer may have changed.
+   */
+  public boolean isStackPointerChanged() {
+    return this.stackPointerChanged || this.data.isWritten(AVR.SPL_ADDRESS, AVR.SPL_ADDRESS + 2);
+  }
+
   /**
    * Get the current program counter for this (abstract) AVR.
    *
@@ -176,11 +287,93 @@ public class AbstractAvr implements Cloneable {
     return this.programCounter;
   }
 
+  /**
+   * Get the address of the instruction executed by the most recent clock of
+   * this machine. When an interrupt was taken, this is the interrupt vector
+   * rather than the program counter before the clock.
+   *
+   * @return Address of instruction most recently executed.
+   */
+  public int getExecutedAddress() {
+    return this.executed;
+  }
+
+  /**
+   * Get the instruction at a given address in FLASH memory. This uses the same
+   * cache of decoded instructions as execution does.
+   *
+   * @param address Location in FLASH memory of instruction.
+   * @return Instruction at the given address.
+   */
+  public AvrInstruction getInstruction(int address) {
+    return decode(address);
+  }
+
+  /**
+   * Compute a 64-bit fingerprint of this state. Two equal states always have the
+   * same fingerprint and, whilst distinct states may in principle share a
+   * fingerprint, this is extremely unlikely. Hence, fingerprints can be recorded
+   * in place of the states themselves. This takes constant time, since the
+   * fingerprint of the data memory is maintained incrementally.
+   *
+   * @return 64-bit fingerprint.
+   */
+  public long fingerprint() {
+    long h = this.data.fingerprint();
+    h = (h * 31) + this.programCounter;
+    h = (h * 31) + getStatusFingerprint();
+    return AbstractMemory.mix(h);
+  }
+
+  /**
+   * Pack the eight status flags into a single integer, using two bits per flag
+   * so that unknown flags are distinguished from known ones.
+   *
+   * @return Packed status flags.
+   */
+  int getStatusFingerprint() {
+    int r = encode(this.carryFlag);
+    r |= encode(this.zeroFlag) << 2;
+    r |= encode(this.negativeFlag) << 4;
+    r |= encode(this.overflowFlag) << 6;
+    r |= encode(this.signFlag) << 8;
+    r |= encode(this.halfCarryFlag) << 10;
+    r |= encode(this.bitcopyFlag) << 12;
+    r |= encode(this.interruptFlag) << 14;
+    return r;
+  }
+
+  /**
+   * Encode a status flag as a two-bit integer.
+   *
+   * @param b Flag to encode.
+   * @return 2 if unknown, 1 if true and 0 if false.
+   */
+  private static int encode(Bit b) {
+    return (b == UNKNOWN) ? 2 : ((b == TRUE) ? 1 : 0);
+  }
+
+  /**
+   * Decode a status flag packed by <code>getStatusFingerprint()</code>.
+   *
+   * @param status Packed status flags.
+   * @param shift  Position of flag within packed flags.
+   * @return Decoded flag.
+   */
+  private static Bit decode(int status, int shift) {
+    switch ((status >>> shift) & 3) {
+      case 2:
+        return UNKNOWN;
+      case 1:
+        return TRUE;
+      default:
+        return FALSE;
+    }
+  }
+
   @Override
   public int hashCode() {
-    return Objects.hash(this.data, Integer.valueOf(this.programCounter), this.carryFlag,
-        this.zeroFlag, this.negativeFlag, this.overflowFlag, this.signFlag, this.halfCarryFlag,
-        this.bitcopyFlag, this.interruptFlag);
+    return Long.hashCode(fingerprint());
   }
 
   @Override
@@ -241,11 +434,18 @@ public class AbstractAvr implements Cloneable {
    * @throws AVR.HaltedException Halted exception is thrown if this machine halts.
    */
   public @Nullable AbstractAvr clock() throws AVR.HaltedException {
+    // Reset events raised by previous clock
+    this.stackPointerChanged = false;
+    this.data.clearWritten();
     // First check for interrupts
     handleInterrupts();
+    this.executed = this.programCounter;
     // Second decode relevant instruction
     AvrInstruction insn = decode(this.programCounter);
-    // Dispatch on instruction
+    // Dispatch on instruction. Decoded instructions already hold their operands
+    // (e.g. register indices) as fields, and this compiles to a table switch of
+    // direct calls. Hence, translating each instruction into a cached handler
+    // object (which was tried) gives no measurable gain.
     switch (insn.getOpcode()) {
       case ADC:
         return execute((AvrInstruction.ADC) insn);
@@ -518,7 +718,10 @@ public class AbstractAvr implements Cloneable {
   /**
    * Decode an instruction at a given address, whilst updating the cache of
    * previously decoded instructions correctly. If the instruction was not
-   * previously decoded, then it will be now.
+   * previously decoded, then it will be now. Since instructions are immutable
+   * (i.e. all their fields are final), they can be safely read from the cache
+   * without locking. At worst, a thread sees a stale <code>null</code> and
+   * takes the lock.
    *
    * @param address Location in FLASH memory of instruction to be decoded.
    *
@@ -528,9 +731,14 @@ public class AbstractAvr implements Cloneable {
     @Nullable
     AvrInstruction insn = this.decoded[address];
     if (insn == null) {
-      // Instruction not previously decoded. Therefore, decode and cache for later.
-      insn = decoder.decode(this.code, address);
-      this.decoded[address] = insn;
+      synchronized (this.decoded) {
+        insn = this.decoded[address];
+        if (insn == null) {
+          // Instruction not previously decoded. Therefore, decode and cache for later.
+          insn = decoder.decode(this.code, address);
+          this.decoded[address] = insn;
+        }
+      }
       assert insn != null;
     }
     return insn;
@@ -551,7 +759,7 @@ public class AbstractAvr implements Cloneable {
         // yes, interrupt triggered so disable interrupts
         this.interruptFlag = FALSE;
         // push PC
-        pushWord(Word.from(this.programCounter));
+        pushWord(this.programCounter);
         // jump to interrupt vector
         this.programCounter = vector;
       }
@@ -1492,7 +1700,7 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.CALL insn) {
     this.programCounter = (this.programCounter + 2);
-    pushWord(Word.from(this.programCounter));
+    pushWord(this.programCounter);
     this.programCounter = insn.k;
     return null;
   }
@@ -1827,13 +2035,11 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.ICALL insn) {
     this.programCounter = this.programCounter + 1;
-    pushWord(Word.from(this.programCounter));
+    pushWord(this.programCounter);
     // read the Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check destination
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    this.programCounter = z.toInt();
+    this.programCounter = z;
     return null;
   }
 
@@ -1847,11 +2053,9 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.IJMP insn) {
     // read the Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check destination
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    this.programCounter = z.toInt();
+    this.programCounter = z;
     return null;
   }
 
@@ -1864,8 +2068,7 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.IN insn) {
     this.programCounter = this.programCounter + 1;
-    Byte rd = this.data.read(insn.A + 32);
-    this.data.write(insn.Rd, rd);
+    this.data.copy(insn.A + 32, insn.Rd);
     return null;
   }
 
@@ -1932,12 +2135,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LD_X insn) {
     this.programCounter = this.programCounter + 1;
     // Load X register
-    Word x = readWord(AVR.R26_XL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(x);
+    int x = readAddress(AVR.R26_XL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(x.toInt());
-    this.data.write(insn.Rd, rd);
+    this.data.copy(x, insn.Rd);
     return null;
   }
 
@@ -1950,14 +2150,11 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LD_X_INC insn) {
     this.programCounter = this.programCounter + 1;
     // Load X register
-    Word x = readWord(AVR.R26_XL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(x);
+    int x = readAddress(AVR.R26_XL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(x.toInt());
-    this.data.write(insn.Rd, rd);
+    this.data.copy(x, insn.Rd);
     // Post increment
-    writeWord(AVR.R26_XL_ADDRESS, x.inc());
+    writeAddress(AVR.R26_XL_ADDRESS, x + 1);
     //
     return null;
   }
@@ -1971,16 +2168,13 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LD_X_DEC insn) {
     this.programCounter = this.programCounter + 1;
     // Load X register
-    Word x = readWord(AVR.R26_XL_ADDRESS);
+    int x = readAddress(AVR.R26_XL_ADDRESS);
     // Pre decrement
-    x = x.dec();
-    // Sanity check address
-    checkAddressKnown(x);
+    x = x - 1;
     //
-    writeWord(AVR.R26_XL_ADDRESS, x);
+    writeAddress(AVR.R26_XL_ADDRESS, x);
     // Perform operation
-    Byte rd = this.data.read(x.toInt());
-    this.data.write(insn.Rd, rd);
+    this.data.copy(x, insn.Rd);
     return null;
   }
 
@@ -1998,12 +2192,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LD_Y insn) {
     this.programCounter = this.programCounter + 1;
     // Load Y register
-    Word y = readWord(AVR.R28_YL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(y);
+    int y = readAddress(AVR.R28_YL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(y.toInt());
-    this.data.write(insn.Rd, rd);
+    this.data.copy(y, insn.Rd);
     //
     return null;
   }
@@ -2017,14 +2208,11 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LD_Y_INC insn) {
     this.programCounter = this.programCounter + 1;
     // Load Y register
-    Word y = readWord(AVR.R28_YL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(y);
+    int y = readAddress(AVR.R28_YL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(y.toInt());
-    this.data.write(insn.Rd, rd);
+    this.data.copy(y, insn.Rd);
     // Post increment
-    writeWord(AVR.R28_YL_ADDRESS, y.inc());
+    writeAddress(AVR.R28_YL_ADDRESS, y + 1);
     return null;
   }
 
@@ -2037,16 +2225,13 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LD_Y_DEC insn) {
     this.programCounter = this.programCounter + 1;
     // Load Y register
-    Word y = readWord(AVR.R28_YL_ADDRESS);
+    int y = readAddress(AVR.R28_YL_ADDRESS);
     // Pre decrement
-    y = y.dec();
-    // Sanity check address
-    checkAddressKnown(y);
+    y = y - 1;
     // Perform operation
-    writeWord(AVR.R28_YL_ADDRESS, y);
+    writeAddress(AVR.R28_YL_ADDRESS, y);
     // Perform operation
-    Byte rd = this.data.read(y.toInt());
-    this.data.write(insn.Rd, rd);
+    this.data.copy(y, insn.Rd);
     //
     return null;
   }
@@ -2060,12 +2245,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LDD_Y_Q insn) {
     this.programCounter = this.programCounter + 1;
     // Load Y register
-    Word y = readWord(AVR.R28_YL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(y);
+    int y = readAddress(AVR.R28_YL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(y.toInt() + insn.q);
-    this.data.write(insn.Rd, rd);
+    this.data.copy(y + insn.q, insn.Rd);
     return null;
   }
 
@@ -2085,12 +2267,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LD_Z insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(z.toInt());
-    this.data.write(insn.Rd, rd);
+    this.data.copy(z, insn.Rd);
     return null;
   }
 
@@ -2103,14 +2282,11 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LD_Z_INC insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(z.toInt());
-    this.data.write(insn.Rd, rd);
+    this.data.copy(z, insn.Rd);
     // Post increment
-    writeWord(AVR.R30_ZL_ADDRESS, z.inc());
+    writeAddress(AVR.R30_ZL_ADDRESS, z + 1);
     return null;
   }
 
@@ -2123,15 +2299,12 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LD_Z_DEC insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Pre decrement
-    z = z.dec();
-    writeWord(AVR.R30_ZL_ADDRESS, z);
+    z = z - 1;
+    writeAddress(AVR.R30_ZL_ADDRESS, z);
     // Perform operation
-    Byte rd = this.data.read(z.toInt());
-    this.data.write(insn.Rd, rd);
+    this.data.copy(z, insn.Rd);
     //
     return null;
   }
@@ -2145,12 +2318,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LDD_Z_Q insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(z.toInt() + insn.q);
-    this.data.write(insn.Rd, rd);
+    this.data.copy(z + insn.q, insn.Rd);
     return null;
   }
 
@@ -2162,7 +2332,7 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.LDI insn) {
     this.programCounter = this.programCounter + 1;
-    this.data.write(insn.Rd, Byte.from((byte) insn.K));
+    this.data.write(insn.Rd, (byte) insn.K);
     return null;
   }
 
@@ -2179,8 +2349,7 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.LDS insn) {
     this.programCounter = (this.programCounter + 2);
-    Byte rd = this.data.read(insn.k);
-    this.data.write(insn.Rd, rd);
+    this.data.copy(insn.k, insn.Rd);
     //
     return null;
   }
@@ -2194,12 +2363,11 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LPM_Z insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    byte rd = this.code.read(z.toInt());
-    this.data.write(insn.Rd, Byte.from(rd));
+    byte b = this.code.read(z);
+    this.codeReads[z] = true;
+    this.data.write(insn.Rd, b);
     return null;
   }
 
@@ -2212,14 +2380,13 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.LPM_Z_INC insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    byte rd = this.code.read(z.toInt());
-    this.data.write(insn.Rd, Byte.from(rd));
+    byte b = this.code.read(z);
+    this.codeReads[z] = true;
+    this.data.write(insn.Rd, b);
     // Post increment
-    writeWord(AVR.R30_ZL_ADDRESS, z.inc());
+    writeAddress(AVR.R30_ZL_ADDRESS, z + 1);
     return null;
   }
 
@@ -2261,8 +2428,7 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.MOV insn) {
     this.programCounter = this.programCounter + 1;
-    Byte rd = this.data.read(insn.Rr);
-    this.data.write(insn.Rd, rd);
+    this.data.copy(insn.Rr, insn.Rd);
     //
     return null;
   }
@@ -2383,8 +2549,7 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.OUT insn) {
     this.programCounter = this.programCounter + 1;
-    Byte rd = this.data.read(insn.Rr);
-    this.data.write(insn.A + 32, rd);
+    this.data.copy(insn.Rr, insn.A + 32);
     //
     return null;
   }
@@ -2398,8 +2563,7 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.POP insn) {
     this.programCounter = this.programCounter + 1;
-    Byte rd = popByte();
-    this.data.write(insn.Rd, rd);
+    popByte(insn.Rd);
     //
     return null;
   }
@@ -2413,8 +2577,7 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.PUSH insn) {
     this.programCounter = this.programCounter + 1;
-    Byte rd = this.data.read(insn.Rd);
-    pushByte(rd);
+    pushByte(insn.Rd);
     //
     return null;
   }
@@ -2430,7 +2593,7 @@ public class AbstractAvr implements Cloneable {
    * @return Forked AVR state or <code>null</code> (if no fork).
    */
   private @Nullable AbstractAvr execute(AvrInstruction.RCALL insn) {
-    pushWord(Word.from(this.programCounter + 1));
+    pushWord(this.programCounter + 1);
     this.programCounter = this.programCounter + 1 + insn.k;
     //
     return null;
@@ -2444,11 +2607,7 @@ public class AbstractAvr implements Cloneable {
    * @return Forked AVR state or <code>null</code> (if no fork).
    */
   private @Nullable AbstractAvr execute(AvrInstruction.RET insn) {
-    Word address = popWord();
-    // Sanity check address
-    checkAddressKnown(address);
-    // Perform operation
-    this.programCounter = address.toInt();
+    this.programCounter = popWord();
     return null;
   }
 
@@ -2615,12 +2774,12 @@ public class AbstractAvr implements Cloneable {
       fork = this.clone();
 
       // In the fork, we assume the bit is FALSE and the next instruction is skipped.
-      fork.data.write(insn.A + 32, io.set(insn.b, TRUE));
+      fork.data.write(insn.A + 32, io.set(insn.b, FALSE));
       fork.programCounter = pc;
 
       // In the original state, we assume the bit is TRUE and the next instruction is
       // not skipped.
-      this.data.write(insn.A + 32, io.set(insn.b, FALSE));
+      this.data.write(insn.A + 32, io.set(insn.b, TRUE));
     } else {
       // If outcome is known, execute as normal
       if (iob == FALSE) {
@@ -2646,16 +2805,19 @@ public class AbstractAvr implements Cloneable {
     AbstractAvr fork = null;
     AvrInstruction following = decode(this.programCounter);
     int pc = this.programCounter + following.getWidth();
-    //
 
+    // Identify if the outcome is known or unknown.
     if (iob == UNKNOWN) {
+      // In the case of an unknown outcome, fork the current state.
       fork = this.clone();
+
+      // In the fork, we assume the bit is TRUE and the next instruction is skipped.
       fork.data.write(insn.A + 32, io.set(insn.b, TRUE));
-      fork.programCounter = this.getProgramCounter();
+      fork.programCounter = pc;
 
+      // In the original state, we assume the bit is FALSE and the next instruction is
+      // not skipped.
       this.data.write(insn.A + 32, io.set(insn.b, FALSE));
-      this.programCounter = this.programCounter + following.getWidth();
-
     } else {
       // If outcome is known, execute as normal
       if (iob == TRUE) {
@@ -2739,16 +2901,16 @@ public class AbstractAvr implements Cloneable {
       // the bit as TRUE on one fork and FALSE on the other.
 
       fork = this.clone();
-      // In the fork, we assume the bit is TRUE and the next instruction is skipped.
-      fork.data.write(insn.Rd, rd.set(insn.b, TRUE));
+      // In the fork, we assume the bit is FALSE and the next instruction is skipped.
+      fork.data.write(insn.Rd, rd.set(insn.b, FALSE));
       fork.programCounter = pc;
 
-      // In the original state, we assume the bit is FALSE and the next instruction is
+      // In the original state, we assume the bit is TRUE and the next instruction is
       // not skipped.
-      this.data.write(insn.Rd, rd.set(insn.b, FALSE));
+      this.data.write(insn.Rd, rd.set(insn.b, TRUE));
     } else {
       // If outcome is known, execute as normal
-      if (rdb == TRUE) {
+      if (rdb == FALSE) {
         this.programCounter = pc;
       }
     }
@@ -2920,12 +3082,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.ST_X insn) {
     this.programCounter = this.programCounter + 1;
     // Load X register
-    Word x = readWord(AVR.R26_XL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(x);
+    int x = readAddress(AVR.R26_XL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(x.toInt(), rd);
+    this.data.copy(insn.Rd, x);
     return null;
   }
 
@@ -2938,14 +3097,11 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.ST_X_INC insn) {
     this.programCounter = this.programCounter + 1;
     // Load X register
-    Word x = readWord(AVR.R26_XL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(x);
+    int x = readAddress(AVR.R26_XL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(x.toInt(), rd);
+    this.data.copy(insn.Rd, x);
     // Post increment
-    writeWord(AVR.R26_XL_ADDRESS, x.inc());
+    writeAddress(AVR.R26_XL_ADDRESS, x + 1);
     return null;
   }
 
@@ -2958,15 +3114,12 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.ST_X_DEC insn) {
     this.programCounter = this.programCounter + 1;
     // Load X register
-    Word x = readWord(AVR.R26_XL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(x);
+    int x = readAddress(AVR.R26_XL_ADDRESS);
     // Perform operation
-    x = x.dec();
-    writeWord(AVR.R26_XL_ADDRESS, x);
+    x = x - 1;
+    writeAddress(AVR.R26_XL_ADDRESS, x);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(x.toInt(), rd);
+    this.data.copy(insn.Rd, x);
     return null;
   }
 
@@ -2984,12 +3137,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.ST_Y insn) {
     this.programCounter = this.programCounter + 1;
     // Load Y register
-    Word y = readWord(AVR.R28_YL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(y);
+    int y = readAddress(AVR.R28_YL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(y.toInt(), rd);
+    this.data.copy(insn.Rd, y);
     return null;
   }
 
@@ -3002,14 +3152,11 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.ST_Y_INC insn) {
     this.programCounter = this.programCounter + 1;
     // Load Y register
-    Word y = readWord(AVR.R28_YL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(y);
+    int y = readAddress(AVR.R28_YL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(y.toInt(), rd);
+    this.data.copy(insn.Rd, y);
     // Post increment
-    writeWord(AVR.R28_YL_ADDRESS, y.inc());
+    writeAddress(AVR.R28_YL_ADDRESS, y + 1);
     return null;
   }
 
@@ -3022,15 +3169,12 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.ST_Y_DEC insn) {
     this.programCounter = this.programCounter + 1;
     // Load Y register
-    Word y = readWord(AVR.R28_YL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(y);
+    int y = readAddress(AVR.R28_YL_ADDRESS);
     // Pre decrement
-    y = y.dec();
-    writeWord(AVR.R28_YL_ADDRESS, y);
+    y = y - 1;
+    writeAddress(AVR.R28_YL_ADDRESS, y);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(y.toInt(), rd);
+    this.data.copy(insn.Rd, y);
     return null;
   }
 
@@ -3043,12 +3187,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.STD_Y_Q insn) {
     this.programCounter = this.programCounter + 1;
     // Load Y register
-    Word y = readWord(AVR.R28_YL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(y);
+    int y = readAddress(AVR.R28_YL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(y.toInt() + insn.q, rd);
+    this.data.copy(insn.Rd, y + insn.q);
     return null;
   }
 
@@ -3066,12 +3207,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.ST_Z insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(z.toInt(), rd);
+    this.data.copy(insn.Rd, z);
     return null;
   }
 
@@ -3084,14 +3222,11 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.ST_Z_INC insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(z.toInt(), rd);
+    this.data.copy(insn.Rd, z);
     // Post increment
-    writeWord(AVR.R30_ZL_ADDRESS, z.inc());
+    writeAddress(AVR.R30_ZL_ADDRESS, z + 1);
     return null;
   }
 
@@ -3104,15 +3239,12 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.ST_Z_DEC insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Pre decrement
-    z = z.dec();
-    writeWord(AVR.R30_ZL_ADDRESS, z);
+    z = z - 1;
+    writeAddress(AVR.R30_ZL_ADDRESS, z);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(z.toInt(), rd);
+    this.data.copy(insn.Rd, z);
     return null;
   }
 
@@ -3125,12 +3257,9 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.STD_Z_Q insn) {
     this.programCounter = this.programCounter + 1;
     // Load Z register
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(z.toInt() + insn.q, rd);
+    this.data.copy(insn.Rd, z + insn.q);
     return null;
   }
 
@@ -3147,8 +3276,7 @@ public class AbstractAvr implements Cloneable {
    */
   private @Nullable AbstractAvr execute(AvrInstruction.STS_DATA_WIDE insn) {
     this.programCounter = (this.programCounter + 2);
-    Byte rd = this.data.read(insn.Rd);
-    this.data.write(insn.k, rd);
+    this.data.copy(insn.Rd, insn.k);
     return null;
   }
 
@@ -3249,12 +3377,10 @@ public class AbstractAvr implements Cloneable {
   private @Nullable AbstractAvr execute(AvrInstruction.XCH insn) {
     this.programCounter = this.programCounter + 1;
     Byte rd = this.data.read(insn.Rd);
-    Word z = readWord(AVR.R30_ZL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(z);
+    int z = readAddress(AVR.R30_ZL_ADDRESS);
     // Perform operation
-    this.data.write(insn.Rd, this.data.read(z.toInt()));
-    this.data.write(z.toInt(), rd);
+    this.data.write(insn.Rd, this.data.read(z));
+    this.data.write(z, rd);
     //
     return null;
   }
@@ -3329,40 +3455,37 @@ public class AbstractAvr implements Cloneable {
 
   /**
    * Push a byte onto the stack. This will first load the <code>SP</code> from
-   * memory and then write the given byte to that location. For this to succeed,
-   * the location must be <i>known</i>.
+   * memory and then copy the byte at a given address to that location. For this
+   * to succeed, the location must be <i>known</i>.
    *
-   * @param bite Byte value to be pushed.
+   * @param address Address of byte value to be pushed.
    */
-  private void pushByte(Byte bite) {
+  private void pushByte(int address) {
+    this.stackPointerChanged = true;
     // Construct SP contents
-    Word sp = readWord(AVR.SPL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(sp);
+    int sp = readAddress(AVR.SPL_ADDRESS);
     // Write data
-    this.data.write(sp.toInt(), bite);
+    this.data.copy(address, sp);
     // Post-decrement stack pointer
-    sp = sp.dec();
-    writeWord(AVR.SPL_ADDRESS, sp);
+    writeAddress(AVR.SPL_ADDRESS, sp - 1);
   }
 
   /**
    * Pop a byte from the stack. This will first load the <code>SP</code> from
-   * memory and then read the given byte from that location. For this to succeed,
-   * the location must be <i>known</i>.
+   * memory and then copy the byte at that location to a given address. For this
+   * to succeed, the location must be <i>known</i>.
    *
-   * @return Byte read from stack
+   * @param address Address where byte read from stack is written.
    */
-  private Byte popByte() {
+  private void popByte(int address) {
+    this.stackPointerChanged = true;
     // Construct SP contents
-    Word sp = readWord(AVR.SPL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(sp);
+    int sp = readAddress(AVR.SPL_ADDRESS);
     // Pre-increment stack pointer
-    sp = sp.inc();
-    writeWord(AVR.SPL_ADDRESS, sp);
+    sp = sp + 1;
+    writeAddress(AVR.SPL_ADDRESS, sp);
     // read data
-    return this.data.read(sp.toInt());
+    this.data.copy(sp, address);
   }
 
   /**
@@ -3372,36 +3495,33 @@ public class AbstractAvr implements Cloneable {
    *
    * @param word Value to be pushed.
    */
-  private void pushWord(Word word) {
+  private void pushWord(int word) {
+    this.stackPointerChanged = true;
     // Construct SP contents
-    Word sp = readWord(AVR.SPL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(sp);
+    int sp = readAddress(AVR.SPL_ADDRESS);
     // Write data
-    sp = sp.dec();
-    writeWord(sp.toInt(), word);
+    sp = sp - 1;
+    writeAddress(sp, word);
     // Post-decrement stack pointer
-    sp = sp.dec();
-    writeWord(AVR.SPL_ADDRESS, sp);
+    writeAddress(AVR.SPL_ADDRESS, sp - 1);
   }
 
   /**
    * Pop a 16bit word from the stack. This will first load the <code>SP</code>
    * from memory and then read from that and the following location. For this to
-   * succeed, the location must be <i>known</i>.
+   * succeed, both the location and the word read must be <i>known</i>.
    *
    * @return The word read from the stack.
    */
-  private Word popWord() {
+  private int popWord() {
+    this.stackPointerChanged = true;
     // Construct SP contents
-    Word sp = readWord(AVR.SPL_ADDRESS);
-    // Sanity check address
-    checkAddressKnown(sp);
+    int sp = readAddress(AVR.SPL_ADDRESS);
     // Pre-increment stack pointer
-    sp = sp.add((byte) 2);
-    writeWord(AVR.SPL_ADDRESS, sp);
+    sp = sp + 2;
+    writeAddress(AVR.SPL_ADDRESS, sp);
     // read data
-    return readWord(sp.toInt() - 1);
+    return readAddress(sp - 1);
   }
 
   /**
@@ -3413,9 +3533,10 @@ public class AbstractAvr implements Cloneable {
    * @return Word read from given address
    */
   public Word readWord(int address) {
-    Byte msb = this.data.read(address + 1);
-    Byte lsb = this.data.read(address);
-    return Word.from(msb, lsb);
+    if (this.data.isUnknown(address) || this.data.isUnknown(address + 1)) {
+      return Word.from(Byte.UNKNOWN, Byte.UNKNOWN);
+    }
+    return Word.from(toWord(address));
   }
 
   /**
@@ -3427,23 +3548,58 @@ public class AbstractAvr implements Cloneable {
    * @param word    Word to be written.
    */
   public void writeWord(int address, Word word) {
-    this.data.write(address, word.getLow());
-    this.data.write(address + 1, word.getHigh());
+    if (address >= AVR.SPL_ADDRESS - 1 && address <= AVR.SPL_ADDRESS + 1) {
+      this.stackPointerChanged = true;
+    }
+    if (word.isUnknown()) {
+      this.data.write(address, Byte.UNKNOWN);
+      this.data.write(address + 1, Byte.UNKNOWN);
+    } else {
+      writeAddress(address, word.toInt());
+    }
   }
 
   /**
-   * Check a given 16bit address has a <i>known</i> value and, if not, report a
-   * suitable error. This is necessary because some operations cannot proceed
-   * without a known address.
+   * Read a 16-bit address from a given location in this machine (e.g. the stack
+   * pointer, or one of the X, Y or Z registers). This must have a <i>known</i>
+   * value, since operations using the address cannot proceed otherwise and,
+   * hence, a suitable error is reported if not.
    *
-   * @param address The address to check.
+   * @param address Location to read from.
+   * @return Address read from given location.
    */
-  private void checkAddressKnown(Word address) {
-    if (address.isUnknown()) {
+  private int readAddress(int address) {
+    if (this.data.isUnknown(address) || this.data.isUnknown(address + 1)) {
       String pcHex = Integer.toHexString(this.programCounter);
-      throw new 
+      throw new
       IllegalArgumentException("Unknown indirect address (PC=0x" + pcHex + RBRACE); //$NON-NLS-1$
     }
+    return toWord(address);
+  }
+
+  /**
+   * Write a 16-bit (known) address to a given location in this machine. As for
+   * <code>writeWord()</code>, the low byte is stored first.
+   *
+   * @param address Location where to write address.
+   * @param word    Address to be written.
+   */
+  private void writeAddress(int address, int word) {
+    this.data.write(address, (byte) word);
+    this.data.write(address + 1, (byte) (word >> 8));
+  }
+
+  /**
+   * Combine the concrete bytes at a given location and the following location
+   * into a 16-bit word.
+   *
+   * @param address Location of low byte.
+   * @return Combined word.
+   */
+  private int toWord(int address) {
+    int msb = this.data.getValue(address + 1) & 0xFF;
+    int lsb = this.data.getValue(address) & 0xFF;
+    return (msb << 8) | lsb;
   }
 
   /**
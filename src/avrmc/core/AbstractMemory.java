@@ -1,22 +1,74 @@
 package avrmc.core;
 
 import java.util.Arrays;
-import org.eclipse.jdt.annotation.NonNull;
 import org.eclipse.jdt.annotation.Nullable;
 
 /**
  * Provides an abstract version of javr.core.Memory which holds abstract values,
  * rather than just concrete bytes. This interface attempts to reduce memory
- * allocation / deallocation for the common case of writing a known value.
+ * allocation / deallocation for the common case of writing a known value. To
+ * that end, concrete values are packed into primitive arrays alongside a
+ * bitmap identifying those locations whose value is (at least partially)
+ * unknown. The masks of known bits for partially known locations are held
+ * separately, and only allocated for pages which have any. The primitive
+ * accessors (e.g. <code>isUnknown(int)</code> and <code>getValue(int)</code>)
+ * never allocate and should be preferred on hot paths.
+ *
+ * <p>
+ * Memory is divided into fixed-size pages which are shared between a memory
+ * and its copies, and copied only when first written (i.e. copy-on-write).
+ * This matters because the model checker copies a machine state at every
+ * fork, whilst the fork typically then modifies only a handful of registers
+ * and stack locations. Hence, the cost of copying a memory is proportional to
+ * the number of pages subsequently written, rather than to its size.
+ * </p>
  *
  * @author David J. Pearce
  *
  */
 public class AbstractMemory {
   /**
-   * Array of (abstract) bytes which make up this memory.
+   * Base two logarithm of the page size. Since the unknown bitmap of a page is
+   * held in an <code>int</code>, pages cannot be larger than 32 bytes.
+   */
+  private static final int PAGE_BITS = 5;
+  /**
+   * Number of bytes in a page.
+   */
+  private static final int PAGE_SIZE = 1 << PAGE_BITS;
+  /**
+   * Mask for extracting the offset within a page from an address.
+   */
+  private static final int PAGE_MASK = PAGE_SIZE - 1;
+  /**
+   * Number of bytes in this memory.
+   */
+  private final int size;
+  /**
+   * The pages making up this memory, some of which may be shared with other
+   * memories.
+   */
+  private final Page[] pages;
+  /**
+   * Bitmap identifying those pages owned by this memory which, hence, can be
+   * written directly. Any other page may be shared and must be copied before
+   * being written.
+   */
+  private final long[] owned;
+  /**
+   * Zobrist hash of this memory, which is maintained incrementally on every
+   * write. This is the exclusive-or of <code>zobrist(a,v)</code> for every
+   * address <code>a</code> holding value <code>v</code>.
+   */
+  private long hash;
+  /**
+   * Lowest address written since <code>clearWritten()</code> was last called.
    */
-  private final @NonNull Byte[] bytes;
+  private int writtenLow = Integer.MAX_VALUE;
+  /**
+   * Highest address written since <code>clearWritten()</code> was last called.
+   */
+  private int writtenHigh = -1;
 
   /**
    * Construct a new abstract memory of a given size. All locations are initially
@@ -25,23 +77,30 @@ public class AbstractMemory {
    * @param size Size (in bytes) of memory to construct.
    */
   public AbstractMemory(int size) {
-    this.bytes = new @NonNull Byte[size];
-    for (int i = 0; i != this.bytes.length; ++i) {
-      this.bytes[i] = Byte.from((byte) 0);
+    int n = (size + PAGE_MASK) >>> PAGE_BITS;
+    this.size = size;
+    this.pages = new Page[n];
+    this.owned = new long[(n + 63) >>> 6];
+    for (int i = 0; i != n; ++i) {
+      // NOTE: last page may be partial
+      this.pages[i] = new Page(Math.min(PAGE_SIZE, size - (i << PAGE_BITS)));
     }
+    Arrays.fill(this.owned, -1L);
   }
 
   /**
-   * Construct an exact copy of this abstract memory.
+   * Construct an exact copy of this abstract memory. Initially, every page is
+   * shared between the two memories.
    *
    * @param mem Abstract memory to copy.
    */
   public AbstractMemory(AbstractMemory mem) {
-    final int n = mem.bytes.length;
-    this.bytes = new @NonNull Byte[n];
-    for (int i = 0; i != n; ++i) {
-      this.bytes[i] = mem.bytes[i];
-    }
+    this.size = mem.size;
+    this.pages = mem.pages.clone();
+    this.owned = new long[mem.owned.length];
+    this.hash = mem.hash;
+    // Pages are now shared, so the original memory cannot write them either.
+    Arrays.fill(mem.owned, 0L);
   }
 
   /**
@@ -52,7 +111,48 @@ public class AbstractMemory {
    * @return Value read from given address.
    */
   public Byte read(int address) {
-    return this.bytes[address];
+    if (isUnknown(address)) {
+      return Byte.from(getValue(address), getKnownBits(address));
+    }
+    return Byte.from(getValue(address));
+  }
+
+  /**
+   * Check whether the byte at a given address has unknown value. This includes
+   * bytes where only some bits are unknown.
+   *
+   * @param address Address to check.
+   * @return True if the value at the given address is unknown.
+   */
+  public boolean isUnknown(int address) {
+    return (this.pages[address >>> PAGE_BITS].unknowns & (1 << address)) != 0;
+  }
+
+  /**
+   * Get the mask identifying which bits of the byte at a given address are
+   * known.
+   *
+   * @param address Address to check.
+   * @return Mask of known bits, which is <code>0xFF</code> for a concrete byte
+   *         and zero for a completely unknown byte.
+   */
+  public byte getKnownBits(int address) {
+    if (!isUnknown(address)) {
+      return (byte) 0xFF;
+    }
+    byte[] masks = this.pages[address >>> PAGE_BITS].masks;
+    return masks == null ? 0 : masks[address & PAGE_MASK];
+  }
+
+  /**
+   * Get the concrete value of the byte at a given address. Any unknown bits of
+   * the byte at that address are returned as zero.
+   *
+   * @param address Address to read from.
+   * @return Concrete value at the given address.
+   */
+  public byte getValue(int address) {
+    return this.pages[address >>> PAGE_BITS].values[address & PAGE_MASK];
   }
 
   /**
@@ -62,7 +162,86 @@ public class AbstractMemory {
    * @param value   Value to be written.
    */
   public void write(int address, Byte value) {
-    this.bytes[address] = value;
+    if (value.isUnknown()) {
+      Page page = getWritablePage(address);
+      int offset = address & PAGE_MASK;
+      byte v = value.toPartialByte();
+      byte known = value.getKnownBits();
+      written(address);
+      this.hash ^= zobrist(address, page.get(offset))
+          ^ zobrist(address, UNKNOWN | ((known & 0xFF) << 9) | (v & 0xFF));
+      page.values[offset] = v;
+      page.unknowns |= (1 << address);
+      page.setMask(offset, known);
+    } else {
+      write(address, value.toByte());
+    }
+  }
+
+  /**
+   * Write a concrete byte to a given address.
+   *
+   * @param address Address to write to.
+   * @param value   Value to be written.
+   */
+  public void write(int address, byte value) {
+    Page page = getWritablePage(address);
+    int offset = address & PAGE_MASK;
+    written(address);
+    this.hash ^= zobrist(address, page.get(offset)) ^ zobrist(address, value & 0xFF);
+    page.values[offset] = value;
+    page.unknowns &= ~(1 << address);
+    page.setMask(offset, (byte) 0);
+  }
+
+  /**
+   * Copy the (abstract) byte at one address to another address.
+   *
+   * @param from Address to copy from.
+   * @param to   Address to copy to.
+   */
+  public void copy(int from, int to) {
+    if (isUnknown(from)) {
+      write(to, read(from));
+    } else {
+      write(to, getValue(from));
+    }
+  }
+
+  /**
+   * Forget which addresses have been written, such that
+   * <code>isWritten()</code> subsequently considers only later writes.
+   */
+  public void clearWritten() {
+    this.writtenLow = Integer.MAX_VALUE;
+    this.writtenHigh = -1;
+  }
+
+  /**
+   * Check whether any address in a given range may have been written since
+   * <code>clearWritten()</code> was last called (or this memory was
+   * constructed). Only the lowest and highest addresses written are tracked,
+   * hence this may report a write where there was none (e.g. when addresses
+   * either side of the range were written), but never the converse.
+   *
+   * @param start First address in range.
+   * @param end   Address after the last in range.
+   * @return True if some address in the range may have been written.
+   */
+  public boolean isWritten(int start, int end) {
+    return this.writtenLow < end && this.writtenHigh >= start;
+  }
+
+  /**
+   * Record that a given address has been written, without changing its
+   * contents. This is for writes made outside of a clock (which would otherwise
+   * be forgotten when the clock calls <code>clearWritten()</code>), such that
+   * <code>isWritten()</code> still reports them.
+   *
+   * @param address Address written.
+   */
+  public void markWritten(int address) {
+    written(address);
   }
 
   /**
@@ -71,7 +250,164 @@ public class AbstractMemory {
    * @return Size in bytes.
    */
   public int size() {
-    return this.bytes.length;
+    return this.size;
+  }
+
+  /**
+   * Get an estimate of the number of bytes retained by this memory. Pages which
+   * may be shared with other memories are not included, since they are
+   * accounted for by the memory which last wrote them.
+   *
+   * @return Estimated size in bytes.
+   */
+  public long getMemoryUsage() {
+    long bytes = 64 + (4L * this.pages.length) + (8L * this.owned.length);
+    long usage = bytes + (getOwnedPages() * (40L + PAGE_SIZE));
+    for (int i = 0; i != this.pages.length; ++i) {
+      if ((this.owned[i >>> 6] & (1L << i)) != 0 && this.pages[i].masks != null) {
+        usage += 16 + PAGE_SIZE;
+      }
+    }
+    return usage;
+  }
+
+  /**
+   * Get the number of pages owned by this memory (i.e. not shared with any
+   * other memory). For a copy, this is the number of pages written since it was
+   * made.
+   *
+   * @return Number of owned pages.
+   */
+  public int getOwnedPages() {
+    int count = 0;
+    for (int i = 0; i != this.owned.length; ++i) {
+      count += Long.bitCount(this.owned[i]);
+    }
+    return Math.min(count, this.pages.length);
+  }
+
+  /**
+   * Copy the contents of the page containing a given address into a given
+   * array. This consists of the concrete value of every location in the page
+   * (where unknown bits hold zero), followed by the mask of known bits for every
+   * unknown location (where other locations hold zero), and then the unknown
+   * bitmap of the page (in big-endian order). Locations beyond the end of this
+   * memory are treated as zero. Hence, exactly <code>(2 * PAGE_SIZE) + 4</code>
+   * bytes are written.
+   *
+   * @param address Address within page to copy, which must be within this
+   *                memory.
+   * @param out     Array to copy into.
+   * @param offset  Offset within array to copy into.
+   */
+  void copyPage(int address, byte[] out, int offset) {
+    Page page = this.pages[address >>> PAGE_BITS];
+    int n = page.values.length;
+    System.arraycopy(page.values, 0, out, offset, n);
+    Arrays.fill(out, offset + n, offset + PAGE_SIZE, (byte) 0);
+    byte[] masks = page.masks;
+    if (masks != null) {
+      System.arraycopy(masks, 0, out, offset + PAGE_SIZE, n);
+      Arrays.fill(out, offset + PAGE_SIZE + n, offset + (2 * PAGE_SIZE), (byte) 0);
+    } else {
+      Arrays.fill(out, offset + PAGE_SIZE, offset + (2 * PAGE_SIZE), (byte) 0);
+    }
+    int unknowns = page.unknowns;
+    int end = offset + (2 * PAGE_SIZE);
+    out[end] = (byte) (unknowns >>> 24);
+    out[end + 1] = (byte) (unknowns >>> 16);
+    out[end + 2] = (byte) (unknowns >>> 8);
+    out[end + 3] = (byte) unknowns;
+  }
+
+  /**
+   * Record that a given address has been written.
+   *
+   * @param address Address written.
+   */
+  private void written(int address) {
+    if (address < this.writtenLow) {
+      this.writtenLow = address;
+    }
+    if (address > this.writtenHigh) {
+      this.writtenHigh = address;
+    }
+  }
+
+  /**
+   * Get a 64-bit fingerprint of this abstract memory. Unlike
+   * <code>hashCode()</code>, this is intended to be used in place of the memory
+   * itself (e.g. for recording visited states) and, hence, distinguishes unknown
+   * bytes from every concrete value. Since this is maintained incrementally, it
+   * takes constant time.
+   *
+   * @return 64-bit fingerprint.
+   */
+  public long fingerprint() {
+    return this.hash;
+  }
+
+  /**
+   * Get the page containing a given address, such that it can be written. If
+   * this memory does not own that page, then it is copied first.
+   *
+   * @param address Address about to be written.
+   * @return Page which can be safely written.
+   */
+  private Page getWritablePage(int address) {
+    int index = address >>> PAGE_BITS;
+    Page page = this.pages[index];
+    long bit = 1L << index;
+    if ((this.owned[index >>> 6] & bit) == 0) {
+      page = new Page(page);
+      this.pages[index] = page;
+      this.owned[index >>> 6] |= bit;
+    }
+    return page;
+  }
+
+  /**
+   * Value used to represent an unknown byte when computing Zobrist hashes. A
+   * partially known byte is represented by this combined with its known mask
+   * (shifted left by nine) and the value of its known bits.
+   */
+  private static final int UNKNOWN = 0x100;
+
+  /**
+   * Determine the contribution to the Zobrist hash of a given address holding a
+   * given value. Rather than using a table of random numbers (which would be
+   * large), these are generated by mixing the address and value together. A
+   * location holding zero contributes nothing, so that the hash of a freshly
+   * constructed memory is zero.
+   *
+   * @param address Address of location.
+   * @param value   Unsigned value at that location, or its encoding as an
+   *                (partially) <code>UNKNOWN</code> byte.
+   * @return 64-bit contribution to hash.
+   */
+  private static long zobrist(int address, int value) {
+    if (value == 0) {
+      return 0;
+    }
+    return mix(((long) address << 17) | value);
+  }
+
+  /**
+   * Finalisation step of the MurmurHash3 64-bit hash function. This mixes the
+   * bits of a given value so that every input bit affects every output bit,
+   * which is important when fingerprints are used directly as table indices.
+   *
+   * @param h Value to be mixed.
+   * @return Mixed value.
+   */
+  static long mix(long h) {
+    long r = h;
+    r ^= r >>> 33;
+    r *= 0xFF51AFD7ED558CCDL;
+    r ^= r >>> 33;
+    r *= 0xC4CEB9FE1A85EC53L;
+    r ^= r >>> 33;
+    return r;
   }
 
   /**
@@ -81,7 +417,7 @@ public class AbstractMemory {
    */
   @Override
   public int hashCode() {
-    return Arrays.hashCode(this.bytes);
+    return Long.hashCode(this.hash);
   }
 
   /**
@@ -99,111 +435,256 @@ public class AbstractMemory {
       return false;
     }
     AbstractMemory other = (AbstractMemory) obj;
-
-    return Arrays.equals(this.bytes, other.bytes);
+    if (this.size != other.size || this.hash != other.hash) {
+      return false;
+    }
+    for (int i = 0; i != this.pages.length; ++i) {
+      Page l = this.pages[i];
+      Page r = other.pages[i];
+      // NOTE: shared pages are trivially equal
+      if (l != r && !l.equals(r)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   /**
-   * Represents a byte in memory which has a potentially <i>unknown</i> value.
+   * Represents a fixed-size region of an abstract memory, which may be shared
+   * between several memories. A page must only be modified by the memory which
+   * owns it.
    *
    * @author David J. Pearce
    *
    */
-  public final static class Byte {
+  private static final class Page {
     /**
-     * Represents the special unknown byte.
+     * Concrete value of each location in this page. Unknown bits always hold zero
+     * here, so that pages can be compared and hashed directly on this array.
      */
-    public static final Byte UNKNOWN = new Byte();
-
+    final byte[] values;
     /**
-     * Represents a concrete value within this byte.
+     * Bitmap identifying which locations in this page have (at least partially)
+     * unknown value.
      */
-    private final byte value;
+    int unknowns;
     /**
-     * Indicates whether this byte is unknown or not.
+     * Mask of known bits for each unknown location in this page, where every
+     * other location holds zero. This is <code>null</code> until some location
+     * in this page is partially known, which is treated as all zero (i.e. every
+     * unknown location is completely unknown).
      */
-    private final boolean unknown;
+    byte @Nullable [] masks;
 
     /**
-     * Construct a concrete byte.
+     * Construct a page of a given size, where every location is zero.
      *
-     * @param value Value to be instantiated.
+     * @param size Number of bytes in this page.
      */
-    private Byte(byte value) {
-      this.value = value;
-      this.unknown = false;
+    Page(int size) {
+      this.values = new byte[size];
     }
 
     /**
-     * Construct the unknown byte.
+     * Construct a copy of a given page.
+     *
+     * @param page Page to be copied.
      */
-    private Byte() {
-      this.value = 0;
-      this.unknown = true;
+    Page(Page page) {
+      byte[] masks = page.masks;
+      this.values = page.values.clone();
+      this.unknowns = page.unknowns;
+      this.masks = masks == null ? null : masks.clone();
     }
 
     /**
-     * Returns a hash code value for the object.
+     * Get the value at a given offset within this page, encoded as for
+     * <code>zobrist()</code>.
      *
-     * @return a hash code value for this object. When 'unknown' is true, only the
-     *         'unknown' field contributes to the hash code. Otherwise, both the
-     *         'unknown' and 'value' fields contribute.
+     * @param offset Offset within page.
+     * @return Unsigned value at that offset, or its encoding as an unknown byte.
      */
-    @Override
-    public int hashCode() {
-      final int prime = 31;
-      int result = 7;
-      if (this.isUnknown()) {
-        result = prime * result + 128;
-      } else {
-        result = prime * result + this.value;
+    int get(int offset) {
+      if ((this.unknowns & (1 << offset)) != 0) {
+        byte[] masks = this.masks;
+        int known = masks == null ? 0 : masks[offset] & 0xFF;
+        return UNKNOWN | (known << 9) | (this.values[offset] & 0xFF);
       }
-      return result;
+      return this.values[offset] & 0xFF;
     }
 
     /**
-     * Compares this Byte object with the specified object for equality. Returns
-     * true if the specified object is also a Byte object and has the same value and
-     * unknown flag as this object.
+     * Set the mask of known bits at a given offset within this page, allocating
+     * the masks only when first needed.
      *
-     * @param obj the object to compare for equality
-     * @return true if the specified object is equal to this Byte object, false
-     *         otherwise
+     * @param offset Offset within page.
+     * @param known  Mask of known bits, which is zero for any location which is
+     *               completely unknown or completely known.
      */
+    void setMask(int offset, byte known) {
+      byte[] masks = this.masks;
+      if (masks != null) {
+        masks[offset] = known;
+      } else if (known != 0) {
+        masks = new byte[this.values.length];
+        masks[offset] = known;
+        this.masks = masks;
+      }
+    }
+
+    @Override
+    public int hashCode() {
+      return (31 * Arrays.hashCode(this.values)) + this.unknowns;
+    }
+
     @Override
     public boolean equals(@Nullable Object obj) {
       if (this == obj) {
         return true;
       }
-      if (obj == null) {
-        return false;
-      }
-      if (getClass() != obj.getClass()) {
+      if (!(obj instanceof Page)) {
         return false;
       }
-      Byte other = (Byte) obj;
-      if (this.unknown != other.unknown) {
-        return false;
+      Page other = (Page) obj;
+      return this.unknowns == other.unknowns && Arrays.equals(this.values, other.values)
+          && sameMasks(this.masks, other.masks);
+    }
+
+    /**
+     * Check whether two sets of masks are equal, where a missing set is
+     * equivalent to one which is all zero.
+     *
+     * @param l Leftmost masks, or <code>null</code>.
+     * @param r Rightmost masks, or <code>null</code>.
+     * @return True if the masks are equivalent.
+     */
+    private static boolean sameMasks(byte @Nullable [] l, byte @Nullable [] r) {
+      if (l != null && r != null) {
+        return Arrays.equals(l, r);
       }
-      if (this.value != other.value) {
-        return false;
+      byte[] m = l != null ? l : r;
+      if (m != null) {
+        for (int i = 0; i != m.length; ++i) {
+          if (m[i] != 0) {
+            return false;
+          }
+        }
       }
       return true;
     }
+  }
+
+  /**
+   * Represents a byte in memory which has a potentially <i>unknown</i> value.
+   * Unknowns are tracked for each bit individually, such that a byte may be
+   * partially known (e.g. the result of masking an unknown value with
+   * <code>0x0F</code> has its upper four bits known to be zero). This matters
+   * because firmware typically tests individual bits of an unknown input (e.g.
+   * a button on an I/O pin), and a test of a bit which is known need not fork.
+   *
+   * <p>
+   * A byte is represented by a mask identifying its known bits, along with the
+   * value of those bits (where unknown bits are always zero). Operations are
+   * precise for each bit where possible: bitwise operations and shifts never
+   * lose information, whilst arithmetic operations propagate unknown carries
+   * only as far as they can reach.
+   * </p>
+   *
+   * @author David J. Pearce
+   *
+   */
+  public final static class Byte {
+    /**
+     * Represents the special unknown byte, where no bit is known.
+     */
+    public static final Byte UNKNOWN = new Byte((byte) 0, (byte) 0);
+    /**
+     * Canonical instances for every abstract byte, indexed by known mask (in the
+     * upper eight bits) and value (in the lower eight bits). Since abstract bytes
+     * are immutable, these are shared rather than allocating a fresh instance for
+     * every arithmetic result. Only those entries whose value has no bits set
+     * outside the known mask are populated.
+     */
+    private static final Byte[] VALUES = new Byte[65536];
+
+    static {
+      for (int known = 0; known != 256; ++known) {
+        // Enumerate every subset of the known mask
+        int value = 0;
+        do {
+          VALUES[(known << 8) | value] = new Byte((byte) value, (byte) known);
+          value = (value - known) & known;
+        } while (value != 0);
+      }
+      VALUES[0] = UNKNOWN;
+    }
+
+    /**
+     * Value of the known bits within this byte. Unknown bits are always zero.
+     */
+    private final byte value;
+    /**
+     * Mask identifying which bits of this byte are known.
+     */
+    private final byte known;
 
     /**
-     * Perform a arithmetic ADDITION with another byte.
+     * Construct an abstract byte.
+     *
+     * @param value Value of known bits.
+     * @param known Mask identifying known bits.
+     */
+    private Byte(byte value, byte known) {
+      this.value = value;
+      this.known = known;
+    }
+
+    /**
+     * Returns a hash code value for the object.
+     *
+     * @return a hash code value for this object, which is formed from the known
+     *         mask and the value of the known bits.
+     */
+    @Override
+    public int hashCode() {
+      return ((this.known & 0xFF) << 8) | (this.value & 0xFF);
+    }
+
+    /**
+     * Compares this Byte object with the specified object for equality. Returns
+     * true if the specified object is also a Byte object with the same known bits,
+     * which have the same value. Since every abstract byte is canonical (i.e.
+     * there is exactly one instance for each value), this reduces to an identity
+     * comparison.
+     *
+     * @param obj the object to compare for equality
+     * @return true if the specified object is equal to this Byte object, false
+     *         otherwise
+     */
+    @Override
+    public boolean equals(@Nullable Object obj) {
+      return this == obj;
+    }
+
+    /**
+     * Perform a arithmetic ADDITION with another byte. A carry out of a known bit
+     * is known, unless an unknown bit could have contributed to it.
      *
      * @param rhs Right hand parameter for this operation.
      * @return Resulting byte.
      */
     public Byte add(Byte rhs) {
-      // if either this or rhs are UNKNOWN in addition, then return UNKNOWN
-      if (this.isUnknown() || rhs.isUnknown()) {
-        return UNKNOWN;
+      if ((this.known & rhs.known) == -1) {
+        // Common case where both are concrete
+        return from((byte) (this.value + rhs.value));
       }
-      // continue if neither are UNKOWN
-      return new Byte((byte) (this.value + rhs.value));
+      int lu = unknownBits();
+      int ru = rhs.unknownBits();
+      int sum = this.value + rhs.value;
+      // Bits which differ between the smallest and largest sums may vary
+      int carries = (sum + lu + ru) ^ sum;
+      int u = carries | lu | ru;
+      return of(sum & ~u, u);
     }
 
     /**
@@ -213,10 +694,10 @@ public class AbstractMemory {
      * @return Resulting byte.
      */
     public Byte and(Byte rhs) {
-      if (this.isUnknown() || rhs.isUnknown()) {
-        return UNKNOWN;
-      }
-      return new Byte((byte) (this.value & rhs.value)); // standard binary AND for True and False
+      int v = this.value & rhs.value;
+      // Bits which may be one in both operands, but are not known to be
+      int u = (this.value | unknownBits()) & (rhs.value | rhs.unknownBits()) & ~v;
+      return of(v, u);
     }
 
     /**
@@ -227,20 +708,24 @@ public class AbstractMemory {
      */
     public Byte clear(int index) {
       int mask = ~(1 << index);
-      return new Byte((byte) (this.value & mask));
+      return of(this.value & mask, unknownBits() & mask);
     }
 
     /**
-     * Check whether this abstract byte is equal to another abstract byte.
+     * Check whether this abstract byte is equal to another abstract byte. This is
+     * known to be false when some bit known in both differs.
      *
      * @param rhs Right hand parameter for this operation.
      * @return Resulting byte.
      */
     public Bit eq(Byte rhs) {
-      if (this.isUnknown() || rhs.isUnknown()) {
+      int u = unknownBits() | rhs.unknownBits();
+      if (((this.value ^ rhs.value) & ~u & 0xFF) != 0) {
+        return Bit.FALSE;
+      } else if (u != 0) {
         return Bit.UNKNOWN;
       }
-      return this.value == rhs.value ? Bit.TRUE : Bit.FALSE;
+      return Bit.TRUE;
     }
 
     /**
@@ -250,35 +735,53 @@ public class AbstractMemory {
      * @return Bit at given index.
      */
     public Bit get(int index) {
-      if (this.unknown) {
+      int mask = 1 << index;
+      if ((this.known & mask) == 0) {
         return Bit.UNKNOWN;
-      } else if ((this.value & (1 << index)) != 0) {
+      } else if ((this.value & mask) != 0) {
         return Bit.TRUE;
       } else {
         return Bit.FALSE;
       }
     }
 
+    /**
+     * Get the mask identifying which bits of this byte are known.
+     *
+     * @return Mask of known bits, which is <code>0xFF</code> for a concrete byte.
+     */
+    public byte getKnownBits() {
+      return this.known;
+    }
+
+    /**
+     * Get the value of the known bits within this byte, where unknown bits are
+     * zero. Unlike <code>toByte()</code>, this never throws an exception.
+     *
+     * @return Value of known bits.
+     */
+    public byte toPartialByte() {
+      return this.value;
+    }
+
     /**
      * Increment this abstract byte by one.
      *
      * @return Updated byte.
      */
     public Byte inc() {
-      if (this.isUnknown()) {
-        return UNKNOWN;
-      }
-      return new Byte((byte) (this.value + 1));
+      return add(VALUES[0xFF01]);
     }
 
     /**
      * Check whether this value is unknown or not. That is, whether this abstract
-     * value has a known value or not.
+     * value has a known value or not. A byte which is only partially known is
+     * considered unknown.
      *
-     * @return True if this byte has an unknown value, or false otherwise.
+     * @return True if some bit of this byte is unknown, or false otherwise.
      */
     public boolean isUnknown() {
-      return this.unknown;
+      return this.known != -1;
     }
 
     /**
@@ -287,13 +790,12 @@ public class AbstractMemory {
      * @return Result of test against zero (which may be unknown).
      */
     public Bit isZero() {
-      if (this.isUnknown()) {
+      if (this.value != 0) {
+        return Bit.FALSE;
+      } else if (this.isUnknown()) {
         return Bit.UNKNOWN;
       }
-      if (this.value == 0) {
-        return Bit.TRUE;
-      }
-      return Bit.FALSE;
+      return Bit.TRUE;
     }
 
     /**
@@ -302,11 +804,10 @@ public class AbstractMemory {
      * @return Result of test against zero (which may be unknown).
      */
     public Bit isNotZero() {
-      if (this.isUnknown()) {
-        return Bit.UNKNOWN;
-      }
       if (this.value != 0) {
         return Bit.TRUE;
+      } else if (this.isUnknown()) {
+        return Bit.UNKNOWN;
       }
       return Bit.FALSE;
     }
@@ -318,10 +819,7 @@ public class AbstractMemory {
      * @return Result of test (which may be unknown).
      */
     public Bit isLeast() {
-      if (this.value == -128) {
-        return Bit.TRUE;
-      }
-      return Bit.FALSE;
+      return eq(VALUES[0xFF80]);
     }
 
     /**
@@ -330,10 +828,7 @@ public class AbstractMemory {
      * @return Negated byte.
      */
     public Byte neg() {
-      if (this.isUnknown()) {
-        return UNKNOWN;
-      }
-      return new Byte((byte) -this.value);
+      return VALUES[0xFF00].sub(this);
     }
 
     /**
@@ -342,10 +837,7 @@ public class AbstractMemory {
      * @return Inverted byte.
      */
     public Byte inv() {
-      if (this.isUnknown()) {
-        return UNKNOWN;
-      }
-      return new Byte((byte) (0xFF - this.value));
+      return of(~this.value & this.known, unknownBits());
     }
 
     /**
@@ -355,10 +847,8 @@ public class AbstractMemory {
      * @return Resulting byte.
      */
     public Byte or(Byte rhs) {
-      if (this.isUnknown() || rhs.isUnknown()) {
-        return UNKNOWN;
-      }
-      return new Byte((byte) (this.value | rhs.value)); // standard binary OR for True and False
+      int v = this.value | rhs.value;
+      return of(v, (unknownBits() | rhs.unknownBits()) & ~v);
     }
 
     /**
@@ -368,55 +858,58 @@ public class AbstractMemory {
      * @return Updated byte.
      */
     public Byte set(int index) {
-      if (this.isUnknown()) {
-        return UNKNOWN;
-      }
       int mask = 1 << index;
-      return new Byte((byte) (this.value | mask));
+      return of(this.value | mask, unknownBits() & ~mask);
     }
 
     /**
      * Set a specific bit in this abstract byte to a given value. Observe that, if
-     * the bit being set is unknown, then the result byte is unknown.
+     * the bit being set is unknown, then only that bit of the result is unknown.
      *
      * @param index Index between <code>0</code> and <code>7</code>.
      * @param bit   Value to set.
      * @return Updated byte.
      */
     public Byte set(int index, Bit bit) {
-      if (this.isUnknown() || bit == Bit.UNKNOWN) {
-        return UNKNOWN;
-      }
       if (bit == Bit.TRUE) {
         return set(index);
+      } else if (bit == Bit.FALSE) {
+        return clear(index);
       }
-      return clear(index);
+      int mask = 1 << index;
+      return of(this.value & ~mask, unknownBits() | mask);
     }
 
     /**
-     * Perform a signed shift-right operation on this abstract byte.
+     * Perform a signed shift-right operation on this abstract byte. If the sign
+     * bit is unknown, then so are the bits shifted in.
      *
      * @param rhs Right hand parameter for this operation.
      * @return Resulting byte.
      */
     public Byte shr(int rhs) {
-      if (this.isUnknown()) {
-        return UNKNOWN;
-      }
-      return new Byte((byte) (this.value >> rhs));
+      return of(this.value >> rhs, ((byte) unknownBits()) >> rhs);
     }
 
     /**
-     * Subtract another abstract byte from this one.
+     * Subtract another abstract byte from this one. A borrow into a known bit is
+     * known, unless an unknown bit could have contributed to it.
      *
      * @param rhs Right hand parameter for this operation.
      * @return Resulting byte.
      */
     public Byte sub(Byte rhs) {
-      if (this.isUnknown() || rhs.isUnknown()) {
-        return UNKNOWN;
+      if ((this.known & rhs.known) == -1) {
+        // Common case where both are concrete
+        return from((byte) (this.value - rhs.value));
       }
-      return new Byte((byte) (this.value - rhs.value));
+      int lu = unknownBits();
+      int ru = rhs.unknownBits();
+      int diff = this.value - rhs.value;
+      // Bits which differ between the largest and smallest differences may vary
+      int borrows = (diff + lu) ^ (diff - ru);
+      int u = borrows | lu | ru;
+      return of(diff & ~u, u);
     }
 
     /**
@@ -426,10 +919,7 @@ public class AbstractMemory {
      * @return Resulting byte.
      */
     public Byte sub(byte rhs) {
-      if (this.isUnknown()) {
-        return UNKNOWN;
-      }
-      return new Byte((byte) (this.value - rhs));
+      return sub(from(rhs));
     }
 
     /**
@@ -439,11 +929,7 @@ public class AbstractMemory {
      * @return Resulting byte.
      */
     public Byte ushr(int rhs) {
-      if (this.isUnknown()) {
-        return UNKNOWN;
-      }
-      int v = (0xff & this.value) >>> rhs;
-      return new Byte((byte) v);
+      return of((0xff & this.value) >>> rhs, unknownBits() >>> rhs);
     }
 
     /**
@@ -453,10 +939,7 @@ public class AbstractMemory {
      * @return Resulting byte.
      */
     public Byte xor(Byte rhs) {
-      if (this.isUnknown() || rhs.isUnknown()) {
-        return UNKNOWN;
-      }
-      return new Byte((byte) (this.value ^ rhs.value)); // standard binary XOR for True and False
+      return of(this.value ^ rhs.value, unknownBits() | rhs.unknownBits());
     }
 
     /**
@@ -465,21 +948,23 @@ public class AbstractMemory {
      * @return Resulting byte.
      */
     public Byte swap() {
-      if (this.isUnknown()) {
-        return UNKNOWN;
-      }
-      int lsn = this.value & 0b0000_1111;
-      int msn = this.value & 0b1111_0000;
-      return new Byte((byte) ((lsn << 4) | (msn >> 4)));
+      return of(swap(this.value), swap(unknownBits()));
     }
 
     @Override
     public String toString() {
-      if (this.unknown) {
+      if (this.known == 0) {
         return "??"; //$NON-NLS-1$
       }
-      String r = String.format("%02X", Integer.valueOf(this.value)); //$NON-NLS-1$
+      String r = String.format("%02X", Integer.valueOf(this.value & 0xFF)); //$NON-NLS-1$
       assert r != null;
+      if (this.known != -1) {
+        // Show each nibble which is not completely known as unknown
+        char[] cs = r.toCharArray();
+        cs[0] = (this.known & 0xF0) == 0xF0 ? cs[0] : '?';
+        cs[1] = (this.known & 0x0F) == 0x0F ? cs[1] : '?';
+        r = new String(cs);
+      }
       return r;
     }
 
@@ -491,12 +976,45 @@ public class AbstractMemory {
      *                                  concretized).
      */
     public byte toByte() {
-      if (this.unknown) {
+      if (this.isUnknown()) {
         throw new IllegalArgumentException("Cannot concretize unknown value"); //$NON-NLS-1$
       }
       return this.value;
     }
 
+    /**
+     * Get the mask identifying which bits of this byte are unknown.
+     *
+     * @return Unsigned mask of unknown bits.
+     */
+    private int unknownBits() {
+      return ~this.known & 0xFF;
+    }
+
+    /**
+     * Swap the high and low nibbles of a given value.
+     *
+     * @param v Value whose lower eight bits are swapped.
+     * @return Swapped value.
+     */
+    private static int swap(int v) {
+      return ((v & 0x0F) << 4) | ((v & 0xF0) >>> 4);
+    }
+
+    /**
+     * Get the abstract byte with given unknown bits, where every other bit takes
+     * its value from a given value. Only the lower eight bits of each are
+     * considered.
+     *
+     * @param value   Value of known bits.
+     * @param unknown Mask identifying unknown bits.
+     * @return Byte instance.
+     */
+    private static Byte of(int value, int unknown) {
+      int known = ~unknown & 0xFF;
+      return VALUES[(known << 8) | (value & known)];
+    }
+
     /**
      * Construct an abstract byte from a concrete byte.
      *
@@ -504,7 +1022,18 @@ public class AbstractMemory {
      * @return Byte instance.
      */
     public static Byte from(byte v) {
-      return new Byte(v);
+      return VALUES[0xFF00 | (v & 0xFF)];
+    }
+
+    /**
+     * Construct an abstract byte where only some bits are known.
+     *
+     * @param v     Value of known bits (other bits are ignored).
+     * @param known Mask identifying known bits.
+     * @return Byte instance.
+     */
+    public static Byte from(byte v, byte known) {
+      return of(v, ~known);
     }
 
     /**
@@ -521,10 +1050,6 @@ public class AbstractMemory {
      * @return Byte instance.
      */
     public static Byte from(Bit b7, Bit b6, Bit b5, Bit b4, Bit b3, Bit b2, Bit b1, Bit b0) {
-      if (b7 == Bit.UNKNOWN || b6 == Bit.UNKNOWN || b5 == Bit.UNKNOWN || b4 == Bit.UNKNOWN
-          || b3 == Bit.UNKNOWN || b2 == Bit.UNKNOWN || b1 == Bit.UNKNOWN || b0 == Bit.UNKNOWN) {
-        return UNKNOWN;
-      }
       int v = 0;
       v |= (b7 == Bit.TRUE) ? 0b1000_0000 : 0;
       v |= (b6 == Bit.TRUE) ? 0b0100_0000 : 0;
@@ -534,7 +1059,16 @@ public class AbstractMemory {
       v |= (b2 == Bit.TRUE) ? 0b0000_0100 : 0;
       v |= (b1 == Bit.TRUE) ? 0b0000_0010 : 0;
       v |= (b0 == Bit.TRUE) ? 0b0000_0001 : 0;
-      return new Byte((byte) v);
+      int u = 0;
+      u |= (b7 == Bit.UNKNOWN) ? 0b1000_0000 : 0;
+      u |= (b6 == Bit.UNKNOWN) ? 0b0100_0000 : 0;
+      u |= (b5 == Bit.UNKNOWN) ? 0b0010_0000 : 0;
+      u |= (b4 == Bit.UNKNOWN) ? 0b0001_0000 : 0;
+      u |= (b3 == Bit.UNKNOWN) ? 0b0000_1000 : 0;
+      u |= (b2 == Bit.UNKNOWN) ? 0b0000_0100 : 0;
+      u |= (b1 == Bit.UNKNOWN) ? 0b0000_0010 : 0;
+      u |= (b0 == Bit.UNKNOWN) ? 0b0000_0001 : 0;
+      return of(v, u);
     }
   }
 
@@ -550,6 +1084,19 @@ public class AbstractMemory {
      * Represents the special unknown word.
      */
     private static final Word UNKNOWN = new Word();
+    /**
+     * Canonical instances for every word value between <code>0</code> and
+     * <code>65535</code>. Since abstract words are immutable, these are shared
+     * rather than allocating a fresh instance for every result. Values outside
+     * this range (e.g. from decrementing zero) are not cached.
+     */
+    private static final Word[] VALUES = new Word[65536];
+
+    static {
+      for (int i = 0; i != VALUES.length; ++i) {
+        VALUES[i] = new Word(i);
+      }
+    }
 
     /**
      * Current value for this word.
@@ -647,7 +1194,7 @@ public class AbstractMemory {
       if (this.unknown) {
         return this;
       }
-      return new Word(this.value + rhs);
+      return from(this.value + rhs);
     }
 
     /**
@@ -660,7 +1207,7 @@ public class AbstractMemory {
       if (this.unknown) {
         return this;
       }
-      return new Word(this.value - rhs);
+      return from(this.value - rhs);
     }
 
     /**
@@ -766,6 +1313,9 @@ public class AbstractMemory {
      * @return Word instance.
      */
     public static Word from(int word) {
+      if ((word & 0xFFFF) == word) {
+        return VALUES[word];
+      }
       return new Word(word);
     }
 
@@ -782,7 +1332,7 @@ public class AbstractMemory {
       }
       int m = (msb.value & 0xFF) << 8;
       int l = lsb.value & 0xFF;
-      return new Word(m | l);
+      return from(m | l);
     }
   }
 
@@ -0,0 +1,333 @@
+package avrmc.core;
+
+import avrmc.core.AvrModelChecker.BooleanProperty;
+import avrmc.core.AvrModelChecker.IntProperty;
+import avrmc.core.AvrModelChecker.LongProperty;
+import avrmc.core.AvrModelChecker.Property;
+
+/**
+ * Accumulates the value of a property over the states encountered during a run
+ * of the model checker. This separates the representation of the accumulated
+ * value from the exploration itself, such that values of primitive properties
+ * (e.g. <code>IntProperty</code>) are held unboxed and, hence, computing them
+ * after each instruction never allocates. The value is only boxed when it is
+ * actually needed as an object (e.g. for a checkpoint, or at the end of the
+ * run).
+ *
+ * @author David J. Pearce
+ *
+ * @param <T> Property value being accumulated.
+ */
+abstract class Accumulator<T> {
+  /**
+   * Set the accumulated value to that of a given state.
+   *
+   * @param state State to compute property for.
+   */
+  abstract void reset(AbstractAvr state);
+
+  /**
+   * Set the accumulated value to a given value (e.g. one restored from a
+   * checkpoint).
+   *
+   * @param value Value to set.
+   */
+  abstract void set(T value);
+
+  /**
+   * Join the value of a given state with the accumulated value.
+   *
+   * @param state State to compute property for.
+   * @return True if the accumulated value changed as a result.
+   */
+  abstract boolean accept(AbstractAvr state);
+
+  /**
+   * Get the accumulated value.
+   *
+   * @return Accumulated value.
+   */
+  abstract T get();
+
+  /**
+   * Construct an accumulator for a given property, which holds the accumulated
+   * value unboxed if the property is one of the primitive properties.
+   *
+   * @param <T>      Property value being accumulated.
+   * @param property Property to accumulate.
+   * @return Accumulator for property.
+   */
+  @SuppressWarnings("unchecked")
+  static <T> Accumulator<T> of(Property<T> property) {
+    if (property instanceof IntProperty) {
+      return (Accumulator<T>) new OfInt((IntProperty) property);
+    } else if (property instanceof LongProperty) {
+      return (Accumulator<T>) new OfLong((LongProperty) property);
+    } else if (property instanceof BooleanProperty) {
+      return (Accumulator<T>) new OfBoolean((BooleanProperty) property);
+    } else if (property instanceof PropertyBundle) {
+      return (Accumulator<T>) new OfBundle((PropertyBundle) property);
+    }
+    return new OfObject<>(property);
+  }
+
+  /**
+   * Accumulates the value of an arbitrary property.
+   *
+   * @param <T> Property value being accumulated.
+   */
+  private static final class OfObject<T> extends Accumulator<T> {
+    /**
+     * Property being accumulated.
+     */
+    private final Property<T> property;
+    /**
+     * Value accumulated so far.
+     */
+    private T value;
+
+    /**
+     * Construct an accumulator for a given property.
+     *
+     * @param property Property to accumulate.
+     */
+    OfObject(Property<T> property) {
+      this.property = property;
+    }
+
+    @Override
+    void reset(AbstractAvr state) {
+      this.value = this.property.map(state);
+    }
+
+    @Override
+    void set(T v) {
+      this.value = v;
+    }
+
+    @Override
+    boolean accept(AbstractAvr state) {
+      T old = this.value;
+      this.value = this.property.join(old, this.property.map(state));
+      return !this.value.equals(old);
+    }
+
+    @Override
+    T get() {
+      return this.value;
+    }
+  }
+
+  /**
+   * Accumulates the value of an <code>int</code> property.
+   */
+  private static final class OfInt extends Accumulator<Integer> {
+    /**
+     * Property being accumulated.
+     */
+    private final IntProperty property;
+    /**
+     * Value accumulated so far.
+     */
+    private int value;
+
+    /**
+     * Construct an accumulator for a given property.
+     *
+     * @param property Property to accumulate.
+     */
+    OfInt(IntProperty property) {
+      this.property = property;
+    }
+
+    @Override
+    void reset(AbstractAvr state) {
+      this.value = this.property.mapAsInt(state);
+    }
+
+    @Override
+    void set(Integer v) {
+      this.value = v.intValue();
+    }
+
+    @Override
+    boolean accept(AbstractAvr state) {
+      int old = this.value;
+      this.value = this.property.joinAsInt(old, this.property.mapAsInt(state));
+      return this.value != old;
+    }
+
+    @Override
+    Integer get() {
+      Integer r = Integer.valueOf(this.value);
+      assert r != null;
+      return r;
+    }
+  }
+
+  /**
+   * Accumulates the value of a <code>long</code> property.
+   */
+  private static final class OfLong extends Accumulator<Long> {
+    /**
+     * Property being accumulated.
+     */
+    private final LongProperty property;
+    /**
+     * Value accumulated so far.
+     */
+    private long value;
+
+    /**
+     * Construct an accumulator for a given property.
+     *
+     * @param property Property to accumulate.
+     */
+    OfLong(LongProperty property) {
+      this.property = property;
+    }
+
+    @Override
+    void reset(AbstractAvr state) {
+      this.value = this.property.mapAsLong(state);
+    }
+
+    @Override
+    void set(Long v) {
+      this.value = v.longValue();
+    }
+
+    @Override
+    boolean accept(AbstractAvr state) {
+      long old = this.value;
+      this.value = this.property.joinAsLong(old, this.property.mapAsLong(state));
+      return this.value != old;
+    }
+
+    @Override
+    Long get() {
+      Long r = Long.valueOf(this.value);
+      assert r != null;
+      return r;
+    }
+  }
+
+  /**
+   * Accumulates the value of a <code>boolean</code> property.
+   */
+  private static final class OfBoolean extends Accumulator<Boolean> {
+    /**
+     * Property being accumulated.
+     */
+    private final BooleanProperty property;
+    /**
+     * Value accumulated so far.
+     */
+    private boolean value;
+
+    /**
+     * Construct an accumulator for a given property.
+     *
+     * @param property Property to accumulate.
+     */
+    OfBoolean(BooleanProperty property) {
+      this.property = property;
+    }
+
+    @Override
+    void reset(AbstractAvr state) {
+      this.value = this.property.mapAsBoolean(state);
+    }
+
+    @Override
+    void set(Boolean v) {
+      this.value = v.booleanValue();
+    }
+
+    @Override
+    boolean accept(AbstractAvr state) {
+      boolean old = this.value;
+      this.value = this.property.joinAsBoolean(old, this.property.mapAsBoolean(state));
+      return this.value != old;
+    }
+
+    @Override
+    Boolean get() {
+      Boolean r = Boolean.valueOf(this.value);
+      assert r != null;
+      return r;
+    }
+  }
+
+  /**
+   * Accumulates the values of every property in a bundle, each using its own
+   * accumulator (hence, primitive values remain unboxed).
+   */
+  private static final class OfBundle extends Accumulator<PropertyBundle.Values> {
+    /**
+     * Bundle being accumulated.
+     */
+    private final PropertyBundle bundle;
+    /**
+     * Accumulator for each property in bundle.
+     */
+    private final Accumulator<?>[] items;
+
+    /**
+     * Construct an accumulator for a given bundle.
+     *
+     * @param bundle Bundle to accumulate.
+     */
+    OfBundle(PropertyBundle bundle) {
+      this.bundle = bundle;
+      this.items = new Accumulator<?>[bundle.size()];
+      for (int i = 0; i != this.items.length; ++i) {
+        this.items[i] = of(bundle.get(i));
+      }
+    }
+
+    @Override
+    void reset(AbstractAvr state) {
+      for (Accumulator<?> a : this.items) {
+        a.reset(state);
+      }
+    }
+
+    @Override
+    void set(PropertyBundle.Values v) {
+      for (int i = 0; i != this.items.length; ++i) {
+        set(this.items[i], v.get(new PropertyBundle.Key<>(this.bundle, i)));
+      }
+    }
+
+    @Override
+    boolean accept(AbstractAvr state) {
+      boolean changed = false;
+      for (Accumulator<?> a : this.items) {
+        changed |= a.accept(state);
+      }
+      return changed;
+    }
+
+    @Override
+    PropertyBundle.Values get() {
+      Object[] values = new Object[this.items.length];
+      for (int i = 0; i != values.length; ++i) {
+        values[i] = this.items[i].get();
+      }
+      return new PropertyBundle.Values(this.bundle, values);
+    }
+
+    /**
+     * Set the value of an accumulator whose type is not known statically.
+     *
+     * @param <T>         Value being accumulated.
+     * @param accumulator Accumulator to set.
+     * @param value       Value to set.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> void set(Accumulator<T> accumulator, Object value) {
+      accumulator.set((T) value);
+    }
+  }
+}
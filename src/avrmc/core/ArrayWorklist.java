@@ -0,0 +1,39 @@
+package avrmc.core;
+
+import java.util.ArrayList;
+import java.util.function.Consumer;
+
+/**
+ * A worklist which holds every state in memory, in an array list. This is the
+ * fastest worklist, and is sufficient unless there are a very large number of
+ * pending forks.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class ArrayWorklist implements Worklist {
+  /**
+   * States remaining, where the last is explored next.
+   */
+  private final ArrayList<AbstractAvr> states = new ArrayList<>();
+
+  @Override
+  public void push(AbstractAvr state) {
+    this.states.add(state);
+  }
+
+  @Override
+  public AbstractAvr pop() {
+    return this.states.remove(this.states.size() - 1);
+  }
+
+  @Override
+  public long size() {
+    return this.states.size();
+  }
+
+  @Override
+  public void forEach(Consumer<? super AbstractAvr> action) {
+    this.states.forEach(action);
+  }
+}
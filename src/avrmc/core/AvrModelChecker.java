@@ -1,9 +1,14 @@
 package avrmc.core;
 
 import avrmc.core.AbstractMemory.Byte;
-import java.util.ArrayList;
-import java.util.HashSet;
-import java.util.List;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import javr.core.AVR;
 import org.eclipse.jdt.annotation.Nullable;
 
@@ -19,72 +24,644 @@ import org.eclipse.jdt.annotation.Nullable;
  * @param <T> Concrete property value to be checked.
  */
 public class AvrModelChecker<T> {
+  /**
+   * Version of the exploration performed by this checker. This must be
+   * incremented whenever a change could alter the value computed for some
+   * property, such that results cached by a <code>ResultCache</code> are no
+   * longer used.
+   */
+  public static final int VERSION = 4;
+  /**
+   * Address of the <code>PINB</code> IO port in data memory, whose value is
+   * reset to unknown before each clock.
+   */
+  private static final int PINB = 32 + 0x16;
+  /**
+   * Statistics are sampled whenever the number of steps is a multiple of this
+   * (plus one), and reported if the sampling period has elapsed.
+   */
+  private static final long SAMPLE_MASK = 0xFFF;
   /**
    * Property to use for checking concrete value.
    */
   private final Property<T> property;
+  /**
+   * Responsible for constructing the store of visited states for each run of
+   * the model checker.
+   */
+  private final Supplier<? extends StateStore> stores;
+  /**
+   * Responsible for constructing the worklist of states remaining to be
+   * explored for each run of the model checker.
+   */
+  private Supplier<? extends Worklist> worklists = ArrayWorklist::new;
+  /**
+   * Indicates whether visited states are recorded only at basic block
+   * boundaries, or after every instruction.
+   */
+  private boolean basicBlocks;
+  /**
+   * Listener to report progress to, or <code>null</code> if none.
+   */
+  private @Nullable ExplorationListener listener;
+  /**
+   * Minimum time (in nanoseconds) between progress reports.
+   */
+  private long period;
+  /**
+   * Directory in which checkpoints are written, or <code>null</code> if
+   * checkpointing is disabled.
+   */
+  private @Nullable Path checkpoints;
+  /**
+   * Minimum time (in nanoseconds) between checkpoints.
+   */
+  private long checkpointPeriod;
+  /**
+   * Limits on the resources consumed by each run.
+   */
+  private ExplorationBudget budget = ExplorationBudget.UNLIMITED;
+  /**
+   * Indicates whether each run records enough to reconstruct the path to the
+   * state which determined its value.
+   */
+  private boolean witnesses;
+  /**
+   * File holding the summary of the previous run, or <code>null</code> if
+   * result reuse is disabled.
+   */
+  private @Nullable Path summaries;
+  /**
+   * Describes anything else which affects the result of a run, for matching
+   * against the summary of the previous run.
+   */
+  private String configuration = ""; //$NON-NLS-1$
 
   /**
-   * Construct a new model checker instance to check a given property.
+   * Construct a new model checker instance to check a given property. Visited
+   * states are recorded using a <code>FingerprintStateStore</code>.
    *
    * @param property The property which this checker will check.
    */
   public AvrModelChecker(Property<T> property) {
+    this(property, FingerprintStateStore::new);
+  }
+
+  /**
+   * Construct a new model checker instance to check a given property, using a
+   * given kind of store for recording visited states. For example, an
+   * <code>ExactStateStore</code> can be used to validate results obtained with
+   * the (default) <code>FingerprintStateStore</code>.
+   *
+   * @param property The property which this checker will check.
+   * @param stores   Constructs a fresh state store for each run.
+   */
+  public AvrModelChecker(Property<T> property, Supplier<? extends StateStore> stores) {
     this.property = property;
+    this.stores = stores;
+  }
+
+  /**
+   * Get the property which this checker checks.
+   *
+   * @return Property being checked.
+   */
+  public Property<T> getProperty() {
+    return this.property;
+  }
+
+  /**
+   * Determine whether visited states are recorded only at basic block
+   * boundaries (i.e. on entry to a block and at fork points), rather than after
+   * every instruction. This can significantly reduce the number of states
+   * recorded, since states in the middle of a block are not recorded. However,
+   * such states may then be executed more than once. The property is still
+   * evaluated after every instruction, so the computed value is unaffected.
+   *
+   * @param enabled True if visited states should only be recorded at block
+   *                boundaries.
+   */
+  public void setBasicBlocks(boolean enabled) {
+    this.basicBlocks = enabled;
+  }
+
+  /**
+   * Set the kind of worklist used for holding states which remain to be
+   * explored. By default, every such state is held in memory. However, for
+   * firmware with a large number of pending forks, a
+   * <code>SpillingWorklist</code> can be used to limit the memory required.
+   *
+   * @param worklists Constructs a fresh worklist for each run.
+   */
+  public void setWorklists(Supplier<? extends Worklist> worklists) {
+    this.worklists = worklists;
+  }
+
+  /**
+   * Attach a listener to which statistics about each run (e.g. the number of
+   * states visited) are reported periodically, and at the end of the run.
+   * Statistics are only gathered whilst a listener is attached.
+   *
+   * @param listener     Listener to report to, or <code>null</code> to detach
+   *                     the current listener.
+   * @param periodMillis Minimum time (in milliseconds) between reports.
+   */
+  public void setListener(@Nullable ExplorationListener listener, long periodMillis) {
+    this.listener = listener;
+    this.period = TimeUnit.MILLISECONDS.toNanos(periodMillis);
+  }
+
+  /**
+   * Set the limits on the resources (e.g. time or states) which each run may
+   * consume. When a limit is reached, the run stops early and the property
+   * value computed so far is returned. By default, there are no limits.
+   *
+   * @param budget Limits to impose.
+   */
+  public void setBudget(ExplorationBudget budget) {
+    this.budget = budget;
+  }
+
+  /**
+   * Determine whether each run records enough to reconstruct the path from the
+   * starting state to the state which determined its value, which is then
+   * available from <code>ExplorationResult.getWitness()</code>. Rather than
+   * retaining states, this records only the side taken at each fork (a few
+   * bytes per fork) and reconstructs the path by re-executing from the
+   * starting state at the end of the run. Hence, this requires that execution
+   * is deterministic (e.g. any interrupt sources must be). Witnesses are not
+   * recorded for runs resumed from a checkpoint.
+   *
+   * @param enabled True if witnesses should be recorded.
+   */
+  public void setWitnesses(boolean enabled) {
+    this.witnesses = enabled;
+  }
+
+  /**
+   * Enable reuse of results across edits to unused code, where the summary of
+   * each complete run is written to a given file. A subsequent run from the
+   * same starting state reuses that result without exploring any states,
+   * provided that no byte of code memory which the previous run used (i.e.
+   * decoded as an instruction, or read as data) has since changed. For example,
+   * when a function which is never called is modified. Otherwise, the run
+   * explores every state as usual and its summary replaces the previous one.
+   * Note that this is not incremental checking, since reuse is all or nothing:
+   * an edit to any code which the previous run used (e.g. a single instruction
+   * of the main loop) requires the entire state space to be explored again.
+   * Hence, this only helps for edits to unused flash (e.g. dead functions,
+   * unreferenced data, or padding). Since the result is reused only
+   * when the same states must be explored, it is exactly that which would be
+   * computed (assuming interrupt sources are deterministic). For this, the
+   * summary also records the kinds of interrupt triggers, whether basic blocks
+   * are used and a caller supplied configuration string, which should describe
+   * anything else that affects the result (e.g. the kind of state store, or the
+   * parameters of interrupt triggers). A summary is only written for a run
+   * which explored every state (i.e. not stopped by its budget, nor using a
+   * state store with coverage below one). However, no witness is available for
+   * a reused result. Result reuse requires that the property provides a
+   * <code>Serializer</code>.
+   *
+   * @param file          File holding summary of previous run, or
+   *                      <code>null</code> to disable result reuse.
+   * @param configuration Describes anything else which affects the result.
+   */
+  public void setResultReuse(@Nullable Path file, String configuration) {
+    if (file != null && this.property.getSerializer() == null) {
+      throw new IllegalArgumentException("property does not support result reuse"); //$NON-NLS-1$
+    }
+    this.summaries = file;
+    this.configuration = configuration;
+  }
+
+  /**
+   * Enable periodic checkpointing of each run, such that a run which is
+   * interrupted (e.g. because the machine is restarted) can later be continued
+   * using <code>resume()</code>, rather than starting again. A checkpoint holds
+   * the visited states, the worklist and the value accumulated so far. Visited
+   * states are written incrementally as they are recorded, hence the time taken
+   * by each checkpoint is proportional to the size of the worklist rather than
+   * the number of states visited. Checkpointing requires that the property
+   * provides a <code>Serializer</code>.
+   *
+   * @param directory    Directory in which to write checkpoints, or
+   *                     <code>null</code> to disable checkpointing.
+   * @param periodMillis Minimum time (in milliseconds) between checkpoints.
+   */
+  public void setCheckpointing(@Nullable Path directory, long periodMillis) {
+    if (directory != null && this.property.getSerializer() == null) {
+      throw new IllegalArgumentException("property does not support checkpointing"); //$NON-NLS-1$
+    }
+    this.checkpoints = directory;
+    this.checkpointPeriod = TimeUnit.MILLISECONDS.toNanos(periodMillis);
   }
 
   /**
    * Apply this model checker to a given starting state and compute the final
    * property. For example, if we're computing the maximum stack height then this
-   * would return that value.
+   * would return that value. When checkpointing is enabled, any existing
+   * checkpoint is discarded. If the budget is exhausted, the value computed so
+   * far is returned (use <code>check()</code> to determine whether this
+   * happened).
    *
    * @param seed Machine state to start checking from.
    * @return Computed property value.
    */
   public T apply(AbstractAvr seed) {
-    HashSet<AbstractAvr> history = new HashSet<>();
-    ArrayList<AbstractAvr> worklist = new ArrayList<>();
-    // See the worklist
-    worklist.add(seed);
-    // Compute initial value for our starting state
-    T value = this.property.map(seed);
+    return run(seed, false).getValue();
+  }
+
+  /**
+   * Apply this model checker to a given starting state, and determine both the
+   * computed property and whether every reachable state was explored. The
+   * latter may not be the case if the budget is exhausted.
+   *
+   * @param seed Machine state to start checking from.
+   * @return Computed property value, along with its completeness.
+   */
+  public ExplorationResult<T> check(AbstractAvr seed) {
+    return run(seed, false);
+  }
+
+  /**
+   * Continue a run from the most recent checkpoint, and compute the final
+   * property. If no checkpoint exists, this is equivalent to
+   * <code>apply()</code>. If the checkpointed run completed, its value is
+   * returned without further exploration. A run stopped early because its
+   * budget was exhausted can also be continued in this way. The same firmware
+   * must be used as for the checkpointed run, and checkpointing must be
+   * enabled.
+   *
+   * @param seed Machine state the checkpointed run started from.
+   * @return Computed property value, along with its completeness.
+   */
+  public ExplorationResult<T> resume(AbstractAvr seed) {
+    if (this.checkpoints == null) {
+      throw new IllegalStateException("checkpointing not enabled"); //$NON-NLS-1$
+    }
+    return run(seed, true);
+  }
+
+  /**
+   * Perform a single run of the model checker.
+   *
+   * @param seed   Machine state to start checking from.
+   * @param resume True if the run should continue from the most recent
+   *               checkpoint (if any).
+   * @return Computed property value, along with its completeness.
+   */
+  private ExplorationResult<T> run(AbstractAvr seed, boolean resume) {
+    @Nullable
+    RunSummary<T> summary = openSummary(seed);
+    if (summary != null) {
+      @Nullable
+      T reused = reuse(summary, seed);
+      if (reused != null) {
+        return new ExplorationResult<>(reused, null, 0, 0, null);
+      }
+    }
+    ExplorationBudget b = this.budget;
+    StateStore history = this.stores.get();
+    @Nullable
+    BasicBlocks blocks = this.basicBlocks ? new BasicBlocks(seed) : null;
+    Worklist worklist = this.worklists.get();
+    @Nullable
+    Checkpointer<T> checkpointer = openCheckpointer();
+    @Nullable
+    T restored = null;
+    if (checkpointer != null) {
+      restored = start(checkpointer, seed, history, worklist, resume);
+    }
+    Accumulator<T> value = Accumulator.of(this.property);
+    PropertyEvents events = this.property.getEvents();
+    // Witnesses are only recorded from the starting state, and mirror the worklist
+    @Nullable
+    WitnessTree tree = null;
+    @Nullable
+    LongStack segments = null;
+    if (restored != null) {
+      value.set(restored);
+    } else {
+      if (this.witnesses) {
+        tree = new WitnessTree(seed);
+        segments = new LongStack(0);
+        segments.push(WitnessTree.root());
+      }
+      // See the worklist
+      worklist.push(seed);
+      // Compute initial value for our starting state
+      value.reset(seed);
+    }
+    // Statistics are only gathered when someone is listening
+    ExplorationListener l = this.listener;
+    @Nullable
+    ExplorationStatistics stats = (l != null) ? new ExplorationStatistics() : null;
+    long nextSample = (stats != null) ? stats.now + this.period : 0;
+    long start = System.nanoTime();
+    long nextCheckpoint = start + this.checkpointPeriod;
+    // Depths are only tracked when limited, and mirror the worklist
+    @Nullable
+    LongStack depths = b.isDepthLimited() ? new LongStack(worklist.size()) : null;
+    long depth = 0;
+    long steps = 0;
+    long states = history.size();
+    long pruned = 0;
+    ExplorationBudget.@Nullable Limit exhausted = null;
+    long frontier;
+    double coverage;
     //
-    while (worklist.size() > 0) {
-      // Get next state to process
-      AbstractAvr state = pop(worklist);
-      AbstractAvr fork = null;
-      //
-      try {
-        // Execute state until fork encountered
-        while (fork == null) {
-          // Reset I/O port unknown value(s).
-          resetIoPort(state);
-          // Execute one step the state
-          fork = state.clock();
-
-          if (history.contains(state)) {
-            throw new AVR.HaltedException(0);
+    try {
+      explore: while (worklist.size() > 0) {
+        // Get next state to process
+        AbstractAvr state = worklist.pop();
+        AbstractAvr fork = null;
+        int pc = 0;
+        // Property is always evaluated on first step, since state may be a fork
+        boolean first = true;
+        if (depths != null) {
+          depth = depths.pop();
+        }
+        // Instructions executed since state was taken from worklist
+        long offset = 0;
+        int segment = (segments != null) ? (int) segments.pop() : 0;
+        //
+        try {
+          // Execute state until fork encountered
+          while (fork == null) {
+            if ((steps & SAMPLE_MASK) == 0 && steps != 0) {
+              // Checkpoint (if due) whilst state and value are consistent
+              if (checkpointer != null) {
+                nextCheckpoint = checkpoint(checkpointer, worklist, state, value, stats,
+                    nextCheckpoint);
+              }
+              exhausted = b.check(start);
+            }
+            if (steps >= b.getMaxSteps()) {
+              exhausted = ExplorationBudget.Limit.STEPS;
+            } else if (states >= b.getMaxStates()) {
+              exhausted = ExplorationBudget.Limit.STATES;
+            }
+            if (exhausted != null) {
+              // Current state remains to be explored
+              worklist.push(state);
+              if (depths != null) {
+                depths.push(depth);
+              }
+              break explore;
+            } else if (depth >= b.getMaxDepth()) {
+              pruned++;
+              continue explore;
+            }
+            pc = state.getProgramCounter();
+            offset++;
+            // Execute one step the state, resetting I/O port unknown value(s).
+            fork = clock(state);
+            steps++;
+            depth++;
+            if (stats != null && (++stats.steps & SAMPLE_MASK) == 0) {
+              nextSample = sample(l, stats, history, worklist, nextSample);
+            }
+            // Check whether state has been visited before
+            if (isRecorded(blocks, state, pc, fork)) {
+              if (!history.add(state)) {
+                if (stats != null) {
+                  stats.revisits++;
+                }
+                throw new AVR.HaltedException(0);
+              }
+              states++;
+              if (checkpointer != null) {
+                visited(checkpointer, state);
+              }
+            }
+            // Determine property for updated state (if it may have changed), and join
+            // with accumulated value
+            if ((first || events.isRaised(state, pc)) && value.accept(state) && tree != null) {
+              tree.record(segment, offset);
+            }
+            first = false;
+          }
+          // Add state and fork back on worklist
+          worklist.push(state);
+          worklist.push(fork);
+          if (depths != null) {
+            depths.push(depth);
+            depths.push(depth);
+          }
+          if (tree != null && segments != null) {
+            segments.push(tree.add(segment, false));
+            segments.push(tree.add(segment, true));
+          }
+          if (stats != null) {
+            stats.fork(state.getInstruction(state.getExecutedAddress()).getOpcode());
+            stats.worklist(worklist.size());
+          }
+        } catch (AVR.HaltedException e) {
+          assert e != null;
+          // Indicates current state has halted. In such case, we don't need to put it
+          // back on the worklist. However, we do still want to extract its property value
+          // (e.g. as this might tell us the exit code, etc).
+          if ((first || events.isHalt() || events.isRaised(state, pc)) && value.accept(state)
+              && tree != null) {
+            tree.record(segment, offset);
           }
-          history.add(state);
-          // Determine property for updated state
-          T nvalue = this.property.map(state);
-          // Join with accumulated value
-          value = this.property.join(value, nvalue);
         }
-        // Add state and fork back on worklist
-        worklist.add(state);
-        worklist.add(fork);
-      } catch (AVR.HaltedException e) {
-        assert e != null;
-        // Indicates current state has halted. In such case, we don't need to put it
-        // back on the worklist. However, we do still want to extract its property value
-        // (e.g. as this might tell us the exit code, etc).
-        T nvalue = this.property.map(state);
-        // Join with accumulated value
-        value = this.property.join(value, nvalue);
       }
+      // Final checkpoint records where the run stopped
+      if (checkpointer != null) {
+        checkpoint(checkpointer, worklist, null, value, stats, 0);
+      }
+      frontier = worklist.size();
+    } finally {
+      if (l != null && stats != null) {
+        stats.worklist(worklist.size());
+        stats.update(history, worklist);
+        l.completed(stats);
+      }
+      coverage = history.getCoverage();
+      history.close();
+      worklist.close();
+      if (checkpointer != null) {
+        close(checkpointer);
+      }
+    }
+    @Nullable
+    Witness witness = (tree != null) ? tree.reconstruct() : null;
+    ExplorationResult<T> result = new ExplorationResult<>(value.get(), exhausted, frontier, pruned,
+        witness);
+    if (summary != null && result.isComplete() && coverage >= 1) {
+      save(summary, seed, result.getValue());
+    }
+    return result;
+  }
+
+  /**
+   * Construct a checkpointer for the next run, if checkpointing is enabled.
+   *
+   * @return Checkpointer, or <code>null</code> if checkpointing is disabled.
+   */
+  private @Nullable Checkpointer<T> openCheckpointer() {
+    Path directory = this.checkpoints;
+    Serializer<T> serializer = this.property.getSerializer();
+    if (directory == null || serializer == null) {
+      return null;
     }
-    return value;
+    return new Checkpointer<>(directory, serializer);
+  }
+
+  /**
+   * Construct the summary for the next run, if result reuse is enabled. This
+   * must be done before the seed is modified.
+   *
+   * @param seed Machine state the run starts from.
+   * @return Summary, or <code>null</code> if result reuse is disabled.
+   */
+  private @Nullable RunSummary<T> openSummary(AbstractAvr seed) {
+    Path file = this.summaries;
+    Serializer<T> serializer = this.property.getSerializer();
+    if (file == null || serializer == null) {
+      return null;
+    }
+    return new RunSummary<>(file, this.property, serializer, seed, this.basicBlocks,
+        this.configuration);
+  }
+
+  /**
+   * Determine whether the result of the previous run can be reused for this
+   * run.
+   *
+   * @param summary Summary for this run.
+   * @param seed    Machine state the run starts from.
+   * @return Result of previous run, or <code>null</code> if it cannot be reused.
+   */
+  private @Nullable T reuse(RunSummary<T> summary, AbstractAvr seed) {
+    try {
+      return summary.reuse(seed.getCodeBytes());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Write the summary of a completed run.
+   *
+   * @param summary Summary for this run.
+   * @param seed    Machine state the run started from, which shares its code
+   *                memory with every state explored.
+   * @param value   Property value computed by the run.
+   */
+  private void save(RunSummary<T> summary, AbstractAvr seed, T value) {
+    try {
+      summary.save(seed.getCodeBytes(), seed.getCodeUsage(), value);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Prepare a checkpointer at the beginning of a run, restoring the most recent
+   * checkpoint if requested.
+   *
+   * @param checkpointer Checkpointer for this run.
+   * @param seed         Machine state the run starts from.
+   * @param history      Visited set for this run.
+   * @param worklist     Worklist for this run.
+   * @param resume       True if the most recent checkpoint should be restored.
+   * @return Value restored from checkpoint, or <code>null</code> if the run
+   *         should start from the seed.
+   */
+  private @Nullable T start(Checkpointer<T> checkpointer, AbstractAvr seed, StateStore history,
+      Worklist worklist, boolean resume) {
+    try {
+      @Nullable
+      T value = resume ? checkpointer.restore(seed, history, worklist) : null;
+      if (value == null) {
+        checkpointer.start();
+      }
+      return value;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Record in the checkpoint that a state has been added to the visited set.
+   *
+   * @param checkpointer Checkpointer for this run.
+   * @param state        State which was added.
+   */
+  private static void visited(Checkpointer<?> checkpointer, AbstractAvr state) {
+    try {
+      checkpointer.visited(state);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Write a checkpoint, if the checkpointing period has elapsed.
+   *
+   * @param checkpointer   Checkpointer for this run.
+   * @param worklist       Worklist for this run.
+   * @param current        State currently being explored, or <code>null</code>
+   *                       if none.
+   * @param value          Value accumulated so far.
+   * @param stats          Statistics for this run, or <code>null</code> if not
+   *                       being gathered.
+   * @param nextCheckpoint Time at which the next checkpoint is due.
+   * @return Time at which the next checkpoint is due.
+   */
+  private long checkpoint(Checkpointer<T> checkpointer, Worklist worklist,
+      @Nullable AbstractAvr current, Accumulator<T> value, @Nullable ExplorationStatistics stats,
+      long nextCheckpoint) {
+    long now = System.nanoTime();
+    if (now < nextCheckpoint) {
+      return nextCheckpoint;
+    }
+    try {
+      checkpointer.save(worklist, current, value.get());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    long end = System.nanoTime();
+    if (stats != null) {
+      stats.checkpoint(end - now);
+    }
+    return end + this.checkpointPeriod;
+  }
+
+  /**
+   * Close the checkpointer at the end of a run.
+   *
+   * @param checkpointer Checkpointer to close.
+   */
+  private static void close(Checkpointer<?> checkpointer) {
+    try {
+      checkpointer.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  /**
+   * Report statistics to the listener, if the sampling period has elapsed.
+   *
+   * @param listener   Listener to report to.
+   * @param stats      Statistics for the current run.
+   * @param history    Visited set for the current run.
+   * @param worklist   Worklist for the current run.
+   * @param nextSample Time at which the next report is due.
+   * @return Time at which the next report is due.
+   */
+  private long sample(@Nullable ExplorationListener listener, ExplorationStatistics stats,
+      StateStore history, Worklist worklist, long nextSample) {
+    long now = System.nanoTime();
+    if (listener == null || now < nextSample) {
+      return nextSample;
+    }
+    stats.update(history, worklist);
+    listener.sample(stats);
+    return now + this.period;
   }
 
   /**
@@ -116,6 +693,304 @@ public class AvrModelChecker<T> {
      * @return Result of join.
      */
     public T join(T left, T right);
+
+    /**
+     * Get the serializer used to write property values into checkpoints. By
+     * default, there is none and so checkpointing is not supported.
+     *
+     * @return Serializer for property values, or <code>null</code> if none.
+     */
+    public default @Nullable Serializer<T> getSerializer() {
+      return null;
+    }
+
+    /**
+     * Get the events on which this property depends, such that it need only be
+     * evaluated when one of them occurs. By default, a property is evaluated
+     * after every instruction.
+     *
+     * @return Events on which this property depends.
+     */
+    public default PropertyEvents getEvents() {
+      return PropertyEvents.EVERY_STEP;
+    }
+
+    /**
+     * Get a name identifying this property, which is used (along with its
+     * version) to determine whether a cached result was computed for it. By
+     * default, this is the name of its class.
+     *
+     * @return Identity of property.
+     */
+    public default String getIdentity() {
+      String r = getClass().getName();
+      assert r != null;
+      return r;
+    }
+
+    /**
+     * Get the version of this property, which must be incremented whenever its
+     * definition changes such that previously cached results are no longer
+     * used. By default, this is zero.
+     *
+     * @return Version of property.
+     */
+    public default int getVersion() {
+      return 0;
+    }
+  }
+
+  /**
+   * A property whose values are <code>int</code>s. The model checker holds the
+   * accumulated value of such a property unboxed, such that computing it after
+   * each instruction does not allocate. For example, the maximum stack height.
+   *
+   * @author David J. Pearce
+   *
+   */
+  public interface IntProperty extends Property<Integer> {
+    /**
+     * Compute the given property for a single AVR state.
+     *
+     * @param state AVR state over which to compute the given property.
+     * @return The computed property value
+     */
+    public int mapAsInt(AbstractAvr state);
+
+    /**
+     * Join two property values together to form a single property value.
+     *
+     * @param left  Leftmost value to join.
+     * @param right Rightmost value to join.
+     * @return Result of join.
+     */
+    public int joinAsInt(int left, int right);
+
+    @Override
+    public default Integer map(AbstractAvr state) {
+      Integer r = Integer.valueOf(mapAsInt(state));
+      assert r != null;
+      return r;
+    }
+
+    @Override
+    public default Integer join(Integer left, Integer right) {
+      Integer r = Integer.valueOf(joinAsInt(left.intValue(), right.intValue()));
+      assert r != null;
+      return r;
+    }
+
+    @Override
+    public default Serializer<Integer> getSerializer() {
+      return new Serializer<>() {
+        @Override
+        public void write(Integer value, DataOutput out) throws IOException {
+          out.writeInt(value.intValue());
+        }
+
+        @Override
+        public Integer read(DataInput in) throws IOException {
+          Integer r = Integer.valueOf(in.readInt());
+          assert r != null;
+          return r;
+        }
+      };
+    }
+  }
+
+  /**
+   * A property whose values are <code>long</code>s. The model checker holds the
+   * accumulated value of such a property unboxed, such that computing it after
+   * each instruction does not allocate. For example, the maximum number of cycles taken along any path.
+   *
+   * @author David J. Pearce
+   *
+   */
+  public interface LongProperty extends Property<Long> {
+    /**
+     * Compute the given property for a single AVR state.
+     *
+     * @param state AVR state over which to compute the given property.
+     * @return The computed property value
+     */
+    public long mapAsLong(AbstractAvr state);
+
+    /**
+     * Join two property values together to form a single property value.
+     *
+     * @param left  Leftmost value to join.
+     * @param right Rightmost value to join.
+     * @return Result of join.
+     */
+    public long joinAsLong(long left, long right);
+
+    @Override
+    public default Long map(AbstractAvr state) {
+      Long r = Long.valueOf(mapAsLong(state));
+      assert r != null;
+      return r;
+    }
+
+    @Override
+    public default Long join(Long left, Long right) {
+      Long r = Long.valueOf(joinAsLong(left.longValue(), right.longValue()));
+      assert r != null;
+      return r;
+    }
+
+    @Override
+    public default Serializer<Long> getSerializer() {
+      return new Serializer<>() {
+        @Override
+        public void write(Long value, DataOutput out) throws IOException {
+          out.writeLong(value.longValue());
+        }
+
+        @Override
+        public Long read(DataInput in) throws IOException {
+          Long r = Long.valueOf(in.readLong());
+          assert r != null;
+          return r;
+        }
+      };
+    }
+  }
+
+  /**
+   * A property whose values are <code>boolean</code>s. The model checker holds the
+   * accumulated value of such a property unboxed, such that computing it after
+   * each instruction does not allocate. For example, whether any state violates an assertion.
+   *
+   * @author David J. Pearce
+   *
+   */
+  public interface BooleanProperty extends Property<Boolean> {
+    /**
+     * Compute the given property for a single AVR state.
+     *
+     * @param state AVR state over which to compute the given property.
+     * @return The computed property value
+     */
+    public boolean mapAsBoolean(AbstractAvr state);
+
+    /**
+     * Join two property values together to form a single property value.
+     *
+     * @param left  Leftmost value to join.
+     * @param right Rightmost value to join.
+     * @return Result of join.
+     */
+    public boolean joinAsBoolean(boolean left, boolean right);
+
+    @Override
+    public default Boolean map(AbstractAvr state) {
+      Boolean r = Boolean.valueOf(mapAsBoolean(state));
+      assert r != null;
+      return r;
+    }
+
+    @Override
+    public default Boolean join(Boolean left, Boolean right) {
+      Boolean r = Boolean.valueOf(joinAsBoolean(left.booleanValue(), right.booleanValue()));
+      assert r != null;
+      return r;
+    }
+
+    @Override
+    public default Serializer<Boolean> getSerializer() {
+      return new Serializer<>() {
+        @Override
+        public void write(Boolean value, DataOutput out) throws IOException {
+          out.writeBoolean(value.booleanValue());
+        }
+
+        @Override
+        public Boolean read(DataInput in) throws IOException {
+          Boolean r = Boolean.valueOf(in.readBoolean());
+          assert r != null;
+          return r;
+        }
+      };
+    }
+  }
+
+  /**
+   * Responsible for writing property values into a checkpoint, and reading them
+   * back again.
+   *
+   * @author David J. Pearce
+   * @param <T> Value which this serializer handles.
+   *
+   */
+  public interface Serializer<T> {
+    /**
+     * Write a given property value.
+     *
+     * @param value Value to write.
+     * @param out   Output to write value to.
+     * @throws IOException If a problem occurs writing.
+     */
+    public void write(T value, DataOutput out) throws IOException;
+
+    /**
+     * Read back a property value previously written by <code>write()</code>.
+     *
+     * @param in Input to read value from.
+     * @return Value read.
+     * @throws IOException If a problem occurs reading.
+     */
+    public T read(DataInput in) throws IOException;
+  }
+
+  /**
+   * A stack holding a value (e.g. the depth) for each state on the worklist,
+   * which is pushed and popped in step with the worklist itself.
+   *
+   * @author David J. Pearce
+   *
+   */
+  private static final class LongStack {
+    /**
+     * Values, where the last is that of the state explored next.
+     */
+    private long[] items = new long[16];
+    /**
+     * Number of values on this stack.
+     */
+    private int size;
+
+    /**
+     * Construct a stack for a worklist which already holds a given number of
+     * states, each of which is given the value zero.
+     *
+     * @param initial Number of states already on worklist.
+     */
+    LongStack(long initial) {
+      for (long i = 0; i < initial; ++i) {
+        push(0);
+      }
+    }
+
+    /**
+     * Push the value of a state added to the worklist.
+     *
+     * @param value Value of state.
+     */
+    void push(long value) {
+      if (this.size == this.items.length) {
+        this.items = Arrays.copyOf(this.items, this.size * 2);
+      }
+      this.items[this.size++] = value;
+    }
+
+    /**
+     * Pop the value of the state removed from the worklist.
+     *
+     * @return Value of state.
+     */
+    long pop() {
+      return this.items[--this.size];
+    }
   }
 
   // ===============================================================
@@ -123,26 +998,48 @@ public class AvrModelChecker<T> {
   // ===============================================================
 
   /**
-   * This resets the IO port value to unknown, which may be necessary if the
-   * AbstractAVR writes concrete values to the IO port.
+   * Clock a given state, having first reset the IO port value to unknown. This
+   * may be necessary if the AbstractAVR writes concrete values to the IO port.
+   * When the reset changes the port, it is reported as a write made by the
+   * clock, since otherwise the clock would forget it.
    *
    * @param state Abstract AVR state.
+   * @return Forked state (if any).
+   * @throws AVR.HaltedException If the state halts.
    */
-  private static void resetIoPort(AbstractAvr state) {
-    state.getData().write(32 + 0x16, Byte.UNKNOWN);
+  static @Nullable AbstractAvr clock(AbstractAvr state) throws AVR.HaltedException {
+    AbstractMemory data = state.getData();
+    boolean reset = data.getKnownBits(PINB) != 0;
+    data.write(PINB, Byte.UNKNOWN);
+    try {
+      return state.clock();
+    } finally {
+      if (reset) {
+        data.markWritten(PINB);
+      }
+    }
   }
 
   /**
-   * Simple helper function for pulling things off the worklist efficiently.
+   * Determine whether the state arising from executing an instruction should be
+   * recorded as visited. When not using basic blocks, every state is recorded.
+   * Otherwise, only states which arise at fork points or which cross a block
+   * boundary are recorded.
    *
-   * @param states Worklist of states to pop from.
-   * @return Abstract state popped from list.
+   * @param blocks Basic blocks of firmware, or <code>null</code> if not being
+   *               used.
+   * @param state  State after executing the instruction.
+   * @param pc     Program counter of state before it was clocked.
+   * @param fork   Fork arising from executing instruction (if any).
+   * @return True if state should be recorded.
    */
-  private static AbstractAvr pop(List<AbstractAvr> states) {
-    int last = states.size() - 1;
-    @Nullable
-    AbstractAvr st = states.get(last);
-    states.remove(last);
-    return st;
+  private static boolean isRecorded(@Nullable BasicBlocks blocks, AbstractAvr state, int pc,
+      @Nullable AbstractAvr fork) {
+    if (blocks == null || fork != null) {
+      return true;
+    }
+    // Taking an interrupt is itself a control transfer
+    int executed = state.getExecutedAddress();
+    return executed != pc || blocks.isBoundary(state, executed, state.getProgramCounter());
   }
 }
@@ -0,0 +1,184 @@
+package avrmc.core;
+
+import java.util.ArrayList;
+import javr.core.AvrInstruction;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Identifies the boundaries between basic blocks in the firmware being
+ * checked. A basic block is a straight-line sequence of instructions which is
+ * only entered at the start, and only left at the end. The model checker uses
+ * this to avoid recording every state in the middle of a block as visited,
+ * since any state there is determined by the state on entry to the block.
+ *
+ * <p>
+ * Block entries (<i>leaders</i>) are computed up front by walking the decoded
+ * instructions reachable from a given starting point, and marking the targets
+ * of every branch, jump, call and skip. This cannot see the targets of
+ * indirect jumps, returns or interrupts. Therefore, any transition which does
+ * not simply fall through to the next instruction is also treated as a block
+ * boundary. This ensures every cycle in the state space passes through a
+ * boundary and, hence, that exploration terminates.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class BasicBlocks {
+  /**
+   * Identifies which addresses in FLASH memory are the entry of some basic
+   * block.
+   */
+  private final boolean[] leaders;
+
+  /**
+   * Compute the basic blocks reachable from the current program counter of a
+   * given state.
+   *
+   * @param state Machine state whose firmware is to be analysed.
+   */
+  public BasicBlocks(AbstractAvr state) {
+    this.leaders = new boolean[state.getCode().size()];
+    boolean[] visited = new boolean[this.leaders.length];
+    ArrayList<Integer> worklist = new ArrayList<>();
+    int entry = state.getProgramCounter();
+    this.leaders[entry] = true;
+    worklist.add(Integer.valueOf(entry));
+    while (worklist.size() > 0) {
+      int pc = worklist.remove(worklist.size() - 1).intValue();
+      if (pc < 0 || pc >= visited.length || visited[pc]) {
+        continue;
+      }
+      visited[pc] = true;
+      AvrInstruction insn = decode(state, pc);
+      if (insn != null) {
+        for (int target : successors(state, pc, insn)) {
+          worklist.add(Integer.valueOf(target));
+        }
+      }
+    }
+  }
+
+  /**
+   * Check whether the given address is the entry of some basic block.
+   *
+   * @param address Address in FLASH memory.
+   * @return True if a block starts at this address.
+   */
+  public boolean isLeader(int address) {
+    return address >= 0 && address < this.leaders.length && this.leaders[address];
+  }
+
+  /**
+   * Check whether a transition between two addresses crosses a block
+   * boundary. That is, either it does not simply fall through to the next
+   * instruction, or it falls through into the entry of another block.
+   *
+   * @param state The state which has just executed the transition.
+   * @param from  Address of the instruction executed.
+   * @param to    Address of the next instruction to execute.
+   * @return True if the transition crosses a block boundary.
+   */
+  public boolean isBoundary(AbstractAvr state, int from, int to) {
+    if (to != from + state.getInstruction(from).getWidth()) {
+      return true;
+    }
+    return isLeader(to);
+  }
+
+  /**
+   * Get the number of block entries identified.
+   *
+   * @return Number of basic blocks.
+   */
+  public int size() {
+    int count = 0;
+    for (boolean b : this.leaders) {
+      count += b ? 1 : 0;
+    }
+    return count;
+  }
+
+  /**
+   * Determine the (statically known) successors of a given instruction, whilst
+   * marking those which begin a block.
+   *
+   * @param state State used for decoding instructions.
+   * @param pc    Address of instruction.
+   * @param insn  Instruction at that address.
+   * @return Addresses of successor instructions.
+   */
+  private int[] successors(AbstractAvr state, int pc, AvrInstruction insn) {
+    int next = pc + insn.getWidth();
+    switch (insn.getOpcode()) {
+      case RJMP:
+        return leaders(pc + ((AvrInstruction.RelativeAddress) insn).k + 1);
+      case RCALL:
+        return leaders(pc + ((AvrInstruction.RelativeAddress) insn).k + 1, next);
+      case JMP:
+        return leaders(((AvrInstruction.AbsoluteAddress) insn).k);
+      case CALL:
+        return leaders(((AvrInstruction.AbsoluteAddress) insn).k, next);
+      case RET:
+      case RETI:
+      case IJMP:
+        // Targets unknown
+        return new int[0];
+      case ICALL:
+        return leaders(next);
+      case CPSE:
+      case SBRC:
+      case SBRS:
+      case SBIC:
+      case SBIS: {
+        AvrInstruction following = decode(state, next);
+        if (following == null) {
+          return leaders(next);
+        }
+        return leaders(next, next + following.getWidth());
+      }
+      default:
+        if (insn instanceof AvrInstruction.FlagRelativeAddress) {
+          return leaders(pc + ((AvrInstruction.FlagRelativeAddress) insn).k + 1, next);
+        } else if (insn instanceof AvrInstruction.RelativeAddress) {
+          return leaders(pc + ((AvrInstruction.RelativeAddress) insn).k + 1, next);
+        }
+        return new int[] { next };
+    }
+  }
+
+  /**
+   * Mark a given set of addresses as block entries.
+   *
+   * @param addresses Addresses to mark.
+   * @return The given addresses.
+   */
+  private int[] leaders(int... addresses) {
+    for (int address : addresses) {
+      if (address >= 0 && address < this.leaders.length) {
+        this.leaders[address] = true;
+      }
+    }
+    return addresses;
+  }
+
+  /**
+   * Decode the instruction at a given address, if possible. The firmware image
+   * may contain data as well as instructions, which cannot necessarily be
+   * decoded.
+   *
+   * @param state State used for decoding instructions.
+   * @param pc    Address of instruction.
+   * @return Decoded instruction, or <code>null</code> if none.
+   */
+  private static @Nullable AvrInstruction decode(AbstractAvr state, int pc) {
+    if (pc < 0 || pc >= state.getCode().size()) {
+      return null;
+    }
+    try {
+      return state.getInstruction(pc);
+    } catch (RuntimeException e) {
+      return null;
+    }
+  }
+}
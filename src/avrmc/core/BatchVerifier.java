@@ -0,0 +1,283 @@
+package avrmc.core;
+
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import javr.core.AVR;
+import javr.io.HexFile;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Checks many firmware images concurrently on a bounded pool of threads, where
+ * each image is checked by its own (sequential) <code>AvrModelChecker</code>.
+ * Results are reported to a listener as each job finishes, rather than once
+ * the whole batch is complete. Since jobs run independently, the time taken for
+ * a batch approaches that of its longest job (provided there are enough
+ * threads). Hence, where the longest jobs are known, they should be submitted
+ * first.
+ *
+ * <p>
+ * Images with identical contents share a single template state, from which the
+ * starting state of each job is cloned. Hence, such jobs (e.g. checking the
+ * same image with different budgets) share the code memory and the caches of
+ * decoded instructions, which are thread-safe. Templates are
+ * retained until the verifier is closed. Note that nothing is shared between
+ * images which differ in any byte, even where most of their code is the same
+ * (e.g. builds of one program with different options). Hence, for a batch of
+ * distinct images, each job decodes its own instructions. This costs at most
+ * one decode per instruction, which is small compared with exploration.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ * @param <T> Concrete property value to be checked.
+ */
+public class BatchVerifier<T> implements AutoCloseable {
+  /**
+   * Receives the outcome of each job as it finishes. Since jobs finish on
+   * different threads, a listener must be thread-safe.
+   *
+   * @author David J. Pearce
+   *
+   * @param <T> Concrete property value checked.
+   */
+  public interface Listener<T> {
+    /**
+     * Report that a job has finished successfully.
+     *
+     * @param name   Name given to job when submitted.
+     * @param result Outcome of job.
+     */
+    public void completed(String name, ExplorationResult<T> result);
+
+    /**
+     * Report that a job failed because an exception was thrown (e.g. by the
+     * property).
+     *
+     * @param name  Name given to job when submitted.
+     * @param error Exception thrown.
+     */
+    public void failed(String name, Throwable error);
+  }
+
+  /**
+   * Prepares the starting state of each job, after the firmware has been
+   * uploaded. For example, by clocking the machine until the stack pointer is
+   * initialised.
+   *
+   * @author David J. Pearce
+   *
+   */
+  @FunctionalInterface
+  public interface Initialiser {
+    /**
+     * Prepare a given starting state.
+     *
+     * @param state State to prepare.
+     * @throws AVR.HaltedException If the machine halts whilst being prepared.
+     */
+    public void initialise(AbstractAvr state) throws AVR.HaltedException;
+  }
+
+  /**
+   * Responsible for constructing the (fresh) model checker for each job.
+   */
+  private final Supplier<? extends AvrModelChecker<T>> checkers;
+  /**
+   * Threads on which jobs are executed.
+   */
+  private final ExecutorService executor;
+  /**
+   * Template state for each distinct image submitted so far.
+   */
+  private final ConcurrentHashMap<Image, AbstractAvr> templates = new ConcurrentHashMap<>();
+  /**
+   * Size (in bytes) of the code memory of each machine.
+   */
+  private int codeSize = 8192;
+  /**
+   * Size (in bytes) of the data memory of each machine.
+   */
+  private int dataSize = 32 + 64 + 512;
+  /**
+   * Prepares the starting state of each job.
+   */
+  private Initialiser initialiser = s -> {
+    // Nothing to do
+  };
+  /**
+   * Listener to report outcomes to, or <code>null</code> if none.
+   */
+  private @Nullable Listener<T> listener;
+
+  /**
+   * Construct a verifier which executes jobs on a given number of threads.
+   *
+   * @param checkers Constructs a fresh model checker for each job.
+   * @param threads  Maximum number of jobs executing at once.
+   */
+  public BatchVerifier(Supplier<? extends AvrModelChecker<T>> checkers, int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("invalid threads: " + threads); //$NON-NLS-1$
+    }
+    this.checkers = checkers;
+    this.executor = Executors.newFixedThreadPool(threads);
+  }
+
+  /**
+   * Set the size of the machine on which each image is executed. By default,
+   * this is that of the ATtiny85.
+   *
+   * @param code Size (in bytes) of code memory.
+   * @param data Size (in bytes) of data memory, including registers and I/O
+   *             ports.
+   */
+  public void setMemory(int code, int data) {
+    this.codeSize = code;
+    this.dataSize = data;
+    this.templates.clear();
+  }
+
+  /**
+   * Set the initialiser used to prepare the starting state of each job. By
+   * default, the state is used as is after the firmware is uploaded.
+   *
+   * @param initialiser Initialiser to use.
+   */
+  public void setInitialiser(Initialiser initialiser) {
+    this.initialiser = initialiser;
+  }
+
+  /**
+   * Set the listener to which the outcome of each job is reported. This only
+   * affects jobs submitted afterwards.
+   *
+   * @param listener Listener to report to, or <code>null</code> for none.
+   */
+  public void setListener(@Nullable Listener<T> listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Submit a job which checks a given image within a given budget. The job
+   * executes once a thread is available.
+   *
+   * @param name     Name identifying job, which is reported to the listener.
+   * @param firmware Image to be checked.
+   * @param budget   Limits on the resources which the job may consume.
+   * @return Outcome of job, once finished.
+   */
+  public Future<ExplorationResult<T>> submit(String name, HexFile firmware,
+      ExplorationBudget budget) {
+    AbstractAvr template = template(firmware);
+    Initialiser init = this.initialiser;
+    @Nullable
+    Listener<T> l = this.listener;
+    CompletableFuture<ExplorationResult<T>> future = new CompletableFuture<>();
+    this.executor.execute(() -> {
+      try {
+        AbstractAvr seed = template.clone();
+        init.initialise(seed);
+        AvrModelChecker<T> checker = this.checkers.get();
+        checker.setBudget(budget);
+        ExplorationResult<T> result = checker.check(seed);
+        if (l != null) {
+          l.completed(name, result);
+        }
+        future.complete(result);
+      } catch (Throwable e) {
+        if (l != null) {
+          l.failed(name, e);
+        }
+        future.completeExceptionally(e);
+      }
+    });
+    return future;
+  }
+
+  /**
+   * Get the number of distinct images submitted so far, each of which has its
+   * own template state.
+   *
+   * @return Number of distinct images.
+   */
+  public int getImages() {
+    return this.templates.size();
+  }
+
+  /**
+   * Wait for every job submitted to finish, and release the threads. No
+   * further jobs can be submitted.
+   */
+  @Override
+  public void close() {
+    this.executor.shutdown();
+    try {
+      while (!this.executor.awaitTermination(1, TimeUnit.MINUTES)) {
+        // Keep waiting
+      }
+    } catch (InterruptedException e) {
+      this.executor.shutdownNow();
+      Thread.currentThread().interrupt();
+    } finally {
+      this.templates.clear();
+    }
+  }
+
+  /**
+   * Get the template state for a given image, which is shared with any
+   * previously submitted image with identical contents.
+   *
+   * @param firmware Image to get template for.
+   * @return Template state, which must only be cloned.
+   */
+  private AbstractAvr template(HexFile firmware) {
+    AbstractAvr avr = new AbstractAvr(this.codeSize, this.dataSize);
+    firmware.uploadTo(avr.getCode());
+    AbstractAvr r = this.templates.computeIfAbsent(new Image(avr.getCodeBytes()), k -> avr);
+    assert r != null;
+    return r;
+  }
+
+  /**
+   * The contents of code memory, used to identify images which are identical.
+   *
+   * @author David J. Pearce
+   *
+   */
+  private static final class Image {
+    /**
+     * Contents of code memory.
+     */
+    private final byte[] bytes;
+    /**
+     * Hash of contents.
+     */
+    private final int hash;
+
+    /**
+     * Construct an image with given contents.
+     *
+     * @param bytes Contents of code memory.
+     */
+    Image(byte[] bytes) {
+      this.bytes = bytes;
+      this.hash = Arrays.hashCode(bytes);
+    }
+
+    @Override
+    public boolean equals(@Nullable Object o) {
+      return o instanceof Image && Arrays.equals(this.bytes, ((Image) o).bytes);
+    }
+
+    @Override
+    public int hashCode() {
+      return this.hash;
+    }
+  }
+}
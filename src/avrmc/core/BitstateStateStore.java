@@ -0,0 +1,152 @@
+package avrmc.core;
+
+/**
+ * A state store which records each visited state as <code>k</code> bits in a
+ * fixed-size bit array (i.e. <i>bitstate hashing</i>, also known as
+ * <i>supertrace</i>). A state is considered visited if all of its bits are
+ * already set. This uses a fixed amount of memory regardless of how many states
+ * are visited, making it possible to (partially) explore state spaces far too
+ * large for any other store.
+ *
+ * <p>
+ * The cost of this is that a new state is wrongly considered visited whenever
+ * its bits happen to have been set by other states, in which case it is not
+ * explored. As the array fills up this becomes increasingly likely. Hence, the
+ * results computed are a lower bound (e.g. for the maximum stack height), and
+ * this store estimates the fraction of states which were omitted. The bits for
+ * each state are chosen by double hashing of its fingerprint. Note that these
+ * estimates account only for states which are wrongly considered visited, and
+ * not for those states reachable only through them. Hence, the estimated
+ * coverage is an upper bound and can be very optimistic for firmwares with few
+ * forks. This store is not thread-safe.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public class BitstateStateStore implements StateStore {
+  /**
+   * Largest supported bit array size, such that the underlying array can be
+   * indexed by an <code>int</code>.
+   */
+  private static final int MAX_MEGABYTES = 16383;
+  /**
+   * The bit array.
+   */
+  private final long[] bits;
+  /**
+   * Number of bits in the bit array.
+   */
+  private final long size;
+  /**
+   * Number of bits set for each state.
+   */
+  private final int k;
+  /**
+   * Number of states added.
+   */
+  private long count;
+  /**
+   * Number of bits currently set in the bit array.
+   */
+  private long set;
+  /**
+   * Expected number of states wrongly considered visited so far. That is, the
+   * sum over all states added of the probability that the state would have been
+   * wrongly considered visited, had it been new.
+   */
+  private double omissions;
+
+  /**
+   * Construct a bitstate store using three bits per state.
+   *
+   * @param megabytes Size of the bit array in megabytes.
+   */
+  public BitstateStateStore(int megabytes) {
+    this(megabytes, 3);
+  }
+
+  /**
+   * Construct a bitstate store of a given size.
+   *
+   * @param megabytes Size of the bit array in megabytes.
+   * @param k         Number of bits set for each state.
+   */
+  public BitstateStateStore(int megabytes, int k) {
+    if (megabytes < 1 || megabytes > MAX_MEGABYTES) {
+      throw new IllegalArgumentException("invalid bit array size: " + megabytes + "MB"); //$NON-NLS-1$ //$NON-NLS-2$
+    } else if (k < 1) {
+      throw new IllegalArgumentException("invalid number of bits per state: " + k); //$NON-NLS-1$
+    }
+    this.bits = new long[megabytes << 17];
+    this.size = 64L * this.bits.length;
+    this.k = k;
+  }
+
+  @Override
+  public boolean add(AbstractAvr state) {
+    return add(state.fingerprint());
+  }
+
+  /**
+   * Record a given fingerprint as visited.
+   *
+   * @param fingerprint Fingerprint of state to record.
+   * @return True if at least one of the bits for this fingerprint was not
+   *         already set, or false otherwise.
+   */
+  public boolean add(long fingerprint) {
+    // Probability a new state would find all its bits set
+    double fill = (double) this.set / this.size;
+    long h1 = fingerprint;
+    // NOTE: second hash must be odd so every bit is reachable
+    long h2 = AbstractMemory.mix(fingerprint ^ 0x9E3779B97F4A7C15L) | 1;
+    boolean added = false;
+    for (int i = 0; i != this.k; ++i) {
+      long index = Long.remainderUnsigned(h1 + (i * h2), this.size);
+      int word = (int) (index >>> 6);
+      long mask = 1L << index;
+      if ((this.bits[word] & mask) == 0) {
+        this.bits[word] |= mask;
+        this.set = this.set + 1;
+        added = true;
+      }
+    }
+    if (added) {
+      this.count = this.count + 1;
+      this.omissions += Math.pow(fill, this.k);
+    }
+    return added;
+  }
+
+  @Override
+  public long size() {
+    return this.count;
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    return 16 + (8L * this.bits.length);
+  }
+
+  @Override
+  public double getOmissionProbability() {
+    // Poisson approximation for at least one omission
+    return 1.0 - Math.exp(-this.omissions);
+  }
+
+  @Override
+  public double getCoverage() {
+    return (this.count == 0) ? 1.0 : this.count / (this.count + this.omissions);
+  }
+
+  /**
+   * Get the fraction of bits currently set in the bit array. Once this becomes
+   * large, most new states will be wrongly considered visited.
+   *
+   * @return Fraction of bits set.
+   */
+  public double getFill() {
+    return (double) this.set / this.size;
+  }
+}
@@ -0,0 +1,328 @@
+package avrmc.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Responsible for writing (and reading back) checkpoints of a model checking
+ * run, such that an interrupted run can be resumed. A checkpoint consists of
+ * two files in a given directory:
+ * <ul>
+ * <li><b>Visited log.</b> Every state recorded as visited is appended to this
+ * file (using <code>StateCodec</code>) as soon as it is recorded. Hence, the
+ * visited set is saved incrementally, and the cost of saving it is spread over
+ * the run rather than paid at each checkpoint.</li>
+ * <li><b>Snapshot.</b> This identifies how much of the visited log is valid,
+ * and holds the accumulated property value and every state on the worklist. It
+ * is rewritten in full at each checkpoint, and atomically replaced so that a
+ * valid snapshot always exists.</li>
+ * </ul>
+ * <p>
+ * The cost of each checkpoint is, therefore, proportional to the size of the
+ * worklist rather than the number of states visited.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ * @param <T> Property value being accumulated.
+ */
+final class Checkpointer<T> implements AutoCloseable {
+  /**
+   * Identifies a snapshot file.
+   */
+  private static final int MAGIC = 0x4156524D;
+  /**
+   * Version of the snapshot format. This must be incremented whenever the format
+   * (or the state encoding) changes.
+   */
+  private static final int VERSION = 2;
+  /**
+   * Name of the visited log within the checkpoint directory.
+   */
+  private static final String VISITED = "visited.log"; //$NON-NLS-1$
+  /**
+   * Name of the snapshot within the checkpoint directory.
+   */
+  private static final String SNAPSHOT = "snapshot"; //$NON-NLS-1$
+  /**
+   * Directory holding the checkpoint.
+   */
+  private final Path directory;
+  /**
+   * Used to save and restore the property value.
+   */
+  private final AvrModelChecker.Serializer<T> serializer;
+  /**
+   * Stream for appending to the visited log, or <code>null</code> if not yet
+   * opened.
+   */
+  private @Nullable DataOutputStream log;
+  /**
+   * Channel of the visited log, used to force it to disk.
+   */
+  private @Nullable FileChannel channel;
+  /**
+   * Number of bytes written to the visited log.
+   */
+  private long logBytes;
+  /**
+   * Buffer used for encoding states.
+   */
+  private ByteBuffer buffer = ByteBuffer.allocate(0);
+
+  /**
+   * Construct a checkpointer for a given directory.
+   *
+   * @param directory  Directory to hold checkpoint, which is created if
+   *                   necessary.
+   * @param serializer Used to save and restore the property value.
+   */
+  Checkpointer(Path directory, AvrModelChecker.Serializer<T> serializer) {
+    this.directory = directory;
+    this.serializer = serializer;
+  }
+
+  /**
+   * Begin a fresh run, discarding any existing checkpoint.
+   *
+   * @throws IOException If a problem occurs accessing the checkpoint files.
+   */
+  void start() throws IOException {
+    Files.createDirectories(this.directory);
+    Files.deleteIfExists(this.directory.resolve(SNAPSHOT));
+    open(0);
+  }
+
+  /**
+   * Restore the most recent checkpoint, if one exists. Every state in the
+   * visited log is added to the given store, and every state in the snapshot is
+   * pushed onto the given worklist.
+   *
+   * @param template State running the same firmware as the checkpointed run.
+   * @param history  Store to restore visited states into.
+   * @param worklist Worklist to restore pending states into.
+   * @return Accumulated property value, or <code>null</code> if there is no
+   *         checkpoint (in which case nothing is restored).
+   * @throws IOException If a problem occurs reading the checkpoint files, or
+   *                     they are malformed.
+   */
+  @Nullable
+  T restore(AbstractAvr template, StateStore history, Worklist worklist) throws IOException {
+    Path snapshot = this.directory.resolve(SNAPSHOT);
+    if (!Files.exists(snapshot)) {
+      return null;
+    }
+    T value;
+    long validBytes;
+    try (DataInputStream in = open(snapshot)) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        throw new IOException("invalid or incompatible checkpoint: " + snapshot); //$NON-NLS-1$
+      }
+      validBytes = in.readLong();
+      value = this.serializer.read(in);
+      int count = in.readInt();
+      for (int i = 0; i != count; ++i) {
+        worklist.push(read(template, in));
+      }
+    }
+    // Replay those states which were recorded before the snapshot was taken
+    try (DataInputStream in = open(this.directory.resolve(VISITED))) {
+      long position = 0;
+      while (position < validBytes) {
+        int length = in.readInt();
+        history.add(read(template, in, length));
+        position += 4 + length;
+      }
+    } catch (EOFException e) {
+      throw new IOException("truncated visited log", e); //$NON-NLS-1$
+    }
+    // Discard anything recorded after the snapshot was taken
+    open(validBytes);
+    return value;
+  }
+
+  /**
+   * Record that a state has been added to the visited set.
+   *
+   * @param state State which was added.
+   * @throws IOException If a problem occurs writing to the visited log.
+   */
+  void visited(AbstractAvr state) throws IOException {
+    DataOutputStream out = this.log;
+    if (out == null) {
+      throw new IllegalStateException("checkpointer not started"); //$NON-NLS-1$
+    }
+    ByteBuffer buf = encode(state);
+    out.writeInt(buf.remaining());
+    out.write(buf.array(), 0, buf.remaining());
+    this.logBytes += 4 + buf.remaining();
+  }
+
+  /**
+   * Write a snapshot, thereby completing a checkpoint.
+   *
+   * @param worklist Pending states.
+   * @param current  State currently being explored, which was taken from the
+   *                 worklist and is explored first on resumption, or
+   *                 <code>null</code> if none.
+   * @param value    Property value accumulated so far.
+   * @throws IOException If a problem occurs writing the checkpoint files.
+   */
+  void save(Worklist worklist, @Nullable AbstractAvr current, T value) throws IOException {
+    DataOutputStream out = this.log;
+    FileChannel ch = this.channel;
+    if (out == null || ch == null) {
+      throw new IllegalStateException("checkpointer not started"); //$NON-NLS-1$
+    }
+    // Visited log must be durable before the snapshot refers to it
+    out.flush();
+    ch.force(false);
+    Path tmp = this.directory.resolve(SNAPSHOT + ".tmp"); //$NON-NLS-1$
+    try (DataOutputStream snap = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      snap.writeInt(MAGIC);
+      snap.writeInt(VERSION);
+      snap.writeLong(this.logBytes);
+      this.serializer.write(value, snap);
+      long count = worklist.size() + ((current != null) ? 1 : 0);
+      if (count > Integer.MAX_VALUE) {
+        throw new IOException("worklist too large to checkpoint"); //$NON-NLS-1$
+      }
+      snap.writeInt((int) count);
+      // Oldest first, such that pushing them in order restores the worklist
+      try {
+        worklist.forEach(st -> {
+          try {
+            write(st, snap);
+          } catch (IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch (UncheckedIOException e) {
+        throw e.getCause();
+      }
+      if (current != null) {
+        write(current, snap);
+      }
+    }
+    Files.move(tmp, this.directory.resolve(SNAPSHOT), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  @Override
+  public void close() throws IOException {
+    DataOutputStream out = this.log;
+    if (out != null) {
+      out.close();
+    }
+  }
+
+  /**
+   * Open the visited log for appending, truncating it to a given length.
+   *
+   * @param length Number of valid bytes in the log.
+   * @throws IOException If a problem occurs opening the log.
+   */
+  private void open(long length) throws IOException {
+    FileOutputStream fos = new FileOutputStream(this.directory.resolve(VISITED).toFile(), true);
+    FileChannel ch = fos.getChannel();
+    ch.truncate(length);
+    ch.position(length);
+    this.channel = ch;
+    this.log = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16));
+    this.logBytes = length;
+  }
+
+  /**
+   * Open a given file for reading.
+   *
+   * @param file File to open.
+   * @return Stream for reading file.
+   * @throws IOException If a problem occurs opening the file.
+   */
+  private static DataInputStream open(Path file) throws IOException {
+    InputStream in = Files.newInputStream(file, StandardOpenOption.READ);
+    return new DataInputStream(new BufferedInputStream(in, 1 << 16));
+  }
+
+  /**
+   * Write a length-prefixed encoding of a given state.
+   *
+   * @param state State to write.
+   * @param out   Stream to write to.
+   * @throws IOException If a problem occurs writing.
+   */
+  private void write(AbstractAvr state, DataOutputStream out) throws IOException {
+    ByteBuffer buf = encode(state);
+    out.writeInt(buf.remaining());
+    out.write(buf.array(), 0, buf.remaining());
+  }
+
+  /**
+   * Read a length-prefixed encoding of a state.
+   *
+   * @param template State running the same firmware.
+   * @param in       Stream to read from.
+   * @return State read.
+   * @throws IOException If a problem occurs reading.
+   */
+  private AbstractAvr read(AbstractAvr template, DataInputStream in) throws IOException {
+    return read(template, in, in.readInt());
+  }
+
+  /**
+   * Read the encoding of a state whose length is known.
+   *
+   * @param template State running the same firmware.
+   * @param in       Stream to read from.
+   * @param length   Length of encoding.
+   * @return State read.
+   * @throws IOException If a problem occurs reading, or the encoding is
+   *                     malformed.
+   */
+  private AbstractAvr read(AbstractAvr template, DataInputStream in, int length)
+      throws IOException {
+    if (this.buffer.capacity() < length) {
+      this.buffer = ByteBuffer.allocate(Math.max(length, 2 * this.buffer.capacity()));
+    }
+    in.readFully(this.buffer.array(), 0, length);
+    this.buffer.clear();
+    this.buffer.limit(length);
+    try {
+      return StateCodec.decode(template, this.buffer);
+    } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+      throw new IOException("malformed state in checkpoint", e); //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * Encode a given state into the buffer, enlarging the buffer if necessary.
+   *
+   * @param state State to be encoded.
+   * @return Buffer holding (only) the encoded state, starting at index zero.
+   */
+  private ByteBuffer encode(AbstractAvr state) {
+    int bound = StateCodec.getMaximumSize(state);
+    if (this.buffer.capacity() < bound) {
+      this.buffer = ByteBuffer.allocate(bound);
+    }
+    this.buffer.clear();
+    StateCodec.encode(state, this.buffer);
+    this.buffer.flip();
+    return this.buffer;
+  }
+}
@@ -0,0 +1,357 @@
+package avrmc.core;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * A state store which records every visited state exactly, using <i>collapse
+ * compression</i>. Each state is split into components: the program counter and
+ * status flags; the register file (<code>0-31</code>); the I/O space
+ * (<code>32-95</code>); and the remaining SRAM, in fixed-size pages. Each
+ * distinct component is stored once in a table for that kind of component, and
+ * identified by its index in that table. The page indices of a state are
+ * themselves collapsed into a single SRAM index, such that a state is recorded
+ * as just four indices (i.e. sixteen bytes).
+ *
+ * <p>
+ * This works well because successive states typically differ in only a few
+ * registers, and so the number of distinct components is far smaller than the
+ * number of states. Unlike <code>FingerprintStateStore</code>, this never
+ * wrongly considers a state as visited. However, since each table is held in a
+ * single array, at most around one hundred million states can be recorded.
+ * Every state recorded must have the same size of data memory.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public class CollapseStateStore implements StateStore {
+  /**
+   * Address at which the I/O space begins.
+   */
+  private static final int IO_START = 32;
+  /**
+   * Address at which SRAM begins.
+   */
+  private static final int SRAM_START = 96;
+  /**
+   * Number of bytes in each SRAM page. This matches the page size of
+   * <code>AbstractMemory</code>, such that components can be extracted a page
+   * at a time.
+   */
+  private static final int PAGE_SIZE = 32;
+  /**
+   * Width of the record used for each page of a component. This holds the value
+   * of each location, followed by the mask of known bits of each location which
+   * is unknown, and then a bitmap identifying those locations.
+   */
+  private static final int PAGE_WIDTH = (2 * PAGE_SIZE) + 4;
+  /**
+   * Size of data memory of every state recorded, or <code>-1</code> if nothing
+   * has been recorded yet.
+   */
+  private int size = -1;
+  /**
+   * Distinct program counter and status flag combinations.
+   */
+  private Table control = new Table(0);
+  /**
+   * Distinct register files.
+   */
+  private Table registers = new Table(0);
+  /**
+   * Distinct I/O spaces.
+   */
+  private Table io = new Table(0);
+  /**
+   * Distinct SRAM pages, regardless of their address.
+   */
+  private Table pages = new Table(0);
+  /**
+   * Distinct combinations of SRAM pages.
+   */
+  private Table sram = new Table(0);
+  /**
+   * Distinct states, each being a combination of the above.
+   */
+  private Table states = new Table(0);
+  /**
+   * Buffer into which the program counter and status flags are extracted.
+   */
+  private byte[] controlBuffer = new byte[0];
+  /**
+   * Buffer into which the register file is extracted.
+   */
+  private byte[] registersBuffer = new byte[0];
+  /**
+   * Buffer into which the I/O space is extracted.
+   */
+  private byte[] ioBuffer = new byte[0];
+  /**
+   * Buffer into which each SRAM page is extracted.
+   */
+  private byte[] pageBuffer = new byte[0];
+  /**
+   * Buffer into which the page indices of a state are collected.
+   */
+  private byte[] sramBuffer = new byte[0];
+  /**
+   * Buffer into which the component indices of a state are collected.
+   */
+  private byte[] stateBuffer = new byte[0];
+
+  @Override
+  public boolean add(AbstractAvr state) {
+    AbstractMemory data = state.getData();
+    if (this.size < 0) {
+      initialise(data.size());
+    } else if (this.size != data.size()) {
+      throw new IllegalArgumentException("inconsistent data memory size: " + data.size()); //$NON-NLS-1$
+    }
+    // Program counter and status flags
+    putInt(this.controlBuffer, 0, state.getProgramCounter());
+    putInt(this.controlBuffer, 4, state.getStatusFingerprint());
+    putInt(this.stateBuffer, 0, this.control.intern(this.controlBuffer));
+    // Registers and I/O space
+    extract(data, 0, this.registersBuffer);
+    putInt(this.stateBuffer, 4, this.registers.intern(this.registersBuffer));
+    extract(data, IO_START, this.ioBuffer);
+    putInt(this.stateBuffer, 8, this.io.intern(this.ioBuffer));
+    // SRAM pages
+    for (int i = 0; i < this.sramBuffer.length; i += 4) {
+      extract(data, SRAM_START + ((i >>> 2) * PAGE_SIZE), this.pageBuffer);
+      putInt(this.sramBuffer, i, this.pages.intern(this.pageBuffer));
+    }
+    putInt(this.stateBuffer, 12, this.sram.intern(this.sramBuffer));
+    // Finally, the state itself
+    int before = this.states.size();
+    this.states.intern(this.stateBuffer);
+    return this.states.size() != before;
+  }
+
+  @Override
+  public long size() {
+    return this.states.size();
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    return this.control.getMemoryUsage() + this.registers.getMemoryUsage()
+        + this.io.getMemoryUsage() + this.pages.getMemoryUsage() + this.sram.getMemoryUsage()
+        + this.states.getMemoryUsage();
+  }
+
+  @Override
+  public double getOmissionProbability() {
+    return 0.0;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d states (%d bytes); distinct control %d, registers %d, io %d, pages %d, sram %d", //$NON-NLS-1$
+        Long.valueOf(size()), Long.valueOf(getMemoryUsage()),
+        Integer.valueOf(this.control.size()), Integer.valueOf(this.registers.size()),
+        Integer.valueOf(this.io.size()), Integer.valueOf(this.pages.size()),
+        Integer.valueOf(this.sram.size()));
+  }
+
+  /**
+   * Construct the tables for a given size of data memory.
+   *
+   * @param dataSize Size of data memory.
+   */
+  private void initialise(int dataSize) {
+    int nPages = (Math.max(dataSize - SRAM_START, 0) + PAGE_SIZE - 1) / PAGE_SIZE;
+    this.size = dataSize;
+    this.controlBuffer = new byte[8];
+    this.registersBuffer = new byte[PAGE_WIDTH * (IO_START / PAGE_SIZE)];
+    this.ioBuffer = new byte[PAGE_WIDTH * ((SRAM_START - IO_START) / PAGE_SIZE)];
+    this.pageBuffer = new byte[PAGE_WIDTH];
+    this.sramBuffer = new byte[4 * nPages];
+    this.stateBuffer = new byte[16];
+    this.control = new Table(this.controlBuffer.length);
+    this.registers = new Table(this.registersBuffer.length);
+    this.io = new Table(this.ioBuffer.length);
+    this.pages = new Table(this.pageBuffer.length);
+    this.sram = new Table(this.sramBuffer.length);
+    this.states = new Table(this.stateBuffer.length);
+  }
+
+  /**
+   * Extract the record for a component, which covers one or more pages
+   * starting from a given address. Pages beyond the end of memory are treated
+   * as zero.
+   *
+   * @param data   Memory to extract from.
+   * @param start  Address of first location in component.
+   * @param record Buffer to extract into, whose length determines the number of
+   *               pages covered.
+   */
+  private static void extract(AbstractMemory data, int start, byte[] record) {
+    for (int i = 0; i < record.length; i += PAGE_WIDTH) {
+      int address = start + ((i / PAGE_WIDTH) * PAGE_SIZE);
+      if (address < data.size()) {
+        data.copyPage(address, record, i);
+      } else {
+        Arrays.fill(record, i, i + PAGE_WIDTH, (byte) 0);
+      }
+    }
+  }
+
+  /**
+   * Write an int into a record.
+   *
+   * @param record Record to write into.
+   * @param offset Offset within record.
+   * @param value  Value to write.
+   */
+  private static void putInt(byte[] record, int offset, int value) {
+    record[offset] = (byte) (value >>> 24);
+    record[offset + 1] = (byte) (value >>> 16);
+    record[offset + 2] = (byte) (value >>> 8);
+    record[offset + 3] = (byte) value;
+  }
+
+  /**
+   * A table of distinct fixed-width records, each identified by its index in
+   * the order they were added. Records are held contiguously in a single array,
+   * and are located using an open-addressing hash table (using linear probing)
+   * which is resized whenever it becomes half full.
+   *
+   * @author David J. Pearce
+   *
+   */
+  private static final class Table {
+    /**
+     * Provides access to the bytes of a record as longs.
+     */
+    private static final VarHandle LONGS = MethodHandles.byteArrayViewVarHandle(long[].class,
+        ByteOrder.LITTLE_ENDIAN);
+    /**
+     * Width (in bytes) of each record.
+     */
+    private final int width;
+    /**
+     * Contents of every record, in order.
+     */
+    private byte[] records;
+    /**
+     * The hash table. Each slot holds the hash of a record in its upper half,
+     * and one more than the index of that record in its lower half, or is zero
+     * if empty. Holding the hash alongside the index means that a lookup
+     * typically touches only one slot and one record.
+     */
+    private long[] slots = new long[16];
+    /**
+     * Number of records in this table.
+     */
+    private int count;
+
+    /**
+     * Construct an empty table for records of a given width.
+     *
+     * @param width Width (in bytes) of each record.
+     */
+    Table(int width) {
+      this.width = width;
+      this.records = new byte[16 * width];
+    }
+
+    /**
+     * Get the index of a given record, adding it if necessary.
+     *
+     * @param record Record to look up, whose length must match the table width.
+     * @return Index of record.
+     */
+    int intern(byte[] record) {
+      int hash = hash(record);
+      int mask = this.slots.length - 1;
+      int i = hash & mask;
+      long slot;
+      while ((slot = this.slots[i]) != 0) {
+        int index = (int) slot - 1;
+        int start = index * this.width;
+        if ((int) (slot >>> 32) == hash
+            && Arrays.equals(this.records, start, start + this.width, record, 0, this.width)) {
+          return index;
+        }
+        i = (i + 1) & mask;
+      }
+      int index = this.count;
+      if ((index + 1) * (long) this.width > this.records.length) {
+        long n = Math.max(2L * this.records.length, (index + 1) * (long) this.width);
+        if (n > Integer.MAX_VALUE - 8) {
+          throw new IllegalStateException("state store capacity exceeded"); //$NON-NLS-1$
+        }
+        this.records = Arrays.copyOf(this.records, (int) n);
+      }
+      System.arraycopy(record, 0, this.records, index * this.width, this.width);
+      this.slots[i] = ((long) hash << 32) | (index + 1);
+      this.count = index + 1;
+      // Resize when table becomes half full
+      if (this.count > (this.slots.length >>> 1)) {
+        resize();
+      }
+      return index;
+    }
+
+    /**
+     * Compute the hash of a record. Since the records of some tables are
+     * themselves tuples of small indices, this must mix well (unlike
+     * <code>Arrays.hashCode()</code>).
+     *
+     * @param record Record to hash.
+     * @return Hash of record.
+     */
+    private static int hash(byte[] record) {
+      long h = record.length;
+      int i = 0;
+      // Hash eight bytes at a time where possible
+      for (; i + 8 <= record.length; i += 8) {
+        h = Long.rotateLeft(h ^ (long) LONGS.get(record, i), 31) * 0x9E3779B97F4A7C15L;
+      }
+      for (; i != record.length; ++i) {
+        h = Long.rotateLeft(h ^ (record[i] & 0xFF), 31) * 0x9E3779B97F4A7C15L;
+      }
+      return (int) AbstractMemory.mix(h);
+    }
+
+    /**
+     * Get the number of records in this table.
+     *
+     * @return Number of records.
+     */
+    int size() {
+      return this.count;
+    }
+
+    /**
+     * Get an estimate of the number of bytes retained by this table.
+     *
+     * @return Estimated size in bytes.
+     */
+    long getMemoryUsage() {
+      return 48 + this.records.length + (8L * this.slots.length);
+    }
+
+    /**
+     * Double the size of the hash table, reinserting every record.
+     */
+    private void resize() {
+      long[] nSlots = new long[this.slots.length << 1];
+      int mask = nSlots.length - 1;
+      for (long slot : this.slots) {
+        if (slot != 0) {
+          int i = (int) (slot >>> 32) & mask;
+          while (nSlots[i] != 0) {
+            i = (i + 1) & mask;
+          }
+          nSlots[i] = slot;
+        }
+      }
+      this.slots = nSlots;
+    }
+  }
+}
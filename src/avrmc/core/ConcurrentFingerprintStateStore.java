@@ -0,0 +1,88 @@
+package avrmc.core;
+
+/**
+ * A thread-safe state store which records only a 64-bit fingerprint of each
+ * visited state, for use when several threads are exploring the state space
+ * at once. Fingerprints are partitioned over a fixed number of segments (using
+ * their uppermost bits), where each segment is a
+ * <code>FingerprintStateStore</code> guarded by its own lock. Hence, threads
+ * only contend when adding fingerprints to the same segment at the same time,
+ * and each segment can be resized independently of the others.
+ *
+ * <p>
+ * The probability of omitting a state because of a fingerprint collision is
+ * the same as for <code>FingerprintStateStore</code>.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public class ConcurrentFingerprintStateStore implements StateStore {
+  /**
+   * Base two logarithm of the number of segments.
+   */
+  private static final int SEGMENT_BITS = 6;
+  /**
+   * The segments making up this store.
+   */
+  private final FingerprintStateStore[] segments;
+
+  /**
+   * Construct an empty concurrent fingerprint store.
+   */
+  public ConcurrentFingerprintStateStore() {
+    this.segments = new FingerprintStateStore[1 << SEGMENT_BITS];
+    for (int i = 0; i != this.segments.length; ++i) {
+      this.segments[i] = new FingerprintStateStore(1024);
+    }
+  }
+
+  @Override
+  public boolean add(AbstractAvr state) {
+    return add(state.fingerprint());
+  }
+
+  /**
+   * Record a given fingerprint as visited.
+   *
+   * @param fingerprint Fingerprint of state to record.
+   * @return True if this fingerprint was not previously recorded, or false
+   *         otherwise.
+   */
+  public boolean add(long fingerprint) {
+    // NOTE: segments index by lowermost bits, so select using uppermost bits.
+    FingerprintStateStore segment = this.segments[(int) (fingerprint >>> (64 - SEGMENT_BITS))];
+    synchronized (segment) {
+      return segment.add(fingerprint);
+    }
+  }
+
+  @Override
+  public long size() {
+    long count = 0;
+    for (FingerprintStateStore segment : this.segments) {
+      synchronized (segment) {
+        count += segment.size();
+      }
+    }
+    return count;
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    long bytes = 16 + (4L * this.segments.length);
+    for (FingerprintStateStore segment : this.segments) {
+      synchronized (segment) {
+        bytes += segment.getMemoryUsage();
+      }
+    }
+    return bytes;
+  }
+
+  @Override
+  public double getOmissionProbability() {
+    double n = size();
+    // Birthday bound for 64-bit fingerprints
+    return Math.min(1.0, (n * n) / 0x1p65);
+  }
+}
@@ -0,0 +1,57 @@
+package avrmc.core;
+
+import java.util.HashSet;
+
+/**
+ * A state store which records a complete copy of every visited state. This is
+ * exact (i.e. never wrongly considers a state as visited) but requires a large
+ * amount of memory per state. As such, it is primarily useful for validating
+ * other (more compact) stores on small firmware.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class ExactStateStore implements StateStore {
+  /**
+   * Estimated overhead (in bytes) per state beyond its data memory. This
+   * accounts for the hash set entry, the state object itself and its abstract
+   * memory object.
+   */
+  private static final int OVERHEAD = 160;
+  /**
+   * Set of copies of every visited state.
+   */
+  private final HashSet<AbstractAvr> states = new HashSet<>();
+  /**
+   * Estimated bytes retained by the recorded states.
+   */
+  private long bytes;
+
+  @Override
+  public boolean add(AbstractAvr state) {
+    if (this.states.contains(state)) {
+      return false;
+    }
+    // NOTE: measure before copying, since the copy then shares (and the given
+    // state no longer owns) the pages written since the state was last copied.
+    this.bytes += OVERHEAD + state.getData().getMemoryUsage();
+    // NOTE: must store a copy since the given state will continue to be mutated.
+    this.states.add(state.clone());
+    return true;
+  }
+
+  @Override
+  public long size() {
+    return this.states.size();
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    return this.bytes;
+  }
+
+  @Override
+  public double getOmissionProbability() {
+    return 0.0;
+  }
+}
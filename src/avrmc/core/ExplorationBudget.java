@@ -0,0 +1,253 @@
+package avrmc.core;
+
+import java.util.concurrent.TimeUnit;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Limits the resources which a single run of the model checker may consume.
+ * When any limit is reached, the run stops early and its result is marked as
+ * incomplete. The property value computed so far is still returned, which is
+ * useful for properties where a partial result is meaningful. For example, the
+ * maximum stack height observed so far is a lower bound on the true maximum.
+ *
+ * <p>
+ * A budget is immutable, and is constructed by refining
+ * <code>UNLIMITED</code>. For example:
+ * </p>
+ *
+ * <pre>
+ * ExplorationBudget.UNLIMITED.withMaxStates(1_000_000).withMaxTime(60_000)
+ * </pre>
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class ExplorationBudget {
+  /**
+   * Identifies the limit which caused a run to stop early.
+   *
+   * @author David J. Pearce
+   *
+   */
+  public enum Limit {
+    /**
+     * Number of states recorded as visited.
+     */
+    STATES,
+    /**
+     * Number of instructions executed.
+     */
+    STEPS,
+    /**
+     * Elapsed time.
+     */
+    TIME,
+    /**
+     * Fraction of the maximum heap in use.
+     */
+    HEAP,
+  }
+
+  /**
+   * A budget which imposes no limits.
+   */
+  public static final ExplorationBudget UNLIMITED = new ExplorationBudget(Long.MAX_VALUE,
+      Long.MAX_VALUE, Long.MAX_VALUE, 1.0, Long.MAX_VALUE);
+
+  /**
+   * Maximum number of states recorded as visited.
+   */
+  private final long maxStates;
+  /**
+   * Maximum number of instructions executed.
+   */
+  private final long maxSteps;
+  /**
+   * Maximum elapsed time (in nanoseconds).
+   */
+  private final long maxNanos;
+  /**
+   * Maximum fraction of the heap in use.
+   */
+  private final double maxHeapFraction;
+  /**
+   * Maximum number of instructions executed along any one path.
+   */
+  private final long maxDepth;
+
+  private ExplorationBudget(long maxStates, long maxSteps, long maxNanos, double maxHeapFraction,
+      long maxDepth) {
+    this.maxStates = maxStates;
+    this.maxSteps = maxSteps;
+    this.maxNanos = maxNanos;
+    this.maxHeapFraction = maxHeapFraction;
+    this.maxDepth = maxDepth;
+  }
+
+  /**
+   * Limit the number of states recorded as visited. Since a run resumed from a
+   * checkpoint begins with those states already visited, this limit includes
+   * them.
+   *
+   * @param states Maximum number of states.
+   * @return Refined budget.
+   */
+  public ExplorationBudget withMaxStates(long states) {
+    return new ExplorationBudget(validate(states), this.maxSteps, this.maxNanos,
+        this.maxHeapFraction, this.maxDepth);
+  }
+
+  /**
+   * Limit the number of instructions executed.
+   *
+   * @param steps Maximum number of instructions.
+   * @return Refined budget.
+   */
+  public ExplorationBudget withMaxSteps(long steps) {
+    return new ExplorationBudget(this.maxStates, validate(steps), this.maxNanos,
+        this.maxHeapFraction, this.maxDepth);
+  }
+
+  /**
+   * Limit the time for which a run may execute. This is checked periodically,
+   * hence a run may slightly exceed it.
+   *
+   * @param millis Maximum time (in milliseconds).
+   * @return Refined budget.
+   */
+  public ExplorationBudget withMaxTime(long millis) {
+    return new ExplorationBudget(this.maxStates, this.maxSteps,
+        TimeUnit.MILLISECONDS.toNanos(validate(millis)), this.maxHeapFraction, this.maxDepth);
+  }
+
+  /**
+   * Limit the fraction of the maximum heap size which may be in use. This is
+   * checked periodically and includes garbage not yet collected, hence it is a
+   * conservative (rather than precise) safeguard against running out of memory.
+   *
+   * @param fraction Maximum fraction of heap (between zero and one).
+   * @return Refined budget.
+   */
+  public ExplorationBudget withMaxHeapFraction(double fraction) {
+    if (!(fraction > 0 && fraction <= 1)) {
+      throw new IllegalArgumentException("invalid heap fraction: " + fraction); //$NON-NLS-1$
+    }
+    return new ExplorationBudget(this.maxStates, this.maxSteps, this.maxNanos, fraction,
+        this.maxDepth);
+  }
+
+  /**
+   * Limit the number of instructions executed along any one path from the
+   * starting state. Unlike other limits, reaching this does not stop the run.
+   * Instead, exploration of that path alone is abandoned. Since depths are not
+   * recorded in checkpoints, a run resumed from a checkpoint treats every
+   * restored state as having depth zero.
+   *
+   * @param depth Maximum depth.
+   * @return Refined budget.
+   */
+  public ExplorationBudget withMaxDepth(long depth) {
+    return new ExplorationBudget(this.maxStates, this.maxSteps, this.maxNanos,
+        this.maxHeapFraction, validate(depth));
+  }
+
+  /**
+   * Get the maximum number of states recorded as visited.
+   *
+   * @return Maximum states, or <code>Long.MAX_VALUE</code> if unlimited.
+   */
+  public long getMaxStates() {
+    return this.maxStates;
+  }
+
+  /**
+   * Get the maximum number of instructions executed.
+   *
+   * @return Maximum steps, or <code>Long.MAX_VALUE</code> if unlimited.
+   */
+  public long getMaxSteps() {
+    return this.maxSteps;
+  }
+
+  /**
+   * Get the maximum elapsed time.
+   *
+   * @return Maximum time in nanoseconds, or <code>Long.MAX_VALUE</code> if
+   *         unlimited.
+   */
+  public long getMaxNanos() {
+    return this.maxNanos;
+  }
+
+  /**
+   * Get the maximum fraction of the heap which may be in use.
+   *
+   * @return Maximum heap fraction, which is one if unlimited.
+   */
+  public double getMaxHeapFraction() {
+    return this.maxHeapFraction;
+  }
+
+  /**
+   * Get the maximum number of instructions executed along any one path.
+   *
+   * @return Maximum depth, or <code>Long.MAX_VALUE</code> if unlimited.
+   */
+  public long getMaxDepth() {
+    return this.maxDepth;
+  }
+
+  /**
+   * Determine whether a depth limit is imposed, in which case the depth of each
+   * state must be tracked.
+   *
+   * @return True if depth is limited.
+   */
+  boolean isDepthLimited() {
+    return this.maxDepth != Long.MAX_VALUE;
+  }
+
+  /**
+   * Check those limits which are costly to check and, hence, are only checked
+   * periodically.
+   *
+   * @param start Time (according to <code>System.nanoTime()</code>) at which
+   *              the run began.
+   * @return Limit which has been reached, or <code>null</code> if none.
+   */
+  @Nullable
+  Limit check(long start) {
+    if (this.maxNanos != Long.MAX_VALUE && System.nanoTime() - start >= this.maxNanos) {
+      return Limit.TIME;
+    }
+    if (this.maxHeapFraction < 1) {
+      Runtime rt = Runtime.getRuntime();
+      long used = rt.totalMemory() - rt.freeMemory();
+      if (used >= this.maxHeapFraction * rt.maxMemory()) {
+        return Limit.HEAP;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("states %d, steps %d, time %dms, heap %.2f, depth %d", //$NON-NLS-1$
+        Long.valueOf(this.maxStates), Long.valueOf(this.maxSteps),
+        Long.valueOf(TimeUnit.NANOSECONDS.toMillis(this.maxNanos)),
+        Double.valueOf(this.maxHeapFraction), Long.valueOf(this.maxDepth));
+  }
+
+  /**
+   * Check that a given limit is valid.
+   *
+   * @param limit Limit to check.
+   * @return The given limit.
+   */
+  private static long validate(long limit) {
+    if (limit < 0) {
+      throw new IllegalArgumentException("invalid limit: " + limit); //$NON-NLS-1$
+    }
+    return limit;
+  }
+}
@@ -0,0 +1,30 @@
+package avrmc.core;
+
+/**
+ * Receives periodic reports on the progress of the model checker. This is
+ * intended for monitoring long runs (e.g. to estimate how much memory a run on
+ * a larger firmware will need). Reports are made on the thread running the
+ * model checker, and so should return quickly.
+ *
+ * @author David J. Pearce
+ *
+ */
+public interface ExplorationListener {
+  /**
+   * Called periodically during a run of the model checker.
+   *
+   * @param statistics Statistics for the run so far. This instance is updated
+   *                   in place as the run proceeds, and should not be retained.
+   */
+  public void sample(ExplorationStatistics statistics);
+
+  /**
+   * Called once at the end of a run of the model checker, including when the
+   * run ends with an exception.
+   *
+   * @param statistics Final statistics for the run.
+   */
+  public default void completed(ExplorationStatistics statistics) {
+    sample(statistics);
+  }
+}
@@ -0,0 +1,130 @@
+package avrmc.core;
+
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * The outcome of a single run of the model checker. Alongside the computed
+ * property value, this indicates whether every reachable state was explored.
+ * If not (e.g. because an <code>ExplorationBudget</code> was exhausted), the
+ * value has been joined over only those states explored and, hence, is only a
+ * partial result.
+ *
+ * @author David J. Pearce
+ *
+ * @param <T> Property value computed.
+ */
+public final class ExplorationResult<T> {
+  /**
+   * Property value joined over every state explored.
+   */
+  private final T value;
+  /**
+   * Limit which stopped the run early, or <code>null</code> if none.
+   */
+  private final ExplorationBudget.@Nullable Limit exhausted;
+  /**
+   * Number of states remaining on the worklist when the run stopped.
+   */
+  private final long frontier;
+  /**
+   * Number of paths abandoned because they exceeded the depth limit.
+   */
+  private final long pruned;
+  /**
+   * Path to the state which determined the value, or <code>null</code> if not
+   * recorded.
+   */
+  private final @Nullable Witness witness;
+
+  /**
+   * Construct a result.
+   *
+   * @param value     Property value computed.
+   * @param exhausted Limit which stopped the run early, or <code>null</code> if
+   *                  none.
+   * @param frontier  Number of states remaining on the worklist.
+   * @param pruned    Number of paths abandoned because of the depth limit.
+   * @param witness   Path to the state which determined the value, or
+   *                  <code>null</code> if not recorded.
+   */
+  ExplorationResult(T value, ExplorationBudget.@Nullable Limit exhausted, long frontier,
+      long pruned, @Nullable Witness witness) {
+    this.value = value;
+    this.exhausted = exhausted;
+    this.frontier = frontier;
+    this.pruned = pruned;
+    this.witness = witness;
+  }
+
+  /**
+   * Get the computed property value. This is partial if the run was not
+   * complete.
+   *
+   * @return Property value.
+   */
+  public T getValue() {
+    return this.value;
+  }
+
+  /**
+   * Determine whether every reachable state was explored, in which case the
+   * property value is exact (subject to the state store used).
+   *
+   * @return True if the run was complete.
+   */
+  public boolean isComplete() {
+    return this.exhausted == null && this.pruned == 0;
+  }
+
+  /**
+   * Get the limit which stopped the run early.
+   *
+   * @return Limit reached, or <code>null</code> if the run was not stopped
+   *         early.
+   */
+  public ExplorationBudget.@Nullable Limit getExhausted() {
+    return this.exhausted;
+  }
+
+  /**
+   * Get the number of states which remained to be explored when the run
+   * stopped. This is zero unless the run was stopped early.
+   *
+   * @return Size of remaining frontier.
+   */
+  public long getFrontier() {
+    return this.frontier;
+  }
+
+  /**
+   * Get the number of paths whose exploration was abandoned because they
+   * exceeded the depth limit.
+   *
+   * @return Number of paths pruned.
+   */
+  public long getPruned() {
+    return this.pruned;
+  }
+
+  /**
+   * Get the path from the starting state to the first state explored whose
+   * property value, when joined with those before it, gave the final value
+   * (e.g. a state with the greatest stack height). This is only recorded when
+   * witnesses are enabled for the model checker, and the run was not resumed
+   * from a checkpoint.
+   *
+   * @return Path to state, or <code>null</code> if not recorded.
+   */
+  public @Nullable Witness getWitness() {
+    return this.witness;
+  }
+
+  @Override
+  public String toString() {
+    if (isComplete()) {
+      return "complete: " + this.value; //$NON-NLS-1$
+    }
+    return "incomplete (" + this.exhausted + ", frontier " + this.frontier + ", pruned " //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+        + this.pruned + "): " + this.value; //$NON-NLS-1$
+  }
+}
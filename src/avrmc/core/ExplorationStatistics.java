@@ -0,0 +1,351 @@
+package avrmc.core;
+
+import javr.core.AvrInstruction;
+
+/**
+ * Records statistics about a single run of the model checker, such as the
+ * number of instructions executed and the size of the visited set. These are
+ * only maintained when an <code>ExplorationListener</code> is attached, and
+ * are reported to that listener periodically.
+ *
+ * <p>
+ * The model checker updates a single instance in place for the duration of a
+ * run, so that sampling does not allocate. Hence, listeners should copy any
+ * values they wish to retain rather than retaining the instance itself.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class ExplorationStatistics {
+  /**
+   * Opcodes, indexed by ordinal.
+   */
+  private static final AvrInstruction.Opcode[] OPCODES = AvrInstruction.Opcode.values();
+  /**
+   * Time (according to <code>System.nanoTime()</code>) at which the run began.
+   */
+  private final long start;
+  /**
+   * Time at which these statistics were last updated.
+   */
+  long now;
+  /**
+   * Total number of instructions executed.
+   */
+  long steps;
+  /**
+   * Number of times a state was found to have been visited already.
+   */
+  long revisits;
+  /**
+   * Number of forks, indexed by the ordinal of the opcode of the instruction
+   * which caused them.
+   */
+  final long[] forks = new long[OPCODES.length];
+  /**
+   * Number of states currently on the worklist.
+   */
+  long worklist;
+  /**
+   * Largest number of states on the worklist at any one time.
+   */
+  long peakWorklist;
+  /**
+   * Number of states in the visited set.
+   */
+  long visited;
+  /**
+   * Estimated size (in bytes) of the visited set.
+   */
+  long visitedBytes;
+  /**
+   * Estimated probability that one or more states were omitted by the visited
+   * set.
+   */
+  double omissionProbability;
+  /**
+   * Estimated fraction of reachable states actually explored.
+   */
+  double coverage = 1.0;
+  /**
+   * Bytes moved out of memory by the worklist.
+   */
+  long spilledBytes;
+  /**
+   * Time (in nanoseconds) spent by the worklist moving states out of memory.
+   */
+  long spillNanos;
+  /**
+   * Bytes moved back into memory by the worklist.
+   */
+  long reloadedBytes;
+  /**
+   * Time (in nanoseconds) spent by the worklist moving states back into memory.
+   */
+  long reloadNanos;
+  /**
+   * Number of checkpoints written.
+   */
+  long checkpoints;
+  /**
+   * Longest time (in nanoseconds) for which exploration was paused by a
+   * checkpoint.
+   */
+  long longestCheckpoint;
+
+  /**
+   * Construct statistics for a run which starts now.
+   */
+  ExplorationStatistics() {
+    this.start = System.nanoTime();
+    this.now = this.start;
+  }
+
+  /**
+   * Get the time elapsed since the run began.
+   *
+   * @return Elapsed time in nanoseconds.
+   */
+  public long getElapsedNanos() {
+    return this.now - this.start;
+  }
+
+  /**
+   * Get the total number of instructions executed.
+   *
+   * @return Number of steps.
+   */
+  public long getSteps() {
+    return this.steps;
+  }
+
+  /**
+   * Get the average number of states visited per second since the run began.
+   *
+   * @return States per second.
+   */
+  public double getStatesPerSecond() {
+    long elapsed = getElapsedNanos();
+    return (elapsed == 0) ? 0 : (this.visited * 1e9) / elapsed;
+  }
+
+  /**
+   * Get the number of times a state was found to have been visited already.
+   *
+   * @return Number of revisits.
+   */
+  public long getRevisits() {
+    return this.revisits;
+  }
+
+  /**
+   * Get the total number of forks.
+   *
+   * @return Number of forks.
+   */
+  public long getForks() {
+    long count = 0;
+    for (long f : this.forks) {
+      count += f;
+    }
+    return count;
+  }
+
+  /**
+   * Get the number of forks caused by a given kind of instruction.
+   *
+   * @param opcode Opcode of instruction.
+   * @return Number of forks.
+   */
+  public long getForks(AvrInstruction.Opcode opcode) {
+    return this.forks[opcode.ordinal()];
+  }
+
+  /**
+   * Get the number of states currently on the worklist.
+   *
+   * @return Worklist size.
+   */
+  public long getWorklistSize() {
+    return this.worklist;
+  }
+
+  /**
+   * Get the largest number of states on the worklist at any one time.
+   *
+   * @return Peak worklist size.
+   */
+  public long getPeakWorklistSize() {
+    return this.peakWorklist;
+  }
+
+  /**
+   * Get the number of states in the visited set.
+   *
+   * @return Visited set size.
+   */
+  public long getVisitedStates() {
+    return this.visited;
+  }
+
+  /**
+   * Get the estimated size of the visited set.
+   *
+   * @return Size in bytes.
+   */
+  public long getVisitedBytes() {
+    return this.visitedBytes;
+  }
+
+  /**
+   * Get the estimated probability that one or more states were wrongly
+   * considered visited (and, hence, not explored).
+   *
+   * @return Omission probability.
+   */
+  public double getOmissionProbability() {
+    return this.omissionProbability;
+  }
+
+  /**
+   * Get the estimated fraction of reachable states which have actually been
+   * explored. When this is less than one, the computed property value is only a
+   * bound (e.g. a lower bound on the maximum stack height).
+   *
+   * @return Estimated coverage.
+   */
+  public double getCoverage() {
+    return this.coverage;
+  }
+
+  /**
+   * Get the number of bytes moved out of memory by the worklist (e.g. to disk).
+   *
+   * @return Bytes spilled.
+   */
+  public long getSpilledBytes() {
+    return this.spilledBytes;
+  }
+
+  /**
+   * Get the average rate at which the worklist moved states out of memory.
+   *
+   * @return Spill throughput in bytes per second.
+   */
+  public double getSpillThroughput() {
+    return (this.spillNanos == 0) ? 0 : (this.spilledBytes * 1e9) / this.spillNanos;
+  }
+
+  /**
+   * Get the number of bytes moved back into memory by the worklist.
+   *
+   * @return Bytes reloaded.
+   */
+  public long getReloadedBytes() {
+    return this.reloadedBytes;
+  }
+
+  /**
+   * Get the average rate at which the worklist moved states back into memory.
+   *
+   * @return Reload throughput in bytes per second.
+   */
+  public double getReloadThroughput() {
+    return (this.reloadNanos == 0) ? 0 : (this.reloadedBytes * 1e9) / this.reloadNanos;
+  }
+
+  /**
+   * Get the number of checkpoints written so far.
+   *
+   * @return Number of checkpoints.
+   */
+  public long getCheckpoints() {
+    return this.checkpoints;
+  }
+
+  /**
+   * Get the longest time for which exploration was paused whilst writing a
+   * checkpoint.
+   *
+   * @return Longest pause in nanoseconds.
+   */
+  public long getLongestCheckpointNanos() {
+    return this.longestCheckpoint;
+  }
+
+  /**
+   * Record that an instruction caused a fork.
+   *
+   * @param opcode Opcode of instruction.
+   */
+  void fork(AvrInstruction.Opcode opcode) {
+    this.forks[opcode.ordinal()]++;
+  }
+
+  /**
+   * Record that a checkpoint was written.
+   *
+   * @param nanos Time taken to write the checkpoint.
+   */
+  void checkpoint(long nanos) {
+    this.checkpoints++;
+    this.longestCheckpoint = Math.max(this.longestCheckpoint, nanos);
+  }
+
+  /**
+   * Record the current size of the worklist.
+   *
+   * @param size Number of states on worklist.
+   */
+  void worklist(long size) {
+    this.worklist = size;
+    this.peakWorklist = Math.max(this.peakWorklist, size);
+  }
+
+  /**
+   * Update those statistics which are derived from the visited set and
+   * worklist, along with the current time.
+   *
+   * @param history  Visited set being used.
+   * @param worklist Worklist being used.
+   */
+  void update(StateStore history, Worklist worklist) {
+    this.now = System.nanoTime();
+    this.visited = history.size();
+    this.visitedBytes = history.getMemoryUsage();
+    this.omissionProbability = history.getOmissionProbability();
+    this.coverage = history.getCoverage();
+    this.spilledBytes = worklist.getSpilledBytes();
+    this.spillNanos = worklist.getSpillNanos();
+    this.reloadedBytes = worklist.getReloadedBytes();
+    this.reloadNanos = worklist.getReloadNanos();
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder forksByOpcode = new StringBuilder();
+    for (int i = 0; i != this.forks.length; ++i) {
+      if (this.forks[i] != 0) {
+        forksByOpcode.append(' ').append(OPCODES[i]).append('=').append(this.forks[i]);
+      }
+    }
+    String io = ""; //$NON-NLS-1$
+    if (this.spilledBytes != 0) {
+      io = String.format(", spilled %d bytes (%.1f MB/s), reloaded %d bytes (%.1f MB/s)", //$NON-NLS-1$
+          Long.valueOf(this.spilledBytes), Double.valueOf(getSpillThroughput() / 1e6),
+          Long.valueOf(this.reloadedBytes), Double.valueOf(getReloadThroughput() / 1e6));
+    }
+    if (this.checkpoints != 0) {
+      io += String.format(", %d checkpoints (longest %.1f ms)", //$NON-NLS-1$
+          Long.valueOf(this.checkpoints), Double.valueOf(this.longestCheckpoint / 1e6));
+    }
+    return String.format(
+        "%d steps, %d states (%.0f/s, %d bytes, coverage %.4f, omission %.2g), %d revisits, worklist %d (peak %d)%s, forks:%s", //$NON-NLS-1$
+        Long.valueOf(this.steps), Long.valueOf(this.visited),
+        Double.valueOf(getStatesPerSecond()), Long.valueOf(this.visitedBytes),
+        Double.valueOf(this.coverage), Double.valueOf(this.omissionProbability),
+        Long.valueOf(this.revisits), Long.valueOf(this.worklist),
+        Long.valueOf(this.peakWorklist), io, forksByOpcode);
+  }
+}
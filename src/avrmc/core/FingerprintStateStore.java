@@ -0,0 +1,143 @@
+package avrmc.core;
+
+/**
+ * A state store which records only a 64-bit fingerprint of each visited state,
+ * rather than the state itself. Fingerprints are held in a primitive
+ * open-addressing hash table (using linear probing) which is resized whenever
+ * it becomes half full. This requires between 16 and 32 bytes per state,
+ * compared with several kilobytes for a complete copy of the state.
+ *
+ * <p>
+ * The cost of this is that two distinct states may (in principle) share the
+ * same fingerprint, in which case the second is wrongly considered as visited
+ * and is not explored. Assuming fingerprints are uniformly distributed, the
+ * probability of any such collision after storing <code>n</code> states is
+ * approximately <code>n<sup>2</sup> / 2<sup>65</sup></code>. For example,
+ * after one hundred million states this is around <code>0.00027</code>.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public class FingerprintStateStore implements StateStore {
+  /**
+   * Default initial capacity of the hash table. This must be a power of two.
+   */
+  private static final int DEFAULT_CAPACITY = 1 << 16;
+  /**
+   * Fingerprint used in place of zero, since zero identifies an empty slot in
+   * the table.
+   */
+  private static final long ZERO = 0x9E3779B97F4A7C15L;
+  /**
+   * The open-addressing hash table. Empty slots are identified by zero.
+   */
+  private long[] table;
+  /**
+   * Number of fingerprints stored in the table.
+   */
+  private int count;
+
+  /**
+   * Construct a fingerprint store with the default initial capacity.
+   */
+  public FingerprintStateStore() {
+    this(DEFAULT_CAPACITY);
+  }
+
+  /**
+   * Construct a fingerprint store with a given initial capacity.
+   *
+   * @param capacity Initial capacity of the hash table, which is rounded up to
+   *                 the next power of two.
+   */
+  public FingerprintStateStore(int capacity) {
+    int n = Integer.highestOneBit(Math.max(capacity, 16) - 1) << 1;
+    this.table = new long[n];
+  }
+
+  @Override
+  public boolean add(AbstractAvr state) {
+    return add(state.fingerprint());
+  }
+
+  /**
+   * Record a given fingerprint as visited.
+   *
+   * @param fingerprint Fingerprint of state to record.
+   * @return True if this fingerprint was not previously recorded, or false
+   *         otherwise.
+   */
+  public boolean add(long fingerprint) {
+    long fp = (fingerprint == 0) ? ZERO : fingerprint;
+    if (!insert(this.table, fp)) {
+      return false;
+    }
+    this.count = this.count + 1;
+    // Resize when table becomes half full
+    if (this.count > (this.table.length >>> 1)) {
+      resize();
+    }
+    return true;
+  }
+
+  @Override
+  public long size() {
+    return this.count;
+  }
+
+  @Override
+  public long getMemoryUsage() {
+    return 16 + (8L * this.table.length);
+  }
+
+  @Override
+  public double getOmissionProbability() {
+    double n = this.count;
+    // Birthday bound for 64-bit fingerprints
+    return Math.min(1.0, (n * n) / 0x1p65);
+  }
+
+  /**
+   * Double the size of the hash table, rehashing every fingerprint.
+   *
+   * @throws IllegalStateException if the table cannot be doubled, since its
+   *                               length would exceed the largest array.
+   */
+  private void resize() {
+    long[] old = this.table;
+    long n = 2L * old.length;
+    if (n > Integer.MAX_VALUE - 8) {
+      throw new IllegalStateException("state store capacity exceeded"); //$NON-NLS-1$
+    }
+    long[] nTable = new long[(int) n];
+    for (int i = 0; i != old.length; ++i) {
+      if (old[i] != 0) {
+        insert(nTable, old[i]);
+      }
+    }
+    this.table = nTable;
+  }
+
+  /**
+   * Insert a (non-zero) fingerprint into a given table using linear probing.
+   *
+   * @param table Table to insert into, whose length must be a power of two.
+   * @param fp    Fingerprint to insert.
+   * @return True if fingerprint inserted, false if already present.
+   */
+  private static boolean insert(long[] table, long fp) {
+    int mask = table.length - 1;
+    int index = (int) (fp ^ (fp >>> 32)) & mask;
+    while (true) {
+      long ith = table[index];
+      if (ith == 0) {
+        table[index] = fp;
+        return true;
+      } else if (ith == fp) {
+        return false;
+      }
+      index = (index + 1) & mask;
+    }
+  }
+}
@@ -0,0 +1,488 @@
+package avrmc.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A state store which records the encoding (see <code>StateCodec</code>) of
+ * every visited state in memory-mapped files, rather than on the Java heap.
+ * This is exact (i.e. never wrongly considers a state as visited) and its size
+ * is limited only by the available disk space, since the operating system
+ * (rather than the garbage collector) decides which parts are held in memory.
+ *
+ * <p>
+ * Encoded states are appended to a <i>log</i> file, whilst an <i>index</i> file
+ * holds an open-addressing hash table (using linear probing) mapping the
+ * fingerprint of each state to its position in the log. The index is resized
+ * whenever it becomes half full. Since the fingerprint is held in the index,
+ * the log is only read when a state is (almost certainly) being revisited, and
+ * is otherwise only written sequentially. Both files are mapped in fixed-size
+ * chunks so that they can grow well beyond 2GB, and are deleted when the store
+ * is closed.
+ * </p>
+ *
+ * <p>
+ * This store is not thread-safe.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public class MappedStateStore implements StateStore {
+  /**
+   * Base two logarithm of the size of each mapped chunk.
+   */
+  private static final int CHUNK_BITS = 26;
+  /**
+   * Size of each mapped chunk (64MB). Entries in the log never span chunks.
+   */
+  private static final long CHUNK_SIZE = 1L << CHUNK_BITS;
+  /**
+   * Size of each slot in the index, which holds a fingerprint and a log
+   * position.
+   */
+  private static final int SLOT_SIZE = 16;
+  /**
+   * Default initial capacity of the index (in slots). This must be a power of
+   * two.
+   */
+  private static final long DEFAULT_CAPACITY = 1 << 16;
+  /**
+   * Fingerprint used in place of zero, since zero identifies an empty slot in
+   * the index.
+   */
+  private static final long ZERO = 0x9E3779B97F4A7C15L;
+  /**
+   * Directory in which the index and log files are created.
+   */
+  private final Path directory;
+  /**
+   * The log of encoded states.
+   */
+  private final MappedFile log;
+  /**
+   * The index mapping fingerprints to positions in the log.
+   */
+  private MappedFile index;
+  /**
+   * Number of slots in the index.
+   */
+  private long capacity;
+  /**
+   * Position in the log at which the next state will be written.
+   */
+  private long end;
+  /**
+   * Number of states recorded.
+   */
+  private long count;
+  /**
+   * Number of times the index has been resized.
+   */
+  private int resizes;
+  /**
+   * Number of entries read back from the log for comparison.
+   */
+  private long logReads;
+  /**
+   * Buffer into which each state is encoded before being compared or written.
+   */
+  private ByteBuffer buffer = ByteBuffer.allocate(0);
+  /**
+   * Page fault counts for this process (minor and major) when this store was
+   * constructed, or <code>null</code> if these are unavailable.
+   */
+  private final long @Nullable [] faults;
+
+  /**
+   * Construct a mapped store whose files are created in the default temporary
+   * directory.
+   */
+  public MappedStateStore() {
+    this(Paths.get(System.getProperty("java.io.tmpdir"))); //$NON-NLS-1$
+  }
+
+  /**
+   * Construct a mapped store whose files are created in a given directory. This
+   * should be on a local disk with sufficient space for all visited states.
+   *
+   * @param directory Directory in which to create files.
+   */
+  public MappedStateStore(Path directory) {
+    this.directory = directory;
+    this.capacity = DEFAULT_CAPACITY;
+    try {
+      this.log = new MappedFile(directory, ".log"); //$NON-NLS-1$
+      this.index = new MappedFile(directory, ".idx"); //$NON-NLS-1$
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.faults = readPageFaults();
+  }
+
+  @Override
+  public boolean add(AbstractAvr state) {
+    ByteBuffer encoding = encode(state);
+    long fingerprint = state.fingerprint();
+    long fp = (fingerprint == 0) ? ZERO : fingerprint;
+    long mask = this.capacity - 1;
+    long slot = fp & mask;
+    long position;
+    while (true) {
+      position = slot * SLOT_SIZE;
+      long ith = this.index.getLong(position);
+      if (ith == 0) {
+        break;
+      } else if (ith == fp && matches(this.index.getLong(position + 8), encoding)) {
+        return false;
+      }
+      slot = (slot + 1) & mask;
+    }
+    this.index.putLong(position, fp);
+    this.index.putLong(position + 8, append(encoding));
+    this.count = this.count + 1;
+    // Resize when index becomes half full
+    if (this.count > (this.capacity >>> 1)) {
+      resize();
+    }
+    return true;
+  }
+
+  @Override
+  public long size() {
+    return this.count;
+  }
+
+  /**
+   * Get the number of bytes occupied by the index and log. This is held outside
+   * of the Java heap, and only those parts recently accessed are likely to be
+   * in physical memory.
+   *
+   * @return Size (in bytes) of files backing this store.
+   */
+  @Override
+  public long getMemoryUsage() {
+    return (this.capacity * SLOT_SIZE) + this.end;
+  }
+
+  @Override
+  public double getOmissionProbability() {
+    return 0.0;
+  }
+
+  /**
+   * Get the number of times the index has been resized. Each resize rewrites
+   * the entire index, though not the log.
+   *
+   * @return Number of resizes.
+   */
+  public int getResizes() {
+    return this.resizes;
+  }
+
+  /**
+   * Get the number of encoded states read back from the log in order to
+   * confirm that a state was visited. Since these reads are not sequential,
+   * they are the main source of page faults once the log exceeds physical
+   * memory.
+   *
+   * @return Number of log reads.
+   */
+  public long getLogReads() {
+    return this.logReads;
+  }
+
+  /**
+   * Get the number of minor page faults (i.e. those not requiring disk access)
+   * incurred by this process since this store was constructed. Since Java
+   * provides no direct means of obtaining this, it is currently only available
+   * on Linux.
+   *
+   * @return Number of minor page faults, or <code>-1</code> if unavailable.
+   */
+  public long getMinorPageFaults() {
+    return getPageFaults(0);
+  }
+
+  /**
+   * Get the number of major page faults (i.e. those requiring disk access)
+   * incurred by this process since this store was constructed. This is
+   * currently only available on Linux.
+   *
+   * @return Number of major page faults, or <code>-1</code> if unavailable.
+   */
+  public long getMajorPageFaults() {
+    return getPageFaults(1);
+  }
+
+  /**
+   * Close this store, after which its files are deleted. Note that the mapped
+   * memory is only released once it becomes unreachable.
+   */
+  @Override
+  public void close() {
+    try {
+      this.index.close();
+      this.log.close();
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d states (%d bytes in %s), %d resizes, %d log reads, %d/%d page faults", //$NON-NLS-1$
+        Long.valueOf(this.count), Long.valueOf(getMemoryUsage()), this.directory,
+        Integer.valueOf(this.resizes), Long.valueOf(this.logReads),
+        Long.valueOf(getMinorPageFaults()), Long.valueOf(getMajorPageFaults()));
+  }
+
+  /**
+   * Encode a given state into the buffer, enlarging the buffer if necessary.
+   *
+   * @param state State to be encoded.
+   * @return Buffer holding (only) the encoded state.
+   */
+  private ByteBuffer encode(AbstractAvr state) {
+    int bound = StateCodec.getMaximumSize(state);
+    if (this.buffer.capacity() < bound) {
+      this.buffer = ByteBuffer.allocate(bound);
+    }
+    this.buffer.clear();
+    StateCodec.encode(state, this.buffer);
+    this.buffer.flip();
+    return this.buffer;
+  }
+
+  /**
+   * Check whether the entry at a given position in the log matches a given
+   * encoded state.
+   *
+   * @param position Position of entry in log.
+   * @param encoding Encoded state.
+   * @return True if the entry matches.
+   */
+  private boolean matches(long position, ByteBuffer encoding) {
+    this.logReads = this.logReads + 1;
+    int length = this.log.getInt(position);
+    if (length != encoding.remaining()) {
+      return false;
+    }
+    return this.log.slice(position + 4, length).equals(encoding);
+  }
+
+  /**
+   * Append an encoded state to the log. If the entry would not fit within the
+   * current chunk, then it is written at the start of the next one instead.
+   *
+   * @param encoding Encoded state.
+   * @return Position of entry in log.
+   */
+  private long append(ByteBuffer encoding) {
+    int length = encoding.remaining();
+    long position = this.end;
+    if ((position & (CHUNK_SIZE - 1)) + 4 + length > CHUNK_SIZE) {
+      position = (position + CHUNK_SIZE) & ~(CHUNK_SIZE - 1);
+    }
+    this.log.putInt(position, length);
+    this.log.slice(position + 4, length).put(encoding);
+    this.end = position + 4 + length;
+    return position;
+  }
+
+  /**
+   * Double the size of the index, by rehashing every slot of the current index
+   * into a new file. The log is unaffected.
+   */
+  private void resize() {
+    MappedFile old = this.index;
+    long nCapacity = this.capacity << 1;
+    long mask = nCapacity - 1;
+    try {
+      MappedFile nIndex = new MappedFile(this.directory, ".idx"); //$NON-NLS-1$
+      for (long i = 0; i != this.capacity; ++i) {
+        long fp = old.getLong(i * SLOT_SIZE);
+        if (fp != 0) {
+          long slot = fp & mask;
+          while (nIndex.getLong(slot * SLOT_SIZE) != 0) {
+            slot = (slot + 1) & mask;
+          }
+          nIndex.putLong(slot * SLOT_SIZE, fp);
+          nIndex.putLong((slot * SLOT_SIZE) + 8, old.getLong((i * SLOT_SIZE) + 8));
+        }
+      }
+      old.close();
+      this.index = nIndex;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.capacity = nCapacity;
+    this.resizes = this.resizes + 1;
+  }
+
+  /**
+   * Get the number of page faults of a given kind since this store was
+   * constructed.
+   *
+   * @param kind Zero for minor faults, or one for major faults.
+   * @return Number of faults, or <code>-1</code> if unavailable.
+   */
+  private long getPageFaults(int kind) {
+    long[] before = this.faults;
+    long[] now = readPageFaults();
+    if (before == null || now == null) {
+      return -1;
+    }
+    return now[kind] - before[kind];
+  }
+
+  /**
+   * Read the number of minor and major page faults incurred by this process so
+   * far, as reported by Linux in <code>/proc/self/stat</code>.
+   *
+   * @return Minor and major page faults, or <code>null</code> if unavailable.
+   */
+  private static long @Nullable [] readPageFaults() {
+    try {
+      String stat = Files.readString(Paths.get("/proc/self/stat")); //$NON-NLS-1$
+      // NOTE: command name may contain spaces, hence skip past it
+      String[] fields = stat.substring(stat.lastIndexOf(')') + 2).split(" "); //$NON-NLS-1$
+      return new long[] { Long.parseLong(fields[7]), Long.parseLong(fields[9]) };
+    } catch (IOException | RuntimeException e) {
+      return null;
+    }
+  }
+
+  /**
+   * A temporary file which is mapped into memory in fixed-size chunks, as
+   * required. Unmapped regions of the file read as zero.
+   *
+   * @author David J. Pearce
+   *
+   */
+  private static final class MappedFile {
+    /**
+     * Channel through which file is mapped.
+     */
+    private final FileChannel channel;
+    /**
+     * Chunks of the file mapped so far, in order.
+     */
+    private final ArrayList<MappedByteBuffer> chunks = new ArrayList<>();
+
+    /**
+     * Create a new (empty) file in a given directory. This is deleted when
+     * closed.
+     *
+     * @param directory Directory to create file in.
+     * @param suffix    Suffix for file name.
+     * @throws IOException If a problem occurs creating the file.
+     */
+    MappedFile(Path directory, String suffix) throws IOException {
+      Path path = Files.createTempFile(directory, "states", suffix); //$NON-NLS-1$
+      this.channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.DELETE_ON_CLOSE);
+    }
+
+    /**
+     * Read a long at a given position.
+     *
+     * @param position Position in file.
+     * @return Value read.
+     */
+    long getLong(long position) {
+      return chunk(position).getLong(offset(position));
+    }
+
+    /**
+     * Write a long at a given position.
+     *
+     * @param position Position in file.
+     * @param value    Value to write.
+     */
+    void putLong(long position, long value) {
+      chunk(position).putLong(offset(position), value);
+    }
+
+    /**
+     * Read an int at a given position.
+     *
+     * @param position Position in file.
+     * @return Value read.
+     */
+    int getInt(long position) {
+      return chunk(position).getInt(offset(position));
+    }
+
+    /**
+     * Write an int at a given position.
+     *
+     * @param position Position in file.
+     * @param value    Value to write.
+     */
+    void putInt(long position, int value) {
+      chunk(position).putInt(offset(position), value);
+    }
+
+    /**
+     * Get a view of a region of this file, which must lie within a single
+     * chunk.
+     *
+     * @param position Position of region in file.
+     * @param length   Length of region.
+     * @return Buffer whose contents are the given region.
+     */
+    ByteBuffer slice(long position, int length) {
+      return chunk(position).slice(offset(position), length);
+    }
+
+    /**
+     * Close this file, thereby deleting it.
+     *
+     * @throws IOException If a problem occurs closing the file.
+     */
+    void close() throws IOException {
+      this.chunks.clear();
+      this.channel.close();
+    }
+
+    /**
+     * Get the chunk containing a given position, mapping it (and any chunks
+     * before it) if necessary. This extends the file as needed.
+     *
+     * @param position Position in file.
+     * @return Chunk containing position.
+     */
+    private MappedByteBuffer chunk(long position) {
+      int index = (int) (position >>> CHUNK_BITS);
+      try {
+        while (this.chunks.size() <= index) {
+          long start = (long) this.chunks.size() << CHUNK_BITS;
+          this.chunks.add(this.channel.map(FileChannel.MapMode.READ_WRITE, start, CHUNK_SIZE));
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return this.chunks.get(index);
+    }
+
+    /**
+     * Get the offset of a given position within its chunk.
+     *
+     * @param position Position in file.
+     * @return Offset within chunk.
+     */
+    private static int offset(long position) {
+      return (int) (position & (CHUNK_SIZE - 1));
+    }
+  }
+}
@@ -0,0 +1,283 @@
+package avrmc.core;
+
+import avrmc.core.AvrModelChecker.Property;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Supplier;
+import javr.core.AVR;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A model checker which explores the state space using several threads at
+ * once, as an alternative to the (sequential) <code>AvrModelChecker</code>.
+ * Each forked state becomes a task in a <code>ForkJoinPool</code>, such that
+ * idle workers steal forks from busy ones. Workers share a single (thread-safe)
+ * store of visited states, whilst the property value is accumulated separately
+ * by each worker and the results joined once exploration is complete.
+ *
+ * <p>
+ * Since the property is joined over every reachable state, the final value
+ * does not depend on the order in which states are explored. However, the
+ * property's <code>join</code> must be associative and commutative, and its
+ * <code>map</code> must be safe to call from several threads at once.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ * @param <T> Concrete property value to be checked.
+ */
+public class ParallelAvrModelChecker<T> {
+  /**
+   * Property to use for checking concrete value.
+   */
+  private final Property<T> property;
+  /**
+   * Responsible for constructing the store of visited states for each run of
+   * the model checker. Every store constructed must be thread-safe.
+   */
+  private final Supplier<? extends StateStore> stores;
+  /**
+   * Number of worker threads to use.
+   */
+  private final int parallelism;
+
+  /**
+   * Construct a new parallel model checker to check a given property, using one
+   * worker per available processor.
+   *
+   * @param property The property which this checker will check.
+   */
+  public ParallelAvrModelChecker(Property<T> property) {
+    this(property, Runtime.getRuntime().availableProcessors());
+  }
+
+  /**
+   * Construct a new parallel model checker to check a given property, using a
+   * given number of workers. Visited states are recorded using a
+   * <code>ConcurrentFingerprintStateStore</code>.
+   *
+   * @param property    The property which this checker will check.
+   * @param parallelism Number of worker threads to use.
+   */
+  public ParallelAvrModelChecker(Property<T> property, int parallelism) {
+    this(property, parallelism, ConcurrentFingerprintStateStore::new);
+  }
+
+  /**
+   * Construct a new parallel model checker to check a given property, using a
+   * given number of workers and a given kind of store for recording visited
+   * states.
+   *
+   * @param property    The property which this checker will check.
+   * @param parallelism Number of worker threads to use.
+   * @param stores      Constructs a fresh (thread-safe) state store for each run.
+   */
+  public ParallelAvrModelChecker(Property<T> property, int parallelism,
+      Supplier<? extends StateStore> stores) {
+    if (parallelism < 1) {
+      throw new IllegalArgumentException("invalid parallelism: " + parallelism); //$NON-NLS-1$
+    }
+    this.property = property;
+    this.parallelism = parallelism;
+    this.stores = stores;
+  }
+
+  /**
+   * Apply this model checker to a given starting state and compute the final
+   * property. This blocks until every reachable state has been explored. Any
+   * exception thrown whilst exploring a state (e.g. by the property) is
+   * rethrown here.
+   *
+   * @param seed Machine state to start checking from.
+   * @return Computed property value.
+   */
+  public T apply(AbstractAvr seed) {
+    Run run = new Run(this.stores.get());
+    // Compute initial value for our starting state
+    T value = this.property.map(seed);
+    ForkJoinPool pool = new ForkJoinPool(this.parallelism);
+    try {
+      pool.invoke(new Root(run, seed));
+    } finally {
+      pool.shutdownNow();
+      run.history.close();
+    }
+    // Merge values accumulated by each worker
+    for (Accumulator acc : run.accumulators) {
+      if (acc.value != null) {
+        value = this.property.join(value, acc.value);
+      }
+    }
+    return value;
+  }
+
+  /**
+   * State shared between all workers during a single run of the model checker.
+   *
+   * @author David J. Pearce
+   *
+   */
+  private final class Run {
+    /**
+     * Store of visited states shared between all workers.
+     */
+    private final StateStore history;
+    /**
+     * Every accumulator created during this run, so they can be merged at the
+     * end.
+     */
+    private final ConcurrentLinkedQueue<Accumulator> accumulators = new ConcurrentLinkedQueue<>();
+    /**
+     * Accumulator for each worker thread.
+     */
+    private final ThreadLocal<Accumulator> local = ThreadLocal.withInitial(() -> {
+      Accumulator acc = new Accumulator();
+      this.accumulators.add(acc);
+      return acc;
+    });
+
+    /**
+     * Construct state for a single run.
+     *
+     * @param history Store of visited states to use.
+     */
+    Run(StateStore history) {
+      this.history = history;
+    }
+  }
+
+  /**
+   * Holds the property value accumulated by a single worker thread.
+   *
+   * @author David J. Pearce
+   *
+   */
+  private final class Accumulator {
+    /**
+     * Accumulated value, or <code>null</code> if no state explored yet.
+     */
+    @Nullable
+    T value;
+
+    /**
+     * Join the property value of a given state into this accumulator.
+     *
+     * @param state State whose property value to join.
+     */
+    void join(AbstractAvr state) {
+      T nvalue = ParallelAvrModelChecker.this.property.map(state);
+      T v = this.value;
+      this.value = (v == null) ? nvalue : ParallelAvrModelChecker.this.property.join(v, nvalue);
+    }
+  }
+
+  /**
+   * The task which completes once every state has been explored. Every
+   * explorer reports directly to this task, rather than to the explorer which
+   * forked it, so that completed explorers can be reclaimed immediately.
+   *
+   * @author David J. Pearce
+   *
+   */
+  private final class Root extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+    /**
+     * State shared between all workers.
+     */
+    private final Run run;
+    /**
+     * Machine state to start checking from.
+     */
+    private final AbstractAvr seed;
+
+    /**
+     * Construct the root task for a given run.
+     *
+     * @param run  State shared between all workers.
+     * @param seed Machine state to start checking from.
+     */
+    Root(Run run, AbstractAvr seed) {
+      this.run = run;
+      this.seed = seed;
+    }
+
+    @Override
+    public void compute() {
+      // Seed is explored by the first explorer.
+      setPendingCount(1);
+      new Explorer(this, this.run, this.seed).fork();
+      // Completes when all explorers have completed.
+      tryComplete();
+    }
+  }
+
+  /**
+   * Explores a single state (and its descendants) until it either halts or
+   * reaches a previously visited state. Whenever a fork is encountered, a fresh
+   * explorer is forked for it (so it can be stolen by an idle worker), whilst
+   * this explorer continues with the original state.
+   *
+   * @author David J. Pearce
+   *
+   */
+  private final class Explorer extends CountedCompleter<Void> {
+    private static final long serialVersionUID = 1L;
+    /**
+     * Task to be completed once every state has been explored.
+     */
+    private final Root root;
+    /**
+     * State shared between all workers.
+     */
+    private final Run run;
+    /**
+     * State being explored.
+     */
+    private final AbstractAvr state;
+
+    /**
+     * Construct an explorer for a given state.
+     *
+     * @param root  Task to report completion to.
+     * @param run   State shared between all workers.
+     * @param state State to explore.
+     */
+    Explorer(Root root, Run run, AbstractAvr state) {
+      super(root);
+      this.root = root;
+      this.run = run;
+      this.state = state;
+    }
+
+    @Override
+    public void compute() {
+      AbstractAvr st = this.state;
+      StateStore history = this.run.history;
+      Accumulator acc = this.run.local.get();
+      try {
+        while (true) {
+          // Execute one step the state, resetting I/O port unknown value(s).
+          AbstractAvr fork = AvrModelChecker.clock(st);
+          if (!history.add(st)) {
+            throw new AVR.HaltedException(0);
+          }
+          // Determine property for updated state
+          acc.join(st);
+          if (fork != null) {
+            // Make fork available for stealing, and continue with this state.
+            this.root.addToPendingCount(1);
+            new Explorer(this.root, this.run, fork).fork();
+          }
+        }
+      } catch (AVR.HaltedException e) {
+        assert e != null;
+        // Indicates current state has halted. In such case, we still want to
+        // extract its property value (e.g. as this might tell us the exit code,
+        // etc).
+        acc.join(st);
+      }
+      tryComplete();
+    }
+  }
+}
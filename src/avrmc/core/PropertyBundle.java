@@ -0,0 +1,262 @@
+package avrmc.core;
+
+import avrmc.core.AvrModelChecker.Property;
+import avrmc.core.AvrModelChecker.Serializer;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A collection of properties which are checked together in a single run of the
+ * model checker, rather than exploring the same state space once for each. For
+ * example, the maximum stack height and the set of reachable exit codes can be
+ * computed together as follows:
+ *
+ * <pre>
+ * PropertyBundle bundle = new PropertyBundle();
+ * PropertyBundle.Key&lt;Integer&gt; height = bundle.add(new StackHeightProperty());
+ * PropertyBundle.Key&lt;Set&lt;Integer&gt;&gt; codes = bundle.add(new ExitCodeProperty());
+ * PropertyBundle.Values values = new AvrModelChecker&lt;&gt;(bundle).apply(avr);
+ * int h = values.get(height);
+ * </pre>
+ *
+ * <p>
+ * The values of primitive properties (e.g. <code>IntProperty</code>) remain
+ * unboxed during the run. A bundle is evaluated whenever any of the events on
+ * which its properties depend occurs and, hence, all properties in a bundle
+ * are evaluated when any of them is. Properties should not be added once a
+ * bundle is being checked.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class PropertyBundle implements Property<PropertyBundle.Values> {
+  /**
+   * Identifies a property within a bundle, and is used to obtain its value
+   * from the bundle's values.
+   *
+   * @author David J. Pearce
+   *
+   * @param <T> Value of property.
+   */
+  public static final class Key<T> {
+    /**
+     * Bundle to which property belongs.
+     */
+    private final PropertyBundle bundle;
+    /**
+     * Index of property in bundle.
+     */
+    private final int index;
+
+    Key(PropertyBundle bundle, int index) {
+      this.bundle = bundle;
+      this.index = index;
+    }
+
+    @Override
+    public String toString() {
+      return "#" + this.index; //$NON-NLS-1$
+    }
+  }
+
+  /**
+   * The values of each property in a bundle.
+   *
+   * @author David J. Pearce
+   *
+   */
+  public static final class Values {
+    /**
+     * Bundle whose values these are.
+     */
+    private final PropertyBundle bundle;
+    /**
+     * Value of each property, indexed by key.
+     */
+    private final Object[] items;
+
+    Values(PropertyBundle bundle, Object[] items) {
+      this.bundle = bundle;
+      this.items = items;
+    }
+
+    /**
+     * Get the value of a given property.
+     *
+     * @param <T> Value of property.
+     * @param key Key returned when property was added to bundle.
+     * @return Value of property.
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(Key<T> key) {
+      if (key.bundle != this.bundle) {
+        throw new IllegalArgumentException("key from another bundle"); //$NON-NLS-1$
+      }
+      return (T) this.items[key.index];
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder r = new StringBuilder();
+      for (int i = 0; i != this.items.length; ++i) {
+        if (i != 0) {
+          r.append(", "); //$NON-NLS-1$
+        }
+        r.append('#').append(i).append('=').append(this.items[i]);
+      }
+      return "{" + r + "}"; //$NON-NLS-1$ //$NON-NLS-2$
+    }
+  }
+
+  /**
+   * Properties in this bundle, indexed by key.
+   */
+  private final List<Property<?>> properties = new ArrayList<>();
+
+  /**
+   * Add a property to this bundle.
+   *
+   * @param <T>      Value of property.
+   * @param property Property to add.
+   * @return Key identifying property's value.
+   */
+  public <T> Key<T> add(Property<T> property) {
+    this.properties.add(property);
+    return new Key<>(this, this.properties.size() - 1);
+  }
+
+  /**
+   * Get the number of properties in this bundle.
+   *
+   * @return Number of properties.
+   */
+  public int size() {
+    return this.properties.size();
+  }
+
+  /**
+   * Get the property with a given index.
+   *
+   * @param index Index of property.
+   * @return Property.
+   */
+  Property<?> get(int index) {
+    Property<?> r = this.properties.get(index);
+    assert r != null;
+    return r;
+  }
+
+  @Override
+  public Values map(AbstractAvr state) {
+    Object[] items = new Object[this.properties.size()];
+    for (int i = 0; i != items.length; ++i) {
+      items[i] = this.properties.get(i).map(state);
+    }
+    return new Values(this, items);
+  }
+
+  @Override
+  public Values join(Values left, Values right) {
+    Object[] items = new Object[this.properties.size()];
+    for (int i = 0; i != items.length; ++i) {
+      items[i] = joinAs(this.properties.get(i), left.items[i], right.items[i]);
+    }
+    return new Values(this, items);
+  }
+
+  @Override
+  public @Nullable Serializer<Values> getSerializer() {
+    List<Serializer<?>> serializers = new ArrayList<>();
+    for (Property<?> p : this.properties) {
+      Serializer<?> s = p.getSerializer();
+      if (s == null) {
+        return null;
+      }
+      serializers.add(s);
+    }
+    return new Serializer<>() {
+      @Override
+      public void write(Values value, DataOutput out) throws IOException {
+        for (int i = 0; i != serializers.size(); ++i) {
+          writeAs(serializers.get(i), value.items[i], out);
+        }
+      }
+
+      @Override
+      public Values read(DataInput in) throws IOException {
+        Object[] items = new Object[serializers.size()];
+        for (int i = 0; i != items.length; ++i) {
+          items[i] = serializers.get(i).read(in);
+        }
+        return new Values(PropertyBundle.this, items);
+      }
+    };
+  }
+
+  /**
+   * Get the identity of this bundle, which is formed from the identity and
+   * version of every property in it.
+   *
+   * @return Identity of bundle.
+   */
+  @Override
+  public String getIdentity() {
+    StringBuilder r = new StringBuilder(getClass().getName()).append('[');
+    for (int i = 0; i != this.properties.size(); ++i) {
+      Property<?> p = this.properties.get(i);
+      if (i != 0) {
+        r.append(',');
+      }
+      r.append(p.getIdentity()).append('#').append(p.getVersion());
+    }
+    return r.append(']').toString();
+  }
+
+  /**
+   * Get the events on which any property in this bundle depends.
+   *
+   * @return Union of events of each property.
+   */
+  @Override
+  public PropertyEvents getEvents() {
+    PropertyEvents r = PropertyEvents.NONE;
+    for (Property<?> p : this.properties) {
+      r = r.union(p.getEvents());
+    }
+    return r;
+  }
+
+  /**
+   * Join two values of a given property, whose types are not known statically.
+   *
+   * @param <T>      Value of property.
+   * @param property Property whose values are joined.
+   * @param left     Leftmost value to join.
+   * @param right    Rightmost value to join.
+   * @return Result of join.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> T joinAs(Property<T> property, Object left, Object right) {
+    return property.join((T) left, (T) right);
+  }
+
+  /**
+   * Write a value whose type is not known statically using a given serializer.
+   *
+   * @param <T>        Value of property.
+   * @param serializer Serializer for property.
+   * @param value      Value to write.
+   * @param out        Stream to write to.
+   * @throws IOException If an I/O error occurs.
+   */
+  @SuppressWarnings("unchecked")
+  private static <T> void writeAs(Serializer<T> serializer, Object value, DataOutput out)
+      throws IOException {
+    serializer.write((T) value, out);
+  }
+}
@@ -0,0 +1,205 @@
+package avrmc.core;
+
+/**
+ * Identifies the events on which the value of a property depends, such that
+ * the model checker need only evaluate the property when one of them occurs
+ * (rather than after every instruction). For example, the stack height only
+ * changes when the stack pointer does:
+ *
+ * <pre>
+ * PropertyEvents.NONE.withStackPointer()
+ * </pre>
+ *
+ * <p>
+ * This relies on the property's <code>join()</code> being idempotent (i.e.
+ * joining a value with itself gives the same value), since a property which is
+ * not evaluated is assumed to hold the same value as when it was last
+ * evaluated. This holds for the usual properties (e.g. maximum, or logical
+ * or). The property is also always evaluated on the first instruction executed
+ * from each state taken from the worklist (e.g. after a fork).
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class PropertyEvents {
+  /**
+   * Event raised when the stack pointer changes.
+   */
+  private static final int STACK_POINTER = 1;
+  /**
+   * Event raised when memory in the watched range is written.
+   */
+  private static final int MEMORY_WRITE = 2;
+  /**
+   * Event raised when control does not pass to the following instruction
+   * (e.g. a branch is taken, or an interrupt occurs).
+   */
+  private static final int BRANCH = 4;
+  /**
+   * Event raised when the machine halts.
+   */
+  private static final int HALT = 8;
+  /**
+   * Indicates the property should be evaluated after every instruction,
+   * regardless of other events.
+   */
+  private static final int EVERY_INSTRUCTION = 16;
+
+  /**
+   * Events for a property which must be evaluated after every instruction. This
+   * is the default for all properties.
+   */
+  public static final PropertyEvents EVERY_STEP = new PropertyEvents(EVERY_INSTRUCTION, 0, 0);
+  /**
+   * No events, from which the events a property depends on are added.
+   */
+  public static final PropertyEvents NONE = new PropertyEvents(0, 0, 0);
+
+  /**
+   * Events on which the property depends.
+   */
+  private final int mask;
+  /**
+   * First address of watched memory range.
+   */
+  private final int start;
+  /**
+   * Address after last of watched memory range.
+   */
+  private final int end;
+
+  private PropertyEvents(int mask, int start, int end) {
+    this.mask = mask;
+    this.start = start;
+    this.end = end;
+  }
+
+  /**
+   * Add a dependency on changes to the stack pointer, which arise from pushes,
+   * pops, calls, returns, interrupt entry and writes to <code>SPL</code> or
+   * <code>SPH</code>.
+   *
+   * @return Refined events.
+   */
+  public PropertyEvents withStackPointer() {
+    return new PropertyEvents(this.mask | STACK_POINTER, this.start, this.end);
+  }
+
+  /**
+   * Add a dependency on writes to a given range of data memory. Only a single
+   * range can be watched.
+   *
+   * @param from First address in range.
+   * @param to   Address after the last in range.
+   * @return Refined events.
+   */
+  public PropertyEvents withWrites(int from, int to) {
+    if (from < 0 || to < from) {
+      throw new IllegalArgumentException("invalid range: " + from + ".." + to); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    return new PropertyEvents(this.mask | MEMORY_WRITE, from, to);
+  }
+
+  /**
+   * Add a dependency on control transfers, i.e. whenever control does not pass
+   * to the following instruction.
+   *
+   * @return Refined events.
+   */
+  public PropertyEvents withBranches() {
+    return new PropertyEvents(this.mask | BRANCH, this.start, this.end);
+  }
+
+  /**
+   * Add a dependency on the machine halting.
+   *
+   * @return Refined events.
+   */
+  public PropertyEvents withHalt() {
+    return new PropertyEvents(this.mask | HALT, this.start, this.end);
+  }
+
+  /**
+   * Combine these events with those of another property, such that the
+   * combination is raised whenever either is. When both watch memory writes,
+   * the smallest range covering both is watched.
+   *
+   * @param other Events to combine with.
+   * @return Combined events.
+   */
+  public PropertyEvents union(PropertyEvents other) {
+    int m = this.mask | other.mask;
+    if ((this.mask & MEMORY_WRITE) == 0) {
+      return new PropertyEvents(m, other.start, other.end);
+    } else if ((other.mask & MEMORY_WRITE) == 0) {
+      return new PropertyEvents(m, this.start, this.end);
+    }
+    return new PropertyEvents(m, Math.min(this.start, other.start), Math.max(this.end, other.end));
+  }
+
+  /**
+   * Determine whether the property must be evaluated after every instruction.
+   *
+   * @return True if evaluated after every instruction.
+   */
+  boolean isEveryStep() {
+    return (this.mask & EVERY_INSTRUCTION) != 0;
+  }
+
+  /**
+   * Determine whether the property must be evaluated when the machine halts.
+   *
+   * @return True if dependent on halting.
+   */
+  boolean isHalt() {
+    return (this.mask & HALT) != 0;
+  }
+
+  /**
+   * Determine whether any of these events occurred during the most recent clock
+   * of a given state.
+   *
+   * @param state State which has just been clocked.
+   * @param pc    Program counter of state before it was clocked.
+   * @return True if the property must be evaluated for the state.
+   */
+  boolean isRaised(AbstractAvr state, int pc) {
+    int m = this.mask;
+    if ((m & EVERY_INSTRUCTION) != 0) {
+      return true;
+    } else if ((m & STACK_POINTER) != 0 && state.isStackPointerChanged()) {
+      return true;
+    } else if ((m & MEMORY_WRITE) != 0 && state.getData().isWritten(this.start, this.end)) {
+      return true;
+    } else if ((m & BRANCH) != 0) {
+      // Taking an interrupt is itself a control transfer
+      int next = state.getProgramCounter();
+      int executed = state.getExecutedAddress();
+      return next < 0 || executed != pc
+          || next != executed + state.getInstruction(executed).getWidth();
+    }
+    return false;
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder r = new StringBuilder();
+    if (isEveryStep()) {
+      r.append(" every step"); //$NON-NLS-1$
+    }
+    if ((this.mask & STACK_POINTER) != 0) {
+      r.append(" stack pointer"); //$NON-NLS-1$
+    }
+    if ((this.mask & MEMORY_WRITE) != 0) {
+      r.append(" writes ").append(this.start).append("..").append(this.end); //$NON-NLS-1$ //$NON-NLS-2$
+    }
+    if ((this.mask & BRANCH) != 0) {
+      r.append(" branches"); //$NON-NLS-1$
+    }
+    if (isHalt()) {
+      r.append(" halt"); //$NON-NLS-1$
+    }
+    return "{" + r.toString().trim() + "}"; //$NON-NLS-1$ //$NON-NLS-2$
+  }
+}
@@ -0,0 +1,279 @@
+package avrmc.core;
+
+import avrmc.core.AvrModelChecker.Property;
+import avrmc.core.AvrModelChecker.Serializer;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.AtomicLong;
+import javr.core.AVR;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * An on-disk cache of the results computed by model checkers, such that
+ * re-checking firmware which has not changed returns its result immediately
+ * (rather than exploring its state space again). Each result is stored in its
+ * own file, named by a SHA-256 digest of everything which determines it:
+ * <ul>
+ * <li>The contents of code memory (i.e. the firmware).</li>
+ * <li>The starting state (including the size of data memory), and the kinds of
+ * interrupt triggers.</li>
+ * <li>The identity and version of the property.</li>
+ * <li>The version of the model checker (<code>AvrModelChecker.VERSION</code>).
+ * </li>
+ * <li>A caller supplied configuration string, which should describe anything
+ * else that affects the result (e.g. the kind of state store, or the
+ * parameters of interrupt triggers).</li>
+ * </ul>
+ * <p>
+ * Hence, a lookup reads at most one file. Results are written to a temporary
+ * file which is then atomically renamed, such that several processes can share
+ * the same cache. Only complete results (i.e. those not stopped early by a
+ * budget) are cached, and witnesses are not cached. Properties must provide a
+ * <code>Serializer</code>.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class ResultCache {
+  /**
+   * Identifies a cached result file.
+   */
+  private static final int MAGIC = 0x41565243;
+  /**
+   * Version of the result file format. This must be incremented whenever the
+   * format (or the contents of the digest) changes.
+   */
+  private static final int VERSION = 1;
+  /**
+   * Used to convert digests into file names.
+   */
+  private static final char[] HEX = "0123456789abcdef".toCharArray(); //$NON-NLS-1$
+  /**
+   * Directory holding the cache.
+   */
+  private final Path directory;
+  /**
+   * Number of lookups which found a result.
+   */
+  private final AtomicLong hits = new AtomicLong();
+  /**
+   * Number of lookups which did not find a result.
+   */
+  private final AtomicLong misses = new AtomicLong();
+
+  /**
+   * Construct a cache held in a given directory, which is created when the
+   * first result is written.
+   *
+   * @param directory Directory holding the cache.
+   */
+  public ResultCache(Path directory) {
+    this.directory = directory;
+  }
+
+  /**
+   * Apply a given model checker to a given starting state, unless its result is
+   * already cached. A complete result computed by the checker is added to the
+   * cache.
+   *
+   * @param <T>           Property value computed.
+   * @param checker       Model checker to apply.
+   * @param seed          Machine state to start checking from.
+   * @param configuration Describes anything else which affects the result.
+   * @return Computed (or cached) property value, along with its completeness.
+   */
+  public <T> ExplorationResult<T> check(AvrModelChecker<T> checker, AbstractAvr seed,
+      String configuration) {
+    Serializer<T> serializer = serializer(checker.getProperty());
+    Path file = locate(checker.getProperty(), seed, configuration);
+    @Nullable
+    T value = read(file, serializer);
+    if (value != null) {
+      this.hits.incrementAndGet();
+      return new ExplorationResult<>(value, null, 0, 0, null);
+    }
+    this.misses.incrementAndGet();
+    ExplorationResult<T> r = checker.check(seed);
+    if (r.isComplete()) {
+      write(file, serializer, r.getValue());
+    }
+    return r;
+  }
+
+  /**
+   * Look up the cached result of applying a given model checker to a given
+   * starting state, without computing it if missing.
+   *
+   * @param <T>           Property value computed.
+   * @param checker       Model checker which would be applied.
+   * @param seed          Machine state checking would start from.
+   * @param configuration Describes anything else which affects the result.
+   * @return Cached property value, or <code>null</code> if none.
+   */
+  public <T> @Nullable T lookup(AvrModelChecker<T> checker, AbstractAvr seed,
+      String configuration) {
+    Serializer<T> serializer = serializer(checker.getProperty());
+    @Nullable
+    T value = read(locate(checker.getProperty(), seed, configuration), serializer);
+    (value != null ? this.hits : this.misses).incrementAndGet();
+    return value;
+  }
+
+  /**
+   * Get the number of lookups which found a cached result.
+   *
+   * @return Number of hits.
+   */
+  public long getHits() {
+    return this.hits.get();
+  }
+
+  /**
+   * Get the number of lookups which did not find a cached result.
+   *
+   * @return Number of misses.
+   */
+  public long getMisses() {
+    return this.misses.get();
+  }
+
+  /**
+   * Get the serializer for a given property, which is required for its results
+   * to be cached.
+   *
+   * @param <T>      Property value.
+   * @param property Property to get serializer for.
+   * @return Serializer for property.
+   */
+  private static <T> Serializer<T> serializer(Property<T> property) {
+    Serializer<T> r = property.getSerializer();
+    if (r == null) {
+      throw new IllegalArgumentException("property does not support caching"); //$NON-NLS-1$
+    }
+    return r;
+  }
+
+  /**
+   * Determine the file holding the cached result for a given property,
+   * starting state and configuration. Files are spread over subdirectories
+   * named by the first byte of their digest, to keep directories small.
+   *
+   * @param property      Property being checked.
+   * @param seed          Machine state checking starts from.
+   * @param configuration Describes anything else which affects the result.
+   * @return File holding result (which may not exist).
+   */
+  private Path locate(Property<?> property, AbstractAvr seed, String configuration) {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256"); //$NON-NLS-1$
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+    ByteBuffer header = ByteBuffer.allocate(12);
+    header.putInt(VERSION).putInt(AvrModelChecker.VERSION).putInt(property.getVersion());
+    md.update(header.array());
+    update(md, property.getIdentity());
+    update(md, configuration);
+    for (AVR.Interrupt i : seed.getInterrupts()) {
+      update(md, i.getClass().getName());
+    }
+    update(md, ""); //$NON-NLS-1$
+    md.update(seed.getCodeBytes());
+    ByteBuffer state = ByteBuffer.allocate(StateCodec.getMaximumSize(seed));
+    StateCodec.encode(seed, state);
+    md.update(state.array(), 0, state.position());
+    byte[] digest = md.digest();
+    char[] name = new char[digest.length * 2];
+    for (int i = 0; i != digest.length; ++i) {
+      name[2 * i] = HEX[(digest[i] >> 4) & 0xF];
+      name[2 * i + 1] = HEX[digest[i] & 0xF];
+    }
+    String hex = new String(name);
+    return this.directory.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+  }
+
+  /**
+   * Add a string to a digest, followed by a terminator such that consecutive
+   * strings cannot be confused.
+   *
+   * @param md Digest to update.
+   * @param s  String to add.
+   */
+  private static void update(MessageDigest md, String s) {
+    md.update(s.getBytes(StandardCharsets.UTF_8));
+    md.update((byte) 0);
+  }
+
+  /**
+   * Read the result held in a given file. A file which is missing, or which
+   * cannot be read (e.g. because it was written by an older version), is
+   * treated as no result.
+   *
+   * @param <T>        Property value.
+   * @param file       File holding result.
+   * @param serializer Reads property value.
+   * @return Cached value, or <code>null</code> if none.
+   */
+  private static <T> @Nullable T read(Path file, Serializer<T> serializer) {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      return serializer.read(in);
+    } catch (IOException e) {
+      // Missing or unreadable entry is simply recomputed (and replaced)
+      return null;
+    }
+  }
+
+  /**
+   * Write a result to a given file. This is first written to a temporary file
+   * unique to this writer, which is then atomically renamed. Hence, readers
+   * never see a partially written result, and concurrent writers of the same
+   * result do not interfere.
+   *
+   * @param <T>        Property value.
+   * @param file       File to hold result.
+   * @param serializer Writes property value.
+   * @param value      Value to write.
+   */
+  private static <T> void write(Path file, Serializer<T> serializer, T value) {
+    try {
+      Path parent = file.getParent();
+      assert parent != null;
+      Files.createDirectories(parent);
+      Path tmp = Files.createTempFile(parent, "result", ".tmp"); //$NON-NLS-1$ //$NON-NLS-2$
+      try {
+        try (FileOutputStream fos = new FileOutputStream(tmp.toFile());
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos))) {
+          out.writeInt(MAGIC);
+          out.writeInt(VERSION);
+          serializer.write(value, out);
+          out.flush();
+          fos.getFD().sync();
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING,
+            StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+        Files.deleteIfExists(tmp);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+}
@@ -0,0 +1,171 @@
+package avrmc.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import javr.core.AVR;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Responsible for writing (and reading back) a summary of a complete model
+ * checking run, such that a later run on modified firmware can reuse its
+ * result where possible (i.e. when only code memory which the run never used
+ * has been modified). The summary records everything else which determines
+ * the result (i.e. the starting state, the kinds of interrupt triggers, the
+ * property and the configuration of the checker), the contents of code memory
+ * and which bytes of code memory the run actually used (i.e. decoded as
+ * instructions, or read as data). Since execution is deterministic, a later
+ * run with the same key whose firmware differs only in bytes which were not
+ * used must explore exactly the same states and, hence, compute the same
+ * result.
+ *
+ * @author David J. Pearce
+ *
+ * @param <T> Property value being summarised.
+ */
+final class RunSummary<T> {
+  /**
+   * Identifies a summary file.
+   */
+  private static final int MAGIC = 0x41565249;
+  /**
+   * Version of the summary format. This must be incremented whenever the format
+   * (or the state encoding) changes.
+   */
+  private static final int VERSION = 3;
+  /**
+   * File holding the summary.
+   */
+  private final Path file;
+  /**
+   * Used to save and restore the property value.
+   */
+  private final AvrModelChecker.Serializer<T> serializer;
+  /**
+   * Encoding of everything other than code memory which determines the result
+   * of the current run.
+   */
+  private final byte[] key;
+
+  /**
+   * Construct a summary for a run starting from a given state. This must be
+   * constructed before the run begins, since the state will be modified.
+   *
+   * @param file          File holding summary.
+   * @param property      Property being checked.
+   * @param serializer    Used to save and restore the property value.
+   * @param seed          Machine state run starts from.
+   * @param basicBlocks   True if states are recorded only at block boundaries.
+   * @param configuration Describes anything else which affects the result.
+   */
+  RunSummary(Path file, AvrModelChecker.Property<T> property,
+      AvrModelChecker.Serializer<T> serializer, AbstractAvr seed, boolean basicBlocks,
+      String configuration) {
+    this.file = file;
+    this.serializer = serializer;
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(AvrModelChecker.VERSION);
+      out.writeUTF(property.getIdentity());
+      out.writeInt(property.getVersion());
+      out.writeUTF(configuration);
+      out.writeBoolean(basicBlocks);
+      AVR.Interrupt[] interrupts = seed.getInterrupts();
+      out.writeInt(interrupts.length);
+      for (AVR.Interrupt i : interrupts) {
+        out.writeUTF(i.getClass().getName());
+      }
+      ByteBuffer buffer = ByteBuffer.allocate(StateCodec.getMaximumSize(seed));
+      StateCodec.encode(seed, buffer);
+      out.write(buffer.array(), 0, buffer.position());
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.key = bytes.toByteArray();
+  }
+
+  /**
+   * Read the previous summary and determine whether its result holds for the
+   * current run, given the code memory of its starting state. This is the case
+   * if the summary was computed with the same key, and no byte of code memory
+   * used by the previous run has changed.
+   *
+   * @param code Contents of code memory for the current run.
+   * @return Result of previous run, or <code>null</code> if it cannot be reused
+   *         (e.g. because there is no previous summary).
+   * @throws IOException If a problem occurs reading the summary.
+   */
+  @Nullable
+  T reuse(byte[] code) throws IOException {
+    try (DataInputStream in = new DataInputStream(
+        new BufferedInputStream(Files.newInputStream(this.file)))) {
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        return null;
+      }
+      byte[] previous = new byte[in.readInt()];
+      in.readFully(previous);
+      if (!Arrays.equals(previous, this.key)) {
+        return null;
+      }
+      int n = in.readInt();
+      if (n != code.length) {
+        return null;
+      }
+      byte[] bytes = new byte[n];
+      byte[] used = new byte[(n + 7) / 8];
+      in.readFully(bytes);
+      in.readFully(used);
+      for (int i = 0; i != n; ++i) {
+        if ((used[i >> 3] & (1 << (i & 7))) != 0 && bytes[i] != code[i]) {
+          return null;
+        }
+      }
+      return this.serializer.read(in);
+    } catch (NoSuchFileException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Write the summary of a completed run, replacing any previous summary. The
+   * summary is written to a temporary file which is then atomically renamed, so
+   * that a valid summary always exists.
+   *
+   * @param code  Contents of code memory for the run.
+   * @param usage Identifies the bytes of code memory used by the run.
+   * @param value Property value computed by the run.
+   * @throws IOException If a problem occurs writing the summary.
+   */
+  void save(byte[] code, boolean[] usage, T value) throws IOException {
+    Path tmp = this.file.resolveSibling(this.file.getFileName() + ".tmp"); //$NON-NLS-1$
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(this.key.length);
+      out.write(this.key);
+      out.writeInt(code.length);
+      out.write(code);
+      byte[] used = new byte[(code.length + 7) / 8];
+      for (int i = 0; i != usage.length; ++i) {
+        if (usage[i]) {
+          used[i >> 3] |= (byte) (1 << (i & 7));
+        }
+      }
+      out.write(used);
+      this.serializer.write(value, out);
+    }
+    Files.move(tmp, this.file, StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+}
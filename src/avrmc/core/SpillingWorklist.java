@@ -0,0 +1,339 @@
+package avrmc.core;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * A worklist which holds a bounded number of states in memory, and moves
+ * (<i>spills</i>) the remainder to a file. When the in-memory segment exceeds
+ * its capacity, the oldest half is encoded and appended to the file as a single
+ * chunk. Since the most recently added states are explored first, spilled
+ * states are only needed once the in-memory segment is exhausted, at which
+ * point the most recently spilled chunk is read back (in order) and truncated
+ * from the file. Hence, the file is only ever accessed sequentially and in
+ * large blocks.
+ *
+ * <p>
+ * States are encoded using <code>StateCodec</code>, which is typically several
+ * times smaller than a state held in memory. The
+ * file is deleted when the worklist is closed.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public class SpillingWorklist implements Worklist {
+  /**
+   * Default number of states held in memory.
+   */
+  private static final int DEFAULT_CAPACITY = 1 << 16;
+  /**
+   * Maximum number of states held in memory.
+   */
+  private final int capacity;
+  /**
+   * Directory in which the spill file is created.
+   */
+  private final Path directory;
+  /**
+   * States held in memory, where the last is explored next.
+   */
+  private final ArrayList<AbstractAvr> states = new ArrayList<>();
+  /**
+   * Position in the spill file at which each spilled chunk begins.
+   */
+  private long[] starts = new long[16];
+  /**
+   * Number of states in each spilled chunk.
+   */
+  private int[] counts = new int[16];
+  /**
+   * Number of chunks currently spilled.
+   */
+  private int chunks;
+  /**
+   * Number of states currently spilled.
+   */
+  private long spilled;
+  /**
+   * End of the spill file.
+   */
+  private long end;
+  /**
+   * A state from which parts not covered by the encoding (e.g. the code memory)
+   * are taken when reloading states, or <code>null</code> if nothing has been
+   * added yet.
+   */
+  private @Nullable AbstractAvr template;
+  /**
+   * The spill file, or <code>null</code> if nothing has been spilled yet.
+   */
+  private @Nullable FileChannel file;
+  /**
+   * Buffer used for encoding and decoding chunks.
+   */
+  private ByteBuffer buffer = ByteBuffer.allocateDirect(0);
+  /**
+   * Total bytes written to the spill file.
+   */
+  private long spilledBytes;
+  /**
+   * Total time spent spilling.
+   */
+  private long spillNanos;
+  /**
+   * Total bytes read from the spill file.
+   */
+  private long reloadedBytes;
+  /**
+   * Total time spent reloading.
+   */
+  private long reloadNanos;
+
+  /**
+   * Construct a spilling worklist with the default capacity, whose file is
+   * created in the default temporary directory.
+   */
+  public SpillingWorklist() {
+    this(DEFAULT_CAPACITY, Paths.get(System.getProperty("java.io.tmpdir"))); //$NON-NLS-1$
+  }
+
+  /**
+   * Construct a spilling worklist with a given capacity, whose file is created
+   * in a given directory.
+   *
+   * @param capacity  Maximum number of states held in memory.
+   * @param directory Directory in which to create spill file.
+   */
+  public SpillingWorklist(int capacity, Path directory) {
+    if (capacity < 2) {
+      throw new IllegalArgumentException("invalid capacity: " + capacity); //$NON-NLS-1$
+    }
+    this.capacity = capacity;
+    this.directory = directory;
+  }
+
+  @Override
+  public void push(AbstractAvr state) {
+    if (this.template == null) {
+      this.template = state;
+    }
+    this.states.add(state);
+    if (this.states.size() > this.capacity) {
+      spill(this.states.subList(0, this.capacity >>> 1));
+    }
+  }
+
+  @Override
+  public AbstractAvr pop() {
+    if (this.states.isEmpty()) {
+      reload();
+    }
+    return this.states.remove(this.states.size() - 1);
+  }
+
+  @Override
+  public long size() {
+    return this.states.size() + this.spilled;
+  }
+
+  /**
+   * Apply a given action to every state on this worklist, oldest first. Spilled
+   * states are read back one chunk at a time, and are not retained afterwards.
+   *
+   * @param action Action to apply to each state.
+   */
+  @Override
+  public void forEach(Consumer<? super AbstractAvr> action) {
+    FileChannel f = this.file;
+    AbstractAvr t = this.template;
+    for (int c = 0; c != this.chunks; ++c) {
+      if (f == null || t == null) {
+        throw new IllegalStateException("missing spill file"); //$NON-NLS-1$
+      }
+      long position = this.starts[c];
+      long next = (c + 1 == this.chunks) ? this.end : this.starts[c + 1];
+      ByteBuffer buf = read(f, position, (int) (next - position));
+      for (int i = 0; i != this.counts[c]; ++i) {
+        action.accept(StateCodec.decode(t, buf));
+      }
+    }
+    this.states.forEach(action);
+  }
+
+  @Override
+  public long getSpilledBytes() {
+    return this.spilledBytes;
+  }
+
+  @Override
+  public long getSpillNanos() {
+    return this.spillNanos;
+  }
+
+  @Override
+  public long getReloadedBytes() {
+    return this.reloadedBytes;
+  }
+
+  @Override
+  public long getReloadNanos() {
+    return this.reloadNanos;
+  }
+
+  /**
+   * Close this worklist, after which its spill file is deleted.
+   */
+  @Override
+  public void close() {
+    FileChannel f = this.file;
+    if (f != null) {
+      try {
+        f.close();
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }
+  }
+
+  /**
+   * Encode a given list of states and append them to the spill file as a
+   * single chunk, removing them from memory.
+   *
+   * @param chunk States to spill, oldest first.
+   */
+  private void spill(List<AbstractAvr> chunk) {
+    long start = System.nanoTime();
+    int bound = 0;
+    for (AbstractAvr st : chunk) {
+      bound += StateCodec.getMaximumSize(st);
+    }
+    ByteBuffer buf = getBuffer(bound);
+    for (AbstractAvr st : chunk) {
+      StateCodec.encode(st, buf);
+    }
+    buf.flip();
+    int length = buf.remaining();
+    try {
+      FileChannel f = getFile();
+      long position = this.end;
+      while (buf.hasRemaining()) {
+        position += f.write(buf, position);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    if (this.chunks == this.starts.length) {
+      this.starts = Arrays.copyOf(this.starts, this.chunks * 2);
+      this.counts = Arrays.copyOf(this.counts, this.chunks * 2);
+    }
+    this.starts[this.chunks] = this.end;
+    this.counts[this.chunks] = chunk.size();
+    this.chunks = this.chunks + 1;
+    this.end = this.end + length;
+    this.spilled += chunk.size();
+    chunk.clear();
+    this.spilledBytes += length;
+    this.spillNanos += System.nanoTime() - start;
+  }
+
+  /**
+   * Read back the most recently spilled chunk, such that its states are again
+   * held in memory (in their original order), and truncate it from the spill
+   * file.
+   */
+  private void reload() {
+    long start = System.nanoTime();
+    FileChannel f = this.file;
+    AbstractAvr t = this.template;
+    if (this.chunks == 0 || f == null || t == null) {
+      throw new IllegalStateException("worklist is empty"); //$NON-NLS-1$
+    }
+    this.chunks = this.chunks - 1;
+    long position = this.starts[this.chunks];
+    int count = this.counts[this.chunks];
+    int length = (int) (this.end - position);
+    ByteBuffer buf = read(f, position, length);
+    for (int i = 0; i != count; ++i) {
+      this.states.add(StateCodec.decode(t, buf));
+    }
+    try {
+      // Release the disk space held by the chunk
+      f.truncate(position);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    this.end = position;
+    this.spilled -= count;
+    this.reloadedBytes += length;
+    this.reloadNanos += System.nanoTime() - start;
+  }
+
+  /**
+   * Read a given range of the spill file into the buffer.
+   *
+   * @param f        Spill file to read from.
+   * @param position Position of first byte to read.
+   * @param length   Number of bytes to read.
+   * @return Buffer holding (only) those bytes read, ready for decoding.
+   */
+  private ByteBuffer read(FileChannel f, long position, int length) {
+    ByteBuffer buf = getBuffer(length);
+    buf.limit(length);
+    try {
+      while (buf.hasRemaining()) {
+        int n = f.read(buf, position + buf.position());
+        if (n < 0) {
+          throw new IOException("unexpected end of spill file"); //$NON-NLS-1$
+        }
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+    buf.flip();
+    return buf;
+  }
+
+  /**
+   * Get the buffer, cleared and enlarged if necessary to hold a given number of
+   * bytes.
+   *
+   * @param size Number of bytes required.
+   * @return Cleared buffer.
+   */
+  private ByteBuffer getBuffer(int size) {
+    if (this.buffer.capacity() < size) {
+      this.buffer = ByteBuffer.allocateDirect(size);
+    }
+    this.buffer.clear();
+    return this.buffer;
+  }
+
+  /**
+   * Get the spill file, creating it if necessary.
+   *
+   * @return Spill file.
+   * @throws IOException If a problem occurs creating the file.
+   */
+  private FileChannel getFile() throws IOException {
+    FileChannel f = this.file;
+    if (f == null) {
+      Path path = Files.createTempFile(this.directory, "worklist", ".spill"); //$NON-NLS-1$ //$NON-NLS-2$
+      f = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE,
+          StandardOpenOption.DELETE_ON_CLOSE);
+      this.file = f;
+    }
+    return f;
+  }
+}
@@ -0,0 +1,352 @@
+package avrmc.core;
+
+import avrmc.core.AbstractMemory.Byte;
+import java.nio.ByteBuffer;
+
+/**
+ * Responsible for converting abstract machine states to and from a compact
+ * binary encoding. This is used wherever states are moved out of the Java heap
+ * (e.g. by <code>MappedStateStore</code> and <code>SpillingWorklist</code>).
+ * The encoding covers exactly those parts of a state compared by
+ * <code>AbstractAvr.equals()</code>, and is canonical: two states are equal if
+ * and only if their encodings are identical. Hence, encodings can be compared
+ * directly in place of the states themselves.
+ *
+ * <p>
+ * An encoding begins with a version byte, followed by the program counter, the
+ * packed status flags and the size of data memory. The data memory follows as
+ * a sequence of <i>runs</i>, each of which begins with a header holding its
+ * length and kind. A run is either:
+ * </p>
+ * <ul>
+ * <li><b>Zero.</b> A sequence of locations known to hold zero, which occupies
+ * only the header. Untouched SRAM is typically encoded like this.</li>
+ * <li><b>Unknown.</b> A sequence of locations with completely unknown value,
+ * which occupies only the header.</li>
+ * <li><b>Literal.</b> A sequence of locations with known values, which are
+ * given in order.</li>
+ * <li><b>Mixed.</b> A sequence of locations some of which are (at least
+ * partially) unknown. This is followed by a bitmap identifying the unknown
+ * locations, and then each location in order. A known location is given by its
+ * value, whilst an unknown location is given by the mask of its known bits
+ * followed (if that is not zero) by the value of those bits.</li>
+ * </ul>
+ * <p>
+ * Zero and unknown runs are only used for at least <code>MIN_RUN</code>
+ * locations, since shorter runs are more compactly included in a literal or
+ * mixed run. All integers are written as unsigned LEB128 variable-length
+ * integers, except the status flags which occupy two bytes.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class StateCodec {
+  /**
+   * Version of the encoding written by this codec. This must be incremented
+   * whenever the encoding changes.
+   */
+  public static final int VERSION = 2;
+  /**
+   * Minimum number of locations in a zero or unknown run.
+   */
+  private static final int MIN_RUN = 4;
+  /**
+   * Kind of run where every location is zero.
+   */
+  private static final int ZERO = 0;
+  /**
+   * Kind of run where every location is unknown.
+   */
+  private static final int UNKNOWN = 1;
+  /**
+   * Kind of run where every location is known.
+   */
+  private static final int LITERAL = 2;
+  /**
+   * Kind of run where some locations are unknown.
+   */
+  private static final int MIXED = 3;
+
+  private StateCodec() {
+  }
+
+  /**
+   * Get an upper bound on the number of bytes required to encode a given
+   * state.
+   *
+   * @param state State to be encoded.
+   * @return Maximum size (in bytes) of encoding.
+   */
+  public static int getMaximumSize(AbstractAvr state) {
+    // Runs cost at most two bytes per location, plus a header and bitmap
+    return 16 + (3 * state.getData().size());
+  }
+
+  /**
+   * Write the encoding of a given state to a given buffer, starting at its
+   * current position. The buffer must have at least
+   * <code>getMaximumSize(state)</code> bytes remaining.
+   *
+   * @param state State to be encoded.
+   * @param out   Buffer to write encoding into.
+   */
+  public static void encode(AbstractAvr state, ByteBuffer out) {
+    AbstractMemory data = state.getData();
+    int size = data.size();
+    out.put((byte) VERSION);
+    putVarInt(out, state.getProgramCounter());
+    out.putShort((short) state.getStatusFingerprint());
+    putVarInt(out, size);
+    int i = 0;
+    while (i < size) {
+      int zeros = countZeros(data, i, size);
+      if (zeros >= MIN_RUN) {
+        putHeader(out, zeros, ZERO);
+        i += zeros;
+        continue;
+      }
+      int unknowns = countUnknowns(data, i, size);
+      if (unknowns >= MIN_RUN) {
+        putHeader(out, unknowns, UNKNOWN);
+        i += unknowns;
+        continue;
+      }
+      // Extend literal (or mixed) run until a zero or unknown run begins
+      int start = i;
+      i = findRunStart(data, i, size);
+      if (hasUnknown(data, start, i)) {
+        putHeader(out, i - start, MIXED);
+        putBitmap(data, start, i, out);
+      } else {
+        putHeader(out, i - start, LITERAL);
+      }
+      for (int j = start; j != i; ++j) {
+        if (!data.isUnknown(j)) {
+          out.put(data.getValue(j));
+        } else {
+          byte known = data.getKnownBits(j);
+          out.put(known);
+          if (known != 0) {
+            out.put(data.getValue(j));
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Read the encoding of a state from a given buffer, starting at its current
+   * position. On return, the buffer is positioned immediately after the
+   * encoding. Those parts of the state not covered by the encoding (e.g. the
+   * code memory) are shared with a given template state, which must be running
+   * the same firmware. Values are written directly into the new state, without
+   * any intermediate allocation.
+   *
+   * @param template State running the same firmware.
+   * @param in       Buffer to read encoding from.
+   * @return Decoded state.
+   * @throws IllegalArgumentException If the encoding is malformed, or was
+   *                                  written by an unsupported version.
+   */
+  public static AbstractAvr decode(AbstractAvr template, ByteBuffer in) {
+    int version = in.get() & 0xFF;
+    if (version != VERSION) {
+      throw new IllegalArgumentException("unsupported state encoding version: " + version); //$NON-NLS-1$
+    }
+    int pc = getVarInt(in);
+    int status = in.getShort() & 0xFFFF;
+    int size = getVarInt(in);
+    AbstractAvr state = new AbstractAvr(template, pc, status, size);
+    AbstractMemory data = state.getData();
+    int i = 0;
+    while (i < size) {
+      int header = getVarInt(in);
+      int length = header >>> 2;
+      int end = i + length;
+      if (length == 0 || end > size) {
+        throw new IllegalArgumentException("invalid run of length " + length + " at " + i); //$NON-NLS-1$ //$NON-NLS-2$
+      }
+      switch (header & 3) {
+        case ZERO:
+          // Memory is initially zero
+          break;
+        case UNKNOWN:
+          for (int j = i; j != end; ++j) {
+            data.write(j, Byte.UNKNOWN);
+          }
+          break;
+        case LITERAL:
+          for (int j = i; j != end; ++j) {
+            data.write(j, in.get());
+          }
+          break;
+        default: {
+          // Values follow bitmap, hence read bitmap in place
+          int bitmap = in.position();
+          in.position(bitmap + ((length + 7) >>> 3));
+          for (int j = 0; j != length; ++j) {
+            if ((in.get(bitmap + (j >>> 3)) & (1 << (j & 7))) != 0) {
+              byte known = in.get();
+              data.write(i + j, known == 0 ? Byte.UNKNOWN : Byte.from(in.get(), known));
+            } else {
+              data.write(i + j, in.get());
+            }
+          }
+        }
+      }
+      i = end;
+    }
+    return state;
+  }
+
+  // ===============================================================
+  // Helpers
+  // ===============================================================
+
+  /**
+   * Count the number of consecutive locations known to hold zero.
+   *
+   * @param data  Memory to examine.
+   * @param start First location to examine.
+   * @param end   Location after the last to examine.
+   * @return Number of consecutive zero locations from <code>start</code>.
+   */
+  private static int countZeros(AbstractMemory data, int start, int end) {
+    int limit = Math.min(end, data.size());
+    int i = start;
+    while (i < limit && !data.isUnknown(i) && data.getValue(i) == 0) {
+      i = i + 1;
+    }
+    return i - start;
+  }
+
+  /**
+   * Count the number of consecutive locations with completely unknown value.
+   *
+   * @param data  Memory to examine.
+   * @param start First location to examine.
+   * @param end   Location after the last to examine.
+   * @return Number of consecutive unknown locations from <code>start</code>.
+   */
+  private static int countUnknowns(AbstractMemory data, int start, int end) {
+    int limit = Math.min(end, data.size());
+    int i = start;
+    while (i < limit && data.isUnknown(i) && data.getKnownBits(i) == 0) {
+      i = i + 1;
+    }
+    return i - start;
+  }
+
+  /**
+   * Find the first location from which a zero or unknown run of at least
+   * <code>MIN_RUN</code> locations begins.
+   *
+   * @param data  Memory to examine.
+   * @param start First location to examine.
+   * @param end   Location after the last to examine.
+   * @return Start of first such run, or <code>end</code> if none.
+   */
+  private static int findRunStart(AbstractMemory data, int start, int end) {
+    int zeros = 0;
+    int unknowns = 0;
+    for (int i = start; i < end; ++i) {
+      if (data.isUnknown(i)) {
+        unknowns = data.getKnownBits(i) == 0 ? unknowns + 1 : 0;
+        zeros = 0;
+      } else if (data.getValue(i) == 0) {
+        zeros = zeros + 1;
+        unknowns = 0;
+      } else {
+        zeros = 0;
+        unknowns = 0;
+      }
+      if (zeros == MIN_RUN || unknowns == MIN_RUN) {
+        return i + 1 - MIN_RUN;
+      }
+    }
+    return end;
+  }
+
+  /**
+   * Check whether any location in a given range has (at least partially)
+   * unknown value.
+   *
+   * @param data  Memory to examine.
+   * @param start First location in range.
+   * @param end   Location after the last in range.
+   * @return True if some location is unknown.
+   */
+  private static boolean hasUnknown(AbstractMemory data, int start, int end) {
+    for (int i = start; i < end; ++i) {
+      if (data.isUnknown(i)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Write a bitmap identifying the unknown locations in a given range.
+   *
+   * @param data  Memory to examine.
+   * @param start First location in range.
+   * @param end   Location after the last in range.
+   * @param out   Buffer to write bitmap into.
+   */
+  private static void putBitmap(AbstractMemory data, int start, int end, ByteBuffer out) {
+    for (int i = start; i < end; i += 8) {
+      int bits = 0;
+      for (int j = 0; j != 8 && (i + j) < end; ++j) {
+        if (data.isUnknown(i + j)) {
+          bits |= 1 << j;
+        }
+      }
+      out.put((byte) bits);
+    }
+  }
+
+  /**
+   * Write the header of a run.
+   *
+   * @param out    Buffer to write header into.
+   * @param length Number of locations in run.
+   * @param kind   Kind of run.
+   */
+  private static void putHeader(ByteBuffer out, int length, int kind) {
+    putVarInt(out, (length << 2) | kind);
+  }
+
+  /**
+   * Write an unsigned variable-length integer.
+   *
+   * @param out   Buffer to write into.
+   * @param value Value to write, which is treated as unsigned.
+   */
+  private static void putVarInt(ByteBuffer out, int value) {
+    int v = value;
+    while ((v & ~0x7F) != 0) {
+      out.put((byte) ((v & 0x7F) | 0x80));
+      v >>>= 7;
+    }
+    out.put((byte) v);
+  }
+
+  /**
+   * Read an unsigned variable-length integer.
+   *
+   * @param in Buffer to read from.
+   * @return Value read.
+   */
+  private static int getVarInt(ByteBuffer in) {
+    int value = 0;
+    for (int shift = 0; shift < 32; shift += 7) {
+      int b = in.get();
+      value |= (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+    throw new IllegalArgumentException("invalid variable-length integer"); //$NON-NLS-1$
+  }
+}
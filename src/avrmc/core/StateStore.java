@@ -0,0 +1,72 @@
+package avrmc.core;
+
+/**
+ * Represents the set of states which have already been visited during model
+ * checking. Since the number of reachable states can be very large, the way in
+ * which visited states are recorded is the dominant factor in how much memory
+ * a model checking run requires. Different implementations trade exactness for
+ * memory (e.g. by storing only a fingerprint of each state). A store is used
+ * for a single run of the model checker, and is closed at the end of that run
+ * so that any resources it holds outside of the Java heap can be released.
+ *
+ * @author David J. Pearce
+ *
+ */
+public interface StateStore extends AutoCloseable {
+  /**
+   * Record a given state as visited. Implementations must not retain a
+   * reference to the given state, since it will continue to be mutated by the
+   * model checker after this method returns.
+   *
+   * @param state Abstract machine state to be recorded.
+   * @return True if this state was not previously visited (i.e. it was added),
+   *         or false if it was already visited.
+   */
+  public boolean add(AbstractAvr state);
+
+  /**
+   * Get the number of distinct states recorded in this store.
+   *
+   * @return Number of states recorded.
+   */
+  public long size();
+
+  /**
+   * Get an estimate of the number of bytes retained by this store. This is
+   * intended for comparing different stores and capacity planning, rather than
+   * being an exact measurement.
+   *
+   * @return Estimated size (in bytes) of this store.
+   */
+  public long getMemoryUsage();
+
+  /**
+   * Get an estimate of the probability that one or more states were wrongly
+   * considered as visited (i.e. omitted from the search) because of hash
+   * collisions. For exact stores this is always zero.
+   *
+   * @return Probability (between <code>0</code> and <code>1</code>) that the
+   *         search was incomplete.
+   */
+  public double getOmissionProbability();
+
+  /**
+   * Get an estimate of the fraction of reachable states which were actually
+   * explored, given that some may have been wrongly considered as visited. This
+   * is only significantly below one for stores which deliberately trade
+   * completeness for memory.
+   *
+   * @return Estimated coverage (between <code>0</code> and <code>1</code>).
+   */
+  public default double getCoverage() {
+    return 1.0;
+  }
+
+  /**
+   * Release any resources held by this store (e.g. files). By default, this
+   * does nothing since most stores reside entirely on the Java heap.
+   */
+  @Override
+  public default void close() {
+  }
+}
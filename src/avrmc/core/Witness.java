@@ -0,0 +1,93 @@
+package avrmc.core;
+
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * An execution path from the starting state of a model checking run to the
+ * state which determined its result (e.g. the state with the greatest stack
+ * height). This is given as the address of every instruction executed along
+ * the path, in order, along with the final state itself. Hence, it can be used
+ * to understand why a surprising result was obtained.
+ *
+ * @author David J. Pearce
+ *
+ */
+public final class Witness {
+  /**
+   * Address of each instruction executed along the path.
+   */
+  private final int[] path;
+  /**
+   * The state at the end of the path.
+   */
+  private final AbstractAvr state;
+
+  /**
+   * Construct a witness.
+   *
+   * @param path  Address of each instruction executed.
+   * @param state State at end of path.
+   */
+  Witness(int[] path, AbstractAvr state) {
+    this.path = path;
+    this.state = state;
+  }
+
+  /**
+   * Get the number of instructions executed along this path.
+   *
+   * @return Length of path.
+   */
+  public int size() {
+    return this.path.length;
+  }
+
+  /**
+   * Get the address of a given instruction executed along this path.
+   *
+   * @param index Index of instruction in path.
+   * @return Address of instruction.
+   */
+  public int getProgramCounter(int index) {
+    return this.path[index];
+  }
+
+  /**
+   * Get the address of every instruction executed along this path.
+   *
+   * @return Addresses of instructions, in order of execution.
+   */
+  public int[] getProgramCounters() {
+    return Arrays.copyOf(this.path, this.path.length);
+  }
+
+  /**
+   * Get the state at the end of this path (i.e. that which determined the
+   * result).
+   *
+   * @return Final state, which should not be modified.
+   */
+  public AbstractAvr getState() {
+    return this.state;
+  }
+
+  /**
+   * Print this path as one instruction per line, followed by the final state.
+   *
+   * @param out The output stream where the path is printed.
+   */
+  public void print(PrintStream out) {
+    for (int i = 0; i != this.path.length; ++i) {
+      int pc = this.path[i];
+      out.println(String.format("%8d %04x: %s", Integer.valueOf(i), Integer.valueOf(pc), //$NON-NLS-1$
+          this.state.getInstruction(pc)));
+    }
+    this.state.print(out);
+  }
+
+  @Override
+  public String toString() {
+    return this.path.length + " instructions to " + this.state; //$NON-NLS-1$
+  }
+}
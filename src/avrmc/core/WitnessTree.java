@@ -0,0 +1,170 @@
+package avrmc.core;
+
+import java.util.Arrays;
+import javr.core.AVR;
+import org.eclipse.jdt.annotation.Nullable;
+
+/**
+ * Records just enough about a model checking run to reconstruct the path to
+ * any state explored. Rather than recording each state, the run is divided
+ * into <i>segments</i>: each state taken from the worklist begins a segment,
+ * which continues until the state forks, halts or is found to have been
+ * visited. A segment which ends in a fork gives rise to two further segments,
+ * one for each side of the fork. Hence, the segments form a tree, where each
+ * segment is recorded only by the index of its parent and which side of the
+ * fork it took, packed into a single <code>int</code>.
+ *
+ * <p>
+ * A path is reconstructed by re-executing from (a copy of) the starting state,
+ * choosing the recorded side at each fork. This relies on execution being
+ * deterministic, which holds unless the machine has interrupt sources whose
+ * behaviour is not.
+ * </p>
+ *
+ * @author David J. Pearce
+ *
+ */
+final class WitnessTree {
+  /**
+   * Copy of the state from which the run started.
+   */
+  private final AbstractAvr origin;
+  /**
+   * Each segment, indexed by its identifier, holding the parent segment
+   * shifted left by one, with the side of the fork taken in the lowest bit.
+   */
+  private int[] segments = new int[1024];
+  /**
+   * Number of segments.
+   */
+  private int size = 1;
+  /**
+   * Segment containing the witness.
+   */
+  private int witness;
+  /**
+   * Number of instructions executed in the witness segment to reach the
+   * witness.
+   */
+  private long steps;
+
+  /**
+   * Construct a tree for a run starting from a given state, whose root segment
+   * begins with that state. Initially, the witness is the starting state
+   * itself.
+   *
+   * @param seed State from which run starts, which is copied.
+   */
+  WitnessTree(AbstractAvr seed) {
+    this.origin = seed.clone();
+  }
+
+  /**
+   * Get the identifier of the root segment.
+   *
+   * @return Root segment.
+   */
+  static int root() {
+    return 0;
+  }
+
+  /**
+   * Add a segment arising from a fork at the end of a given segment.
+   *
+   * @param parent Segment which ended in fork.
+   * @param fork   True if the new segment begins with the forked state, false if
+   *               it continues with the original state.
+   * @return Identifier of new segment.
+   */
+  int add(int parent, boolean fork) {
+    int id = this.size;
+    if (id == this.segments.length) {
+      if (id > (Integer.MAX_VALUE >>> 2)) {
+        throw new IllegalStateException("witness capacity exceeded"); //$NON-NLS-1$
+      }
+      this.segments = Arrays.copyOf(this.segments, id * 2);
+    }
+    this.segments[id] = (parent << 1) | (fork ? 1 : 0);
+    this.size = id + 1;
+    return id;
+  }
+
+  /**
+   * Record the witness as the state reached after executing a given number of
+   * instructions in a given segment.
+   *
+   * @param segment Segment containing witness.
+   * @param count   Number of instructions executed in segment.
+   */
+  void record(int segment, long count) {
+    this.witness = segment;
+    this.steps = count;
+  }
+
+  /**
+   * Get the number of segments recorded.
+   *
+   * @return Number of segments.
+   */
+  int size() {
+    return this.size;
+  }
+
+  /**
+   * Get an estimate of the number of bytes retained by this tree.
+   *
+   * @return Estimated size in bytes.
+   */
+  long getMemoryUsage() {
+    return 4L * this.segments.length;
+  }
+
+  /**
+   * Reconstruct the path to the witness by re-executing from the starting
+   * state.
+   *
+   * @return Path to witness.
+   */
+  Witness reconstruct() {
+    // Determine segments from root to witness
+    int depth = 0;
+    for (int s = this.witness; s != root(); s = this.segments[s] >>> 1) {
+      depth++;
+    }
+    int[] route = new int[depth + 1];
+    for (int s = this.witness, i = depth; i >= 0; s = this.segments[s] >>> 1, --i) {
+      route[i] = s;
+    }
+    AbstractAvr state = this.origin.clone();
+    int[] path = new int[16];
+    int length = 0;
+    try {
+      for (int i = 0; i != route.length; ++i) {
+        boolean last = (i + 1) == route.length;
+        @Nullable
+        AbstractAvr fork = null;
+        for (long n = 0; last ? n < this.steps : fork == null; ++n) {
+          if (length == path.length) {
+            path = Arrays.copyOf(path, length * 2);
+          }
+          try {
+            fork = AvrModelChecker.clock(state);
+          } finally {
+            // Differs from program counter before clock if interrupt was taken
+            path[length++] = state.getExecutedAddress();
+          }
+        }
+        if (!last) {
+          if (fork == null) {
+            throw new IllegalStateException("inconsistent witness"); //$NON-NLS-1$
+          }
+          state = ((this.segments[route[i + 1]] & 1) != 0) ? fork : state;
+        }
+      }
+    } catch (AVR.HaltedException e) {
+      // Witness is the halted state, which ends the path
+      assert e != null;
+    }
+    return new Witness(Arrays.copyOf(path, length), state);
+  }
+}
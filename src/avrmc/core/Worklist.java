@@ -0,0 +1,93 @@
+package avrmc.core;
+
+import java.util.function.Consumer;
+
+/**
+ * Represents the set of states which remain to be explored during model
+ * checking. States are explored in last-in first-out order, such that
+ * exploration proceeds depth first. Since every state on the worklist is a
+ * complete machine state, the worklist can become large when many forks are
+ * pending. Different implementations trade speed for memory (e.g. by moving
+ * states out of the Java heap).
+ *
+ * @author David J. Pearce
+ *
+ */
+public interface Worklist extends AutoCloseable {
+  /**
+   * Add a state to be explored. The worklist takes ownership of the state,
+   * which must not be subsequently modified by the caller.
+   *
+   * @param state Abstract machine state to be explored.
+   */
+  public void push(AbstractAvr state);
+
+  /**
+   * Remove the state most recently added which has not yet been removed. This
+   * must only be called when the worklist is not empty.
+   *
+   * @return State to explore next.
+   */
+  public AbstractAvr pop();
+
+  /**
+   * Get the number of states on this worklist.
+   *
+   * @return Number of states remaining.
+   */
+  public long size();
+
+  /**
+   * Apply a given action to every state on this worklist, starting from that
+   * added earliest (i.e. that which would be explored last). This is used, for
+   * example, to write the worklist into a checkpoint. The action must not modify
+   * this worklist, or the states given to it.
+   *
+   * @param action Action to apply to each state.
+   */
+  public void forEach(Consumer<? super AbstractAvr> action);
+
+  /**
+   * Get the number of bytes moved out of memory by this worklist so far.
+   *
+   * @return Bytes spilled.
+   */
+  public default long getSpilledBytes() {
+    return 0;
+  }
+
+  /**
+   * Get the time spent moving states out of memory so far.
+   *
+   * @return Time (in nanoseconds) spent spilling.
+   */
+  public default long getSpillNanos() {
+    return 0;
+  }
+
+  /**
+   * Get the number of bytes moved back into memory by this worklist so far.
+   *
+   * @return Bytes reloaded.
+   */
+  public default long getReloadedBytes() {
+    return 0;
+  }
+
+  /**
+   * Get the time spent moving states back into memory so far.
+   *
+   * @return Time (in nanoseconds) spent reloading.
+   */
+  public default long getReloadNanos() {
+    return 0;
+  }
+
+  /**
+   * Release any resources held by this worklist (e.g. files). By default, this
+   * does nothing.
+   */
+  @Override
+  public default void close() {
+  }
+}
@@ -0,0 +1,113 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AbstractMemory;
+import avrmc.core.AbstractMemory.Byte;
+import javr.core.AVR;
+import javr.core.AVR.HaltedException;
+import javr.core.AvrInstruction;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check the abstract machine itself, such as the sharing of
+ * memory between copies of a state, state fingerprints and the address of the
+ * instruction most recently executed.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class AbstractAvrTests {
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_01() {
+    AbstractAvr avr = new AbstractAvr(16, 32 + 64 + 512);
+    AbstractAvr copy = avr.clone();
+    assertEquals(avr.fingerprint(), copy.fingerprint());
+    // Unknown must be distinguished from every concrete value
+    copy.getData().write(0, Byte.UNKNOWN);
+    assertEquals(false, avr.fingerprint() == copy.fingerprint());
+    copy.getData().write(0, Byte.from((byte) 0));
+    assertEquals(avr.fingerprint(), copy.fingerprint());
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_02() {
+    AbstractMemory mem = new AbstractMemory(32 + 64 + 512);
+    mem.write(600, (byte) 1);
+    AbstractMemory copy = new AbstractMemory(mem);
+    assertEquals(0, copy.getOwnedPages());
+    // Writes to either memory must not be visible in the other
+    copy.write(600, (byte) 2);
+    mem.write(0, Byte.UNKNOWN);
+    assertEquals(1, copy.getOwnedPages());
+    assertEquals(1, mem.getValue(600));
+    assertEquals(2, copy.getValue(600));
+    assertEquals(false, copy.isUnknown(0));
+    assertEquals(false, mem.equals(copy));
+    copy.write(600, (byte) 1);
+    copy.write(0, Byte.UNKNOWN);
+    assertEquals(mem, copy);
+    assertEquals(mem.hashCode(), copy.hashCode());
+    assertEquals(mem.fingerprint(), copy.fingerprint());
+  }
+
+  /**
+   * A test.
+   *
+   * @throws HaltedException If the machine halts unexpectedly.
+   */
+  @Test
+  public void test_03() throws HaltedException {
+    boolean[] pending = { true };
+    AVR.Interrupt never = new AVR.Interrupt() {
+      @Override
+      public boolean get() {
+        return false;
+      }
+
+      @Override
+      public void clear() {
+      }
+    };
+    AVR.Interrupt once = new AVR.Interrupt() {
+      @Override
+      public boolean get() {
+        return pending[0];
+      }
+
+      @Override
+      public void clear() {
+        pending[0] = false;
+      }
+    };
+    AbstractAvr avr = new AbstractAvr(8192, 32 + 64 + 512, never, once);
+    Part1.assemble(
+        new AvrInstruction.RJMP(1),
+        // Interrupt vector
+        new AvrInstruction.NOP(),
+        new AvrInstruction.LDI(28, 0x5f),
+        new AvrInstruction.LDI(29, 0x2),
+        new AvrInstruction.OUT(0x3e, 29),
+        new AvrInstruction.OUT(0x3d, 28),
+        new AvrInstruction.SEI(),
+        new AvrInstruction.NOP(),
+        new AvrInstruction.RJMP(-1)).uploadTo(avr.getCode());
+    for (int i = 0; i != 6; ++i) {
+      avr.clock();
+      assertEquals(i == 0 ? 0 : i + 1, avr.getExecutedAddress());
+    }
+    // Interrupt is taken before the instruction at the program counter
+    assertEquals(7, avr.getProgramCounter());
+    avr.clock();
+    assertEquals(1, avr.getExecutedAddress());
+    assertEquals(2, avr.getProgramCounter());
+  }
+}
@@ -0,0 +1,43 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import java.io.File;
+import java.io.IOException;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check that exploring whole basic blocks at a time gives the
+ * same results as exploring single instructions.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class BasicBlockTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01() throws IOException {
+    AbstractAvr avr = StateStoreTests.load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(
+        new StateStoreTests.StackHeightProperty());
+    checker.setBasicBlocks(true);
+    assertEquals(this.ten, checker.apply(avr).intValue());
+  }
+}
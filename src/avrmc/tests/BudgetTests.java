@@ -0,0 +1,69 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.ExplorationBudget;
+import avrmc.core.ExplorationResult;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test cases which check that exploration budgets give partial results which
+ * are lower bounds, and that exhausted runs can be continued.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class BudgetTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @param directory Temporary directory for files written by the test.
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01(@TempDir Path directory) throws IOException {
+    AbstractAvr avr = StateStoreTests.load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(
+        new StateStoreTests.StackHeightProperty());
+    ExplorationResult<Integer> r = checker.check(avr.clone());
+    assertEquals(true, r.isComplete());
+    assertEquals(this.ten, r.getValue().intValue());
+    // Partial result is a lower bound
+    checker.setBudget(ExplorationBudget.UNLIMITED.withMaxSteps(1000));
+    r = checker.check(avr.clone());
+    assertEquals(false, r.isComplete());
+    assertEquals(ExplorationBudget.Limit.STEPS, r.getExhausted());
+    assertEquals(true, r.getFrontier() > 0);
+    assertEquals(true, r.getValue().intValue() <= this.ten);
+    checker.setBudget(ExplorationBudget.UNLIMITED.withMaxDepth(10));
+    r = checker.check(avr.clone());
+    assertEquals(false, r.isComplete());
+    assertEquals(true, r.getPruned() > 0);
+    assertEquals(0, r.getFrontier());
+    // Exhausted run can be continued from its final checkpoint
+    checker.setBudget(ExplorationBudget.UNLIMITED.withMaxStates(1000));
+    checker.setCheckpointing(directory, 60000);
+    assertEquals(ExplorationBudget.Limit.STATES, checker.check(avr.clone()).getExhausted());
+    checker.setBudget(ExplorationBudget.UNLIMITED);
+    r = checker.resume(avr);
+    assertEquals(true, r.isComplete());
+    assertEquals(this.ten, r.getValue().intValue());
+  }
+}
@@ -0,0 +1,279 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractMemory.Bit;
+import avrmc.core.AbstractMemory.Byte;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check that arithmetic on partially known bytes is sound.
+ * That is, for abstract bytes generated at random (using fixed seeds), every
+ * concrete instance of the operands gives a result which is an instance of the
+ * abstract result. Operations are composed as <code>AbstractAvr</code> does
+ * for the corresponding instructions (e.g. <code>ADC</code> adds the carry as
+ * a byte).
+ *
+ * @author David J. Pearce
+ *
+ */
+public class ByteTests {
+  /**
+   * A dummy constant representing the number of random operands generated by
+   * each test. This is used to prevent Eclipse errors being reported on the
+   * test methods.
+   */
+  private final int count = 1000;
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_01() {
+    // ADD
+    Random random = new Random(1);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      Byte rr = random(random);
+      Byte r = rd.add(rr);
+      for (int x : instances(rd)) {
+        for (int y : instances(rr)) {
+          checkCovers(r, x + y);
+        }
+      }
+      if (!rd.isUnknown() && !rr.isUnknown()) {
+        assertEquals(false, r.isUnknown());
+      }
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_02() {
+    // ADC, including an unknown carry
+    Random random = new Random(2);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      Byte rr = random(random);
+      Byte cf = carry(random(random).get(0), 0);
+      Byte r = rd.add(rr.add(cf));
+      for (int x : instances(rd)) {
+        for (int y : instances(rr)) {
+          for (int c : instances(cf)) {
+            checkCovers(r, x + y + c);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_03() {
+    // SUB
+    Random random = new Random(3);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      Byte rr = random(random);
+      Byte r = rd.sub(rr);
+      for (int x : instances(rd)) {
+        for (int y : instances(rr)) {
+          checkCovers(r, x - y);
+        }
+      }
+      if (!rd.isUnknown() && !rr.isUnknown()) {
+        assertEquals(false, r.isUnknown());
+      }
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_04() {
+    // SBC, including an unknown carry
+    Random random = new Random(4);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      Byte rr = random(random);
+      Byte cf = carry(random(random).get(0), 0);
+      Byte r = rd.sub(rr).sub(cf);
+      for (int x : instances(rd)) {
+        for (int y : instances(rr)) {
+          for (int c : instances(cf)) {
+            checkCovers(r, x - y - c);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_05() {
+    // LSR, and logical shifts by other amounts
+    Random random = new Random(5);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      int n = (i % 2 == 0) ? 1 : random.nextInt(8);
+      Byte r = rd.ushr(n);
+      for (int x : instances(rd)) {
+        checkCovers(r, x >>> n);
+      }
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_06() {
+    // ASR, and arithmetic shifts by other amounts
+    Random random = new Random(6);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      int n = (i % 2 == 0) ? 1 : random.nextInt(8);
+      Byte r = rd.shr(n);
+      for (int x : instances(rd)) {
+        checkCovers(r, ((byte) x) >> n);
+      }
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_07() {
+    // ROR, including an unknown carry
+    Random random = new Random(7);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      Byte cf = carry(random(random).get(0), 7);
+      Byte r = cf.or(rd.ushr(1));
+      for (int x : instances(rd)) {
+        for (int c : instances(cf)) {
+          checkCovers(r, c | (x >>> 1));
+        }
+      }
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_08() {
+    // NEG
+    Random random = new Random(8);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      Byte r = rd.neg();
+      for (int x : instances(rd)) {
+        checkCovers(r, -x);
+      }
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_09() {
+    // SWAP
+    Random random = new Random(9);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      Byte r = rd.swap();
+      for (int x : instances(rd)) {
+        checkCovers(r, (x << 4) | (x >>> 4));
+      }
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_10() {
+    // AND, OR and EOR
+    Random random = new Random(10);
+    for (int i = 0; i != this.count; ++i) {
+      Byte rd = random(random);
+      Byte rr = random(random);
+      for (int x : instances(rd)) {
+        for (int y : instances(rr)) {
+          checkCovers(rd.and(rr), x & y);
+          checkCovers(rd.or(rr), x | y);
+          checkCovers(rd.xor(rr), x ^ y);
+        }
+      }
+    }
+  }
+
+  /**
+   * Check that a given concrete value is an instance of a given abstract byte,
+   * where only the lower eight bits of the value are considered.
+   *
+   * @param r     Abstract result.
+   * @param value Concrete result.
+   */
+  private static void checkCovers(Byte r, int value) {
+    int known = r.getKnownBits() & 0xFF;
+    assertEquals(r.toPartialByte() & known, value & known);
+  }
+
+  /**
+   * Determine every concrete instance of a given abstract byte.
+   *
+   * @param b Abstract byte.
+   * @return Instances of byte (between <code>0</code> and <code>255</code>).
+   */
+  private static int[] instances(Byte b) {
+    int unknown = ~b.getKnownBits() & 0xFF;
+    int value = b.toPartialByte() & 0xFF & ~unknown;
+    int[] r = new int[1 << Integer.bitCount(unknown)];
+    // Enumerate every subset of the unknown bits
+    int subset = 0;
+    int i = 0;
+    do {
+      r[i++] = value | subset;
+      subset = (subset - unknown) & unknown;
+    } while (subset != 0);
+    return r;
+  }
+
+  /**
+   * Construct a byte holding a given (possibly unknown) carry bit in a given
+   * position, where every other bit is zero.
+   *
+   * @param c     Carry bit.
+   * @param index Position of carry bit.
+   * @return Abstract byte.
+   */
+  private static Byte carry(Bit c, int index) {
+    return Byte.from((byte) 0).set(index, c);
+  }
+
+  /**
+   * Generate an abstract byte at random, where roughly half are mostly known
+   * and the remainder are mostly unknown.
+   *
+   * @param random Source of randomness.
+   * @return Abstract byte.
+   */
+  private static Byte random(Random random) {
+    int value = random.nextInt(256);
+    int known = random.nextBoolean() ? random.nextInt(256) | random.nextInt(256)
+        : random.nextInt(256) & random.nextInt(256);
+    return Byte.from((byte) value, (byte) known);
+  }
+}
@@ -0,0 +1,76 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.PropertyEvents;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test cases which check that an interrupted run can be resumed from its most
+ * recent checkpoint.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class CheckpointTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @param directory Temporary directory for files written by the test.
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01(@TempDir Path directory) throws IOException {
+    AbstractAvr avr = StateStoreTests.load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    // Interrupt a run part way through, after several checkpoints
+    AvrModelChecker.IntProperty interrupting = new StateStoreTests.StackHeightProperty() {
+      private int remaining = 20000;
+
+      @Override
+      public int mapAsInt(AbstractAvr state) {
+        if (--this.remaining == 0) {
+          throw new IllegalStateException("interrupted"); //$NON-NLS-1$
+        }
+        return super.mapAsInt(state);
+      }
+
+      @Override
+      public PropertyEvents getEvents() {
+        return PropertyEvents.EVERY_STEP;
+      }
+    };
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(interrupting);
+    checker.setCheckpointing(directory, 0);
+    try {
+      checker.apply(avr.clone());
+      throw new AssertionError("run should have been interrupted"); //$NON-NLS-1$
+    } catch (IllegalStateException e) {
+      // Expected
+    }
+    checker = new AvrModelChecker<>(new StateStoreTests.StackHeightProperty());
+    checker.setCheckpointing(directory, 0);
+    long[] checkpoints = new long[1];
+    checker.setListener(stats -> checkpoints[0] = stats.getCheckpoints(), 0);
+    assertEquals(this.ten, checker.resume(avr.clone()).getValue().intValue());
+    assertEquals(true, checkpoints[0] > 0);
+    // Resuming a completed run just gives its value
+    assertEquals(this.ten, checker.resume(avr).getValue().intValue());
+  }
+}
@@ -0,0 +1,54 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import java.io.File;
+import java.io.IOException;
+import javr.core.AvrInstruction;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check the statistics reported to an exploration listener.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class ListenerTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01() throws IOException {
+    AbstractAvr avr = StateStoreTests.load(this.dir + "blocks_1.hex"); //$NON-NLS-1$
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(
+        new StateStoreTests.StackHeightProperty());
+    long[] counts = new long[4];
+    checker.setListener(stats -> {
+      counts[0] = stats.getSteps();
+      counts[1] = stats.getVisitedStates();
+      counts[2] = stats.getForks();
+      counts[3] = stats.getForks(AvrInstruction.Opcode.SBIS);
+    }, 0);
+    assertEquals(this.ten, checker.apply(avr).intValue());
+    assertEquals(true, counts[0] >= counts[1]);
+    assertEquals(true, counts[1] > 0);
+    // Only forks in this firmware arise from polling the buttons
+    assertEquals(true, counts[2] > 0);
+    assertEquals(counts[2], counts[3]);
+  }
+}
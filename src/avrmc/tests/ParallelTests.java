@@ -0,0 +1,135 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.BatchVerifier;
+import avrmc.core.ExplorationBudget;
+import avrmc.core.ExplorationResult;
+import avrmc.core.ParallelAvrModelChecker;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import javr.io.HexFile;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+/**
+ * Test cases which check the parallel model checker produces the same results
+ * as the sequential model checker.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class ParallelTests {
+  /**
+   * A dummy constant representing the number of worker threads. This is used to
+   * prevent Eclipse errors being reported on the test methods.
+   */
+  private final int threads = 4;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test, which is repeated for every firmware used by <code>Part3</code>
+   * except <code>blocker_1.hex</code> and <code>blocker_2.hex</code> (whose
+   * exploration exhausts a typical heap).
+   *
+   * @param filename Filename of firmware to check.
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @ParameterizedTest
+  @ValueSource(strings = { "blocks_1.hex", "blocks_2.hex", "blocks_3.hex", "blocks_4.hex", //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+      "blocks_5.hex", "blocks_6.hex", "blocks_7.hex", "fader.hex", "numbers_r.hex" }) //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$ //$NON-NLS-5$
+  public void test_01(String filename) throws IOException {
+    checkStackUsage(filename);
+  }
+
+  /**
+   * A test.
+   *
+   * @throws Exception If a problem occurrs reading the firmware file, or
+   *                   checking it.
+   */
+  @Test
+  public void test_02() throws Exception {
+    String[] names = { "blocks_1.hex", "blocks_2.hex", "blocks_7.hex", "blocks_3.hex" }; //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$ //$NON-NLS-4$
+    Map<String, Integer> streamed = new ConcurrentHashMap<>();
+    Future<?> limited;
+    try (BatchVerifier<Integer> batch = new BatchVerifier<>(
+        () -> new AvrModelChecker<>(new StateStoreTests.StackHeightProperty()), this.threads)) {
+      batch.setInitialiser(s -> {
+        while (StateStoreTests.readStackPointer(s) != 607) {
+          s.clock();
+        }
+      });
+      batch.setListener(new BatchVerifier.Listener<>() {
+        @Override
+        public void completed(String name, ExplorationResult<Integer> result) {
+          if (result.isComplete()) {
+            streamed.put(name, result.getValue());
+          }
+        }
+
+        @Override
+        public void failed(String name, Throwable error) {
+          streamed.put(name, Integer.valueOf(-1));
+        }
+      });
+      for (String name : names) {
+        batch.submit(name, read(this.dir + name), ExplorationBudget.UNLIMITED);
+      }
+      // Identical image shares its template, but has its own budget
+      limited = batch.submit("limited", read(this.dir + names[2]), //$NON-NLS-1$
+          ExplorationBudget.UNLIMITED.withMaxSteps(100));
+      assertEquals(names.length, batch.getImages());
+    }
+    for (String name : names) {
+      Integer expected = new AvrModelChecker<>(new StateStoreTests.StackHeightProperty())
+          .apply(StateStoreTests.load(this.dir + name));
+      assertEquals(expected, streamed.get(name));
+    }
+    assertEquals(false, ((ExplorationResult<?>) limited.get()).isComplete());
+  }
+
+  /**
+   * Check the maximum stack usage of a given firmware computed by the parallel
+   * model checker matches that computed by the sequential model checker.
+   *
+   * @param filename Filename of firmware to load from disk.
+   * @throws IOException If something goes wrong loading the firmware (e.g.
+   *                     <code>FileNotFound</code>).
+   */
+  private void checkStackUsage(String filename) throws IOException {
+    AbstractAvr seq = StateStoreTests.load(this.dir + filename);
+    AbstractAvr par = StateStoreTests.load(this.dir + filename);
+    Integer expected = new AvrModelChecker<>(new StateStoreTests.StackHeightProperty()).apply(seq);
+    Integer actual = new ParallelAvrModelChecker<>(new StateStoreTests.StackHeightProperty(),
+        this.threads).apply(par);
+    assertEquals(expected, actual);
+  }
+
+  /**
+   * Read a firmware image from disk.
+   *
+   * @param filename Filename of firmware to read.
+   * @return Firmware image.
+   * @throws IOException If something goes wrong reading the firmware.
+   */
+  private static HexFile read(String filename) throws IOException {
+    try (FileReader fr = new FileReader(filename)) {
+      HexFile hf = new HexFile.Reader(fr).readAll();
+      assert hf != null;
+      return hf;
+    }
+  }
+}
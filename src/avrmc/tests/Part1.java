@@ -454,7 +454,7 @@ public class Part1 {
    *                     firmware.
    * @return The firmware constructed for the given sequence.
    */
-  private static HexFile assemble(AvrInstruction... instructions) {
+  static HexFile assemble(AvrInstruction... instructions) {
     byte[][] chunks = new byte[instructions.length][];
     int total = 0;
     // Encode each instruction into a byte sequence
@@ -484,7 +484,7 @@ public class Part1 {
    * @author David J. Pearce
    *
    */
-  private static class StackHeightProperty implements AvrModelChecker.Property<Integer> {
+  private static class StackHeightProperty implements AvrModelChecker.IntProperty {
     /**
      * Identifies the maximum possible value for the stack pointer. Since the stack
      * grows downwards, this identifies when the stack has zero height.
@@ -501,20 +501,14 @@ public class Part1 {
     }
 
     @Override
-    public Integer map(AbstractAvr state) {
+    public int mapAsInt(AbstractAvr state) {
       // Read value of Stack Pointer in the given AVR state.
-      Integer r = Integer.valueOf(this.maxMemory - readStackPointer(state));
-      assert r != null;
-      return r;
+      return this.maxMemory - readStackPointer(state);
     }
 
     @Override
-    public Integer join(Integer l, Integer r) {
-      int left = l.intValue();
-      int right = r.intValue();
-      Integer res = Integer.valueOf((left > right) ? left : right);
-      assert res != null;
-      return res;
+    public int joinAsInt(int left, int right) {
+      return (left > right) ? left : right;
     }
   }
 
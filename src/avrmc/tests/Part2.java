@@ -484,8 +484,8 @@ public class Part2 {
         new AvrInstruction.PUSH(0x16),
         new AvrInstruction.POP(0x16),
         new AvrInstruction.RJMP(-1) };
-    // Check computation
-    assertEquals(this.one, computeStackUsage(instructions));
+    // Check computation (bit 7 is known to be clear, hence BRLT is never taken)
+    assertEquals(this.zero, computeStackUsage(instructions));
   }
 
   /**
@@ -593,8 +593,8 @@ public class Part2 {
         new AvrInstruction.POP(17),
         new AvrInstruction.POP(16),
         new AvrInstruction.RJMP(-1) };
-    // Check computation
-    assertEquals(this.two, computeStackUsage(instructions));
+    // Check computation (bit 1 is known to be set for CPI, hence BREQ is never taken)
+    assertEquals(this.zero, computeStackUsage(instructions));
   }
 
   /**
@@ -1075,4 +1075,175 @@ public class Part2 {
     // Check computation
     assertEquals(this.one, computeStackUsage(instructions));
   }
+
+  /**
+   * A Test.
+   */
+  @Test
+  public void test_38() {
+    AvrInstruction[] instructions = new AvrInstruction[] {
+        // Initialize SP
+        new AvrInstruction.LDI(28, 0x5f),
+        new AvrInstruction.LDI(29, 0x2),
+        new AvrInstruction.OUT(0x3e, 29),
+        new AvrInstruction.OUT(0x3d, 28),
+        // Read (Unknown) Input, and set bit 0
+        new AvrInstruction.IN(16, 0x16),
+        new AvrInstruction.ORI(16, 0x01),
+        // Conditional Skip (always taken)
+        new AvrInstruction.SBRS(16, 0),
+        new AvrInstruction.RJMP(1),
+        // Live code
+        new AvrInstruction.RJMP(-1),
+        // Dead code
+        new AvrInstruction.PUSH(16),
+        new AvrInstruction.POP(16),
+        new AvrInstruction.RJMP(-1) };
+    // Check computation
+    assertEquals(this.zero, computeStackUsage(instructions));
+  }
+
+  /**
+   * A Test.
+   */
+  @Test
+  public void test_39() {
+    AvrInstruction[] instructions = new AvrInstruction[] {
+        // Initialize SP
+        new AvrInstruction.LDI(28, 0x5f),
+        new AvrInstruction.LDI(29, 0x2),
+        new AvrInstruction.OUT(0x3e, 29),
+        new AvrInstruction.OUT(0x3d, 28),
+        // Read (Unknown) Input
+        new AvrInstruction.IN(16, 0x16),
+        // Conditional Skip (forks, after which bit 0 is known)
+        new AvrInstruction.SBRC(16, 0),
+        new AvrInstruction.RJMP(1),
+        new AvrInstruction.RJMP(-1),
+        // Conditional Skip (always taken, since bit 0 is set)
+        new AvrInstruction.SBRS(16, 0),
+        new AvrInstruction.RJMP(1),
+        // Live code
+        new AvrInstruction.RJMP(-1),
+        // Dead code
+        new AvrInstruction.PUSH(16),
+        new AvrInstruction.POP(16),
+        new AvrInstruction.RJMP(-1) };
+    // Check computation
+    assertEquals(this.zero, computeStackUsage(instructions));
+  }
+
+  /**
+   * A Test.
+   */
+  @Test
+  public void test_40() {
+    AvrInstruction[] instructions = new AvrInstruction[] {
+        // Initialize SP
+        new AvrInstruction.LDI(28, 0x5f),
+        new AvrInstruction.LDI(29, 0x2),
+        new AvrInstruction.OUT(0x3e, 29),
+        new AvrInstruction.OUT(0x3d, 28),
+        // Copy (Unknown) Input into DDRB
+        new AvrInstruction.IN(16, 0x16),
+        new AvrInstruction.OUT(0x17, 16),
+        // Conditional Skip (forks, after which bit 0 is set when skipped)
+        new AvrInstruction.SBIS(0x17, 0),
+        new AvrInstruction.RJMP(-1),
+        // Conditional Skip (always taken, since bit 0 is set)
+        new AvrInstruction.SBIS(0x17, 0),
+        new AvrInstruction.RJMP(2),
+        // Live code
+        new AvrInstruction.PUSH(16),
+        new AvrInstruction.POP(16),
+        new AvrInstruction.RJMP(-1) };
+    // Check computation
+    assertEquals(this.one, computeStackUsage(instructions));
+  }
+
+  /**
+   * A Test.
+   */
+  @Test
+  public void test_41() {
+    AvrInstruction[] instructions = new AvrInstruction[] {
+        // Initialize SP
+        new AvrInstruction.LDI(28, 0x5f),
+        new AvrInstruction.LDI(29, 0x2),
+        new AvrInstruction.OUT(0x3e, 29),
+        new AvrInstruction.OUT(0x3d, 28),
+        // Copy (Unknown) Input into DDRB
+        new AvrInstruction.IN(16, 0x16),
+        new AvrInstruction.OUT(0x17, 16),
+        // Conditional Skip (forks, after which bit 0 is clear when skipped)
+        new AvrInstruction.SBIC(0x17, 0),
+        new AvrInstruction.RJMP(-1),
+        // Conditional Skip (always taken, since bit 0 is clear)
+        new AvrInstruction.SBIC(0x17, 0),
+        new AvrInstruction.RJMP(2),
+        // Live code
+        new AvrInstruction.PUSH(16),
+        new AvrInstruction.POP(16),
+        new AvrInstruction.RJMP(-1) };
+    // Check computation
+    assertEquals(this.one, computeStackUsage(instructions));
+  }
+
+  /**
+   * A Test.
+   */
+  @Test
+  public void test_42() {
+    AvrInstruction[] instructions = new AvrInstruction[] {
+        // Initialize SP
+        new AvrInstruction.LDI(28, 0x5f),
+        new AvrInstruction.LDI(29, 0x2),
+        new AvrInstruction.OUT(0x3e, 29),
+        new AvrInstruction.OUT(0x3d, 28),
+        // Copy (Unknown) Input into DDRB
+        new AvrInstruction.IN(16, 0x16),
+        new AvrInstruction.OUT(0x17, 16),
+        // Conditional Skip (forks, after which bit 0 is clear when not skipped)
+        new AvrInstruction.SBIS(0x17, 0),
+        new AvrInstruction.RJMP(1),
+        new AvrInstruction.RJMP(-1),
+        // Conditional Skip (always taken, since bit 0 is clear)
+        new AvrInstruction.SBIC(0x17, 0),
+        new AvrInstruction.RJMP(2),
+        // Live code
+        new AvrInstruction.PUSH(16),
+        new AvrInstruction.POP(16),
+        new AvrInstruction.RJMP(-1) };
+    // Check computation
+    assertEquals(this.one, computeStackUsage(instructions));
+  }
+
+  /**
+   * A Test.
+   */
+  @Test
+  public void test_43() {
+    AvrInstruction[] instructions = new AvrInstruction[] {
+        // Initialize SP
+        new AvrInstruction.LDI(28, 0x5f),
+        new AvrInstruction.LDI(29, 0x2),
+        new AvrInstruction.OUT(0x3e, 29),
+        new AvrInstruction.OUT(0x3d, 28),
+        // Copy (Unknown) Input into DDRB
+        new AvrInstruction.IN(16, 0x16),
+        new AvrInstruction.OUT(0x17, 16),
+        // Conditional Skip (forks, after which bit 0 is set when not skipped)
+        new AvrInstruction.SBIC(0x17, 0),
+        new AvrInstruction.RJMP(1),
+        new AvrInstruction.RJMP(-1),
+        // Conditional Skip (never taken, since bit 0 is set)
+        new AvrInstruction.SBIC(0x17, 0),
+        new AvrInstruction.RJMP(-1),
+        // Dead code
+        new AvrInstruction.PUSH(16),
+        new AvrInstruction.POP(16),
+        new AvrInstruction.RJMP(-1) };
+    // Check computation
+    assertEquals(this.zero, computeStackUsage(instructions));
+  }
 }
@@ -0,0 +1,58 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.PropertyBundle;
+import java.io.File;
+import java.io.IOException;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check that properties checked together in a bundle give the
+ * same results as when checked separately.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class PropertyBundleTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01() throws IOException {
+    AbstractAvr avr = StateStoreTests.load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    // Greatest address executed, which is evaluated after every instruction
+    AvrModelChecker.Property<Integer> address = new AvrModelChecker.Property<>() {
+      @Override
+      public Integer map(AbstractAvr state) {
+        return Integer.valueOf(state.getProgramCounter());
+      }
+
+      @Override
+      public Integer join(Integer left, Integer right) {
+        return Integer.valueOf(Math.max(left.intValue(), right.intValue()));
+      }
+    };
+    PropertyBundle bundle = new PropertyBundle();
+    PropertyBundle.Key<Integer> height = bundle.add(new StateStoreTests.StackHeightProperty());
+    PropertyBundle.Key<Integer> highest = bundle.add(address);
+    PropertyBundle.Values values = new AvrModelChecker<>(bundle).apply(avr.clone());
+    assertEquals(this.ten, values.get(height).intValue());
+    assertEquals(new AvrModelChecker<>(address).apply(avr), values.get(highest));
+  }
+}
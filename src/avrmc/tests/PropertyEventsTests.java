@@ -0,0 +1,100 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AbstractMemory;
+import avrmc.core.AbstractMemory.Byte;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.PropertyEvents;
+import java.io.File;
+import java.io.IOException;
+import javr.core.AvrInstruction;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check that evaluating a property only on the events it
+ * depends on gives the same results as evaluating it after every instruction,
+ * including for writes which are implicit (e.g. resetting <code>PINB</code>).
+ *
+ * @author David J. Pearce
+ *
+ */
+public class PropertyEventsTests {
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01() throws IOException {
+    for (String firmware : new String[] { "blocks_1.hex", "blocks_7.hex", "numbers_r.hex" }) { //$NON-NLS-1$ //$NON-NLS-2$ //$NON-NLS-3$
+      AbstractAvr avr = StateStoreTests.load(this.dir + firmware);
+      int[] evaluations = new int[2];
+      // Same property, but evaluated after every instruction
+      AvrModelChecker.IntProperty everyStep = new StateStoreTests.StackHeightProperty() {
+        @Override
+        public int mapAsInt(AbstractAvr state) {
+          evaluations[0]++;
+          return super.mapAsInt(state);
+        }
+
+        @Override
+        public PropertyEvents getEvents() {
+          return PropertyEvents.EVERY_STEP;
+        }
+      };
+      AvrModelChecker.IntProperty onEvent = new StateStoreTests.StackHeightProperty() {
+        @Override
+        public int mapAsInt(AbstractAvr state) {
+          evaluations[1]++;
+          return super.mapAsInt(state);
+        }
+      };
+      int expected = new AvrModelChecker<>(everyStep).apply(avr.clone()).intValue();
+      assertEquals(expected, new AvrModelChecker<>(onEvent).apply(avr).intValue());
+      assertEquals(true, evaluations[1] < evaluations[0]);
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_02() {
+    int pinb = 32 + 0x16;
+    // Determines whether PINB is unknown once r17 is set
+    AvrModelChecker.IntProperty reset = new AvrModelChecker.IntProperty() {
+      @Override
+      public int mapAsInt(AbstractAvr state) {
+        AbstractMemory data = state.getData();
+        boolean set = data.read(17).equals(Byte.from((byte) 1));
+        return (set && data.getKnownBits(pinb) == 0) ? 1 : 0;
+      }
+
+      @Override
+      public int joinAsInt(int left, int right) {
+        return Math.max(left, right);
+      }
+
+      @Override
+      public PropertyEvents getEvents() {
+        return PropertyEvents.NONE.withWrites(pinb, pinb + 1);
+      }
+    };
+    AbstractAvr avr = new AbstractAvr(8192, 32 + 64 + 512);
+    Part1.assemble(
+        new AvrInstruction.LDI(16, 0x5),
+        new AvrInstruction.OUT(0x16, 16),
+        new AvrInstruction.LDI(17, 0x1),
+        new AvrInstruction.RJMP(-1)).uploadTo(avr.getCode());
+    // Resetting PINB before the third instruction counts as a write
+    assertEquals(1, new AvrModelChecker<>(reset).apply(avr).intValue());
+  }
+}
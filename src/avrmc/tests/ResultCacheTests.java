@@ -0,0 +1,58 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.ExplorationBudget;
+import avrmc.core.ResultCache;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test cases which check that results are cached for a given firmware and
+ * configuration.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class ResultCacheTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @param directory Temporary directory for files written by the test.
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01(@TempDir Path directory) throws IOException {
+    AbstractAvr avr = StateStoreTests.load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    ResultCache cache = new ResultCache(directory);
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(
+        new StateStoreTests.StackHeightProperty());
+    assertEquals(null, cache.lookup(checker, avr, "")); //$NON-NLS-1$
+    assertEquals(this.ten, cache.check(checker, avr.clone(), "").getValue().intValue()); //$NON-NLS-1$
+    assertEquals(this.ten, cache.check(checker, avr.clone(), "").getValue().intValue()); //$NON-NLS-1$
+    assertEquals(1, cache.getHits());
+    // Different configuration or firmware is not found
+    assertEquals(null, cache.lookup(checker, avr, "bitstate")); //$NON-NLS-1$
+    assertEquals(null, cache.lookup(checker, StateStoreTests.load(this.dir + "blocks_6.hex"), "")); //$NON-NLS-1$ //$NON-NLS-2$
+    // Incomplete results are not cached
+    checker.setBudget(ExplorationBudget.UNLIMITED.withMaxSteps(100));
+    assertEquals(false, cache.check(checker, avr.clone(), "limited").isComplete()); //$NON-NLS-1$
+    assertEquals(null, cache.lookup(checker, avr, "limited")); //$NON-NLS-1$
+  }
+}
@@ -0,0 +1,72 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Test cases which check that a previous result is reused when only code which
+ * is never executed changes.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class ResultReuseTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @param directory Temporary directory for files written by the test.
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01(@TempDir Path directory) throws IOException {
+    int[] evaluations = new int[1];
+    AvrModelChecker.IntProperty counting = new StateStoreTests.StackHeightProperty() {
+      @Override
+      public int mapAsInt(AbstractAvr state) {
+        evaluations[0]++;
+        return super.mapAsInt(state);
+      }
+    };
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(counting);
+    Path summary = directory.resolve("summary"); //$NON-NLS-1$
+    checker.setResultReuse(summary, ""); //$NON-NLS-1$
+    assertEquals(this.ten, checker.apply(StateStoreTests.load(this.dir + "blocks_7.hex")).intValue()); //$NON-NLS-1$
+    // Modifying code which is never used reuses previous result
+    AbstractAvr avr = StateStoreTests.load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    avr.getCode().poke(2000, (byte) 0x55);
+    evaluations[0] = 0;
+    assertEquals(this.ten, checker.apply(avr).intValue());
+    assertEquals(0, evaluations[0]);
+    // Changing the configuration requires exploration
+    checker.setResultReuse(summary, "other"); //$NON-NLS-1$
+    assertEquals(this.ten, checker.apply(StateStoreTests.load(this.dir + "blocks_7.hex")).intValue()); //$NON-NLS-1$
+    assertEquals(true, evaluations[0] > 0);
+    // Modifying code which is used (i.e. ldi r18, 0x0) requires exploration
+    avr = StateStoreTests.load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    avr.getCode().poke(2 * avr.getProgramCounter(), (byte) 0x21);
+    AbstractAvr copy = avr.clone();
+    evaluations[0] = 0;
+    Integer expected = new AvrModelChecker<>(new StateStoreTests.StackHeightProperty())
+        .apply(avr.clone());
+    assertEquals(expected, checker.apply(copy));
+    assertEquals(true, evaluations[0] > 0);
+  }
+}
@@ -0,0 +1,195 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AbstractMemory;
+import avrmc.core.AbstractMemory.Byte;
+import avrmc.core.StateCodec;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Random;
+import javr.core.AVR;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check that states are unchanged by encoding and then
+ * decoding them, and that the encoding is canonical. States are generated at
+ * random (using fixed seeds) or by executing firmware.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class StateCodecTests {
+  /**
+   * A dummy constant representing the number of random states generated by each
+   * test. This is used to prevent Eclipse errors being reported on the test
+   * methods.
+   */
+  private final int count = 1000;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_01() {
+    AbstractAvr avr = new AbstractAvr(16, 32 + 64 + 512);
+    assertEquals(true, encode(avr).remaining() < 16);
+    checkRoundTrip(avr);
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_02() {
+    Random random = new Random(1);
+    for (int i = 0; i != this.count; ++i) {
+      checkRoundTrip(randomise(new AbstractAvr(16, 32 + 64 + 512), random));
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_03() {
+    // Memory sizes which are not a multiple of the page size
+    Random random = new Random(2);
+    for (int i = 0; i != this.count; ++i) {
+      checkRoundTrip(randomise(new AbstractAvr(16, 1 + random.nextInt(700)), random));
+    }
+  }
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_04() throws IOException {
+    // States arising from executing firmware (i.e. with varied status flags)
+    AbstractAvr avr = StateStoreTests.load(this.dir + "numbers_r.hex"); //$NON-NLS-1$
+    try {
+      for (int i = 0; i != this.count; ++i) {
+        checkRoundTrip(avr);
+        avr.clock();
+      }
+    } catch (AVR.HaltedException e) {
+      assert e != null;
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_05() {
+    // Encoding must distinguish states which differ in one location
+    Random random = new Random(3);
+    for (int i = 0; i != this.count; ++i) {
+      AbstractAvr avr = randomise(new AbstractAvr(16, 32 + 64 + 512), random);
+      AbstractAvr copy = avr.clone();
+      int address = random.nextInt(copy.getData().size());
+      if (copy.getData().isUnknown(address)) {
+        copy.getData().write(address, (byte) 0);
+      } else {
+        copy.getData().write(address, Byte.UNKNOWN);
+      }
+      assertEquals(false, encode(avr).equals(encode(copy)));
+    }
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_06() {
+    AbstractAvr avr = new AbstractAvr(16, 32 + 64 + 512);
+    ByteBuffer buf = encode(avr);
+    buf.put(0, (byte) (StateCodec.VERSION + 1));
+    try {
+      StateCodec.decode(avr, buf);
+      assertEquals(true, false);
+    } catch (IllegalArgumentException e) {
+      assert e != null;
+    }
+  }
+
+  // ===============================================================
+  // Helpers
+  // ===============================================================
+
+  /**
+   * Check that decoding the encoding of a given state produces an equal state,
+   * whose encoding is identical.
+   *
+   * @param avr State to check.
+   */
+  private static void checkRoundTrip(AbstractAvr avr) {
+    ByteBuffer buf = encode(avr);
+    int length = buf.remaining();
+    AbstractAvr copy = StateCodec.decode(avr, buf);
+    assertEquals(length, buf.position());
+    assertEquals(avr, copy);
+    assertEquals(avr.fingerprint(), copy.fingerprint());
+    assertEquals(avr.getProgramCounter(), copy.getProgramCounter());
+    assertEquals(encode(avr), encode(copy));
+  }
+
+  /**
+   * Encode a given state.
+   *
+   * @param avr State to encode.
+   * @return Buffer holding (only) the encoding.
+   */
+  private static ByteBuffer encode(AbstractAvr avr) {
+    ByteBuffer buf = ByteBuffer.allocate(StateCodec.getMaximumSize(avr));
+    StateCodec.encode(avr, buf);
+    buf.flip();
+    return buf;
+  }
+
+  /**
+   * Fill the data memory of a given state with random runs of zero, unknown
+   * and arbitrary values, such that every kind of run is exercised.
+   *
+   * @param avr    State to randomise.
+   * @param random Source of randomness.
+   * @return The given state.
+   */
+  private static AbstractAvr randomise(AbstractAvr avr, Random random) {
+    AbstractMemory data = avr.getData();
+    int i = 0;
+    while (i < data.size()) {
+      int length = 1 + random.nextInt(random.nextBoolean() ? 4 : 64);
+      int kind = random.nextInt(4);
+      for (int j = i; j < Math.min(i + length, data.size()); ++j) {
+        switch (kind) {
+          case 0:
+            break;
+          case 1:
+            data.write(j, Byte.UNKNOWN);
+            break;
+          case 2:
+            data.write(j, (byte) random.nextInt(256));
+            break;
+          default:
+            if (random.nextBoolean()) {
+              data.write(j, Byte.UNKNOWN);
+            } else {
+              data.write(j, (byte) random.nextInt(256));
+            }
+        }
+      }
+      i += length;
+    }
+    return avr;
+  }
+}
@@ -0,0 +1,235 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AbstractMemory;
+import avrmc.core.AbstractMemory.Byte;
+import avrmc.core.AbstractMemory.Word;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.BitstateStateStore;
+import avrmc.core.CollapseStateStore;
+import avrmc.core.ExactStateStore;
+import avrmc.core.FingerprintStateStore;
+import avrmc.core.MappedStateStore;
+import avrmc.core.PropertyEvents;
+import avrmc.core.StateStore;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.function.Supplier;
+import javr.core.AVR;
+import javr.core.AVR.HaltedException;
+import javr.io.HexFile;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check the different kinds of state store produce the same
+ * results.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class StateStoreTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01() throws IOException {
+    assertEquals(this.ten, computeStackUsage("blocks_1.hex", ExactStateStore::new)); //$NON-NLS-1$
+  }
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_02() throws IOException {
+    assertEquals(this.ten, computeStackUsage("blocks_1.hex", FingerprintStateStore::new)); //$NON-NLS-1$
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_03() {
+    FingerprintStateStore store = new FingerprintStateStore(16);
+    // Force several resizes, checking nothing is lost
+    for (long i = 0; i != 1000; ++i) {
+      assertEquals(true, store.add((i + 1) * 0x2545F4914F6CDD1DL));
+    }
+    for (long i = 0; i != 1000; ++i) {
+      assertEquals(false, store.add((i + 1) * 0x2545F4914F6CDD1DL));
+    }
+    assertEquals(1000, store.size());
+  }
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_04() throws IOException {
+    AbstractAvr avr = load(this.dir + "blocks_1.hex"); //$NON-NLS-1$
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(new StackHeightProperty(),
+        () -> new BitstateStateStore(16));
+    assertEquals(this.ten, checker.apply(avr).intValue());
+    BitstateStateStore store = new BitstateStateStore(1);
+    assertEquals(true, store.add(avr.fingerprint()));
+    assertEquals(false, store.add(avr.fingerprint()));
+    assertEquals(1, store.size());
+  }
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_05() throws IOException {
+    AbstractAvr avr = load(this.dir + "blocks_1.hex"); //$NON-NLS-1$
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(new StackHeightProperty(),
+        MappedStateStore::new);
+    assertEquals(this.ten, checker.apply(avr.clone()).intValue());
+    try (MappedStateStore store = new MappedStateStore()) {
+      AbstractAvr copy = avr.clone();
+      assertEquals(true, store.add(avr));
+      assertEquals(false, store.add(copy));
+      // Unknown must be distinguished from zero
+      copy.getData().write(0, Byte.UNKNOWN);
+      assertEquals(true, store.add(copy));
+      assertEquals(2, store.size());
+    }
+  }
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_06() throws IOException {
+    AbstractAvr avr = load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(new StackHeightProperty(),
+        CollapseStateStore::new);
+    assertEquals(this.ten, checker.apply(avr.clone()).intValue());
+    CollapseStateStore store = new CollapseStateStore();
+    AbstractAvr copy = avr.clone();
+    assertEquals(true, store.add(avr));
+    assertEquals(false, store.add(copy));
+    // Unknown must be distinguished from zero, including in SRAM
+    copy.getData().write(32 + 64 + 100, Byte.UNKNOWN);
+    assertEquals(true, store.add(copy));
+    copy.getData().write(32 + 64 + 100, (byte) 0);
+    assertEquals(false, store.add(copy));
+    assertEquals(2, store.size());
+  }
+
+  /**
+   * A test.
+   */
+  @Test
+  public void test_07() {
+    ExactStateStore store = new ExactStateStore();
+    AbstractAvr avr = new AbstractAvr(16, 32 + 64 + 512);
+    assertEquals(true, store.add(avr));
+    long before = store.getMemoryUsage();
+    // Every page is written, hence is retained only by the next copy stored
+    for (int i = 0; i != avr.getData().size(); ++i) {
+      avr.getData().write(i, Byte.from((byte) i));
+    }
+    assertEquals(true, store.add(avr));
+    assertEquals(true, store.getMemoryUsage() - before >= avr.getData().size());
+  }
+
+  /**
+   * Compute the maximum stack usage of a given firmware using a given kind of
+   * state store.
+   *
+   * @param filename Filename of firmware to load from disk.
+   * @param stores   Constructs the state store to use.
+   * @return Calculated maximum stack height
+   * @throws IOException If something goes wrong loading the firmware (e.g.
+   *                     <code>FileNotFound</code>).
+   */
+  private int computeStackUsage(String filename, Supplier<? extends StateStore> stores)
+      throws IOException {
+    AbstractAvr avr = load(this.dir + filename);
+    return new AvrModelChecker<>(new StackHeightProperty(), stores).apply(avr).intValue();
+  }
+
+  /**
+   * Load a given firmware into a fresh abstract AVR, and clock it until the
+   * stack pointer is initialised.
+   *
+   * @param filename Filename of firmware to load from disk.
+   * @return Initialised machine state.
+   * @throws IOException If something goes wrong loading the firmware.
+   */
+  static AbstractAvr load(String filename) throws IOException {
+    try (FileReader fr = new FileReader(filename)) {
+      HexFile hf = new HexFile.Reader(fr).readAll();
+      assert hf != null;
+      AbstractAvr avr = new AbstractAvr(8192, 32 + 64 + 512);
+      hf.uploadTo(avr.getCode());
+      while (readStackPointer(avr) != 607) {
+        avr.clock();
+      }
+      return avr;
+    } catch (HaltedException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /**
+   * Read the value of the SP register from a given AVR state.
+   *
+   * @param state The abstract machine state to read the stack pointer from.
+   * @return The value read.
+   */
+  static int readStackPointer(AbstractAvr state) {
+    AbstractMemory data = state.getData();
+    Byte msb = data.read(AVR.SPL_ADDRESS + 1);
+    Byte lsb = data.read(AVR.SPL_ADDRESS);
+    return Word.from(msb, lsb).toInt();
+  }
+
+  /**
+   * A model checking property which extracts the maximum stack height from a
+   * given AVR state.
+   *
+   * @author David J. Pearce
+   *
+   */
+  static class StackHeightProperty implements AvrModelChecker.IntProperty {
+    @Override
+    public int mapAsInt(AbstractAvr state) {
+      return 607 - readStackPointer(state);
+    }
+
+    @Override
+    public int joinAsInt(int left, int right) {
+      return (left > right) ? left : right;
+    }
+
+    @Override
+    public PropertyEvents getEvents() {
+      return PropertyEvents.NONE.withStackPointer();
+    }
+  }
+}
@@ -0,0 +1,53 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.ExplorationResult;
+import avrmc.core.Witness;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Path;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check the witness paths recorded for a result.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class WitnessTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01() throws IOException {
+    AbstractAvr avr = StateStoreTests.load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(
+        new StateStoreTests.StackHeightProperty());
+    assertEquals(null, checker.check(avr.clone()).getWitness());
+    checker.setWitnesses(true);
+    ExplorationResult<Integer> r = checker.check(avr.clone());
+    assertEquals(this.ten, r.getValue().intValue());
+    Witness witness = r.getWitness();
+    assert witness != null;
+    // Path leads from starting state to one with greatest stack height
+    assertEquals(true, witness.size() > 0);
+    assertEquals(avr.getProgramCounter(), witness.getProgramCounter(0));
+    assertEquals(this.ten, 607 - StateStoreTests.readStackPointer(witness.getState()));
+  }
+}
@@ -0,0 +1,54 @@
+package avrmc.tests;
+
+import static org.junit.Assert.assertEquals;
+
+import avrmc.core.AbstractAvr;
+import avrmc.core.AvrModelChecker;
+import avrmc.core.SpillingWorklist;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.eclipse.jdt.annotation.Nullable;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Test cases which check that spilling states from the worklist to disk gives
+ * the same results as holding them in memory.
+ *
+ * @author David J. Pearce
+ *
+ */
+public class WorklistTests {
+  /**
+   * A dummy constant representing ten. This is used to prevent Eclipse errors
+   * being reported on the test methods.
+   */
+  private final int ten = 10;
+  /**
+   * Identifies the directory in which the test firmwares are located.
+   */
+  private @Nullable String dir = "tests/".replace("/", File.separator);  //$NON-NLS-1$//$NON-NLS-2$
+
+  /**
+   * A test.
+   *
+   * @throws IOException If a problem occurrs reading the firmware file.
+   */
+  @Test
+  public void test_01() throws IOException {
+    AbstractAvr avr = StateStoreTests.load(this.dir + "blocks_7.hex"); //$NON-NLS-1$
+    AvrModelChecker<Integer> checker = new AvrModelChecker<>(
+        new StateStoreTests.StackHeightProperty());
+    // Capacity is small enough to force states to be spilled
+    checker.setWorklists(
+        () -> new SpillingWorklist(2, Paths.get(System.getProperty("java.io.tmpdir")))); //$NON-NLS-1$
+    long[] bytes = new long[2];
+    checker.setListener(stats -> {
+      bytes[0] = stats.getSpilledBytes();
+      bytes[1] = stats.getReloadedBytes();
+    }, 0);
+    assertEquals(this.ten, checker.apply(avr).intValue());
+    assertEquals(true, bytes[0] > 0);
+    assertEquals(bytes[0], bytes[1]);
+  }
+}